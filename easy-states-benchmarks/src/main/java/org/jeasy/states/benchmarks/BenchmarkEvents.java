@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.benchmarks;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.Event;
+
+import java.util.function.Supplier;
+
+/**
+ * Distinct event types used to define benchmark machines.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public final class BenchmarkEvents {
+
+    /**
+     * Maximum number of distinct event types.
+     */
+    public static final int MAX_EVENT_TYPES = 16;
+
+    private static final Class<?>[] TYPES = { E0.class, E1.class, E2.class, E3.class, E4.class, E5.class, E6.class, E7.class, E8.class, E9.class, E10.class, E11.class, E12.class, E13.class, E14.class, E15.class };
+
+    @SuppressWarnings("unchecked")
+    private static final Supplier<Event>[] FACTORIES = new Supplier[] {
+            E0::new,
+            E1::new,
+            E2::new,
+            E3::new,
+            E4::new,
+            E5::new,
+            E6::new,
+            E7::new,
+            E8::new,
+            E9::new,
+            E10::new,
+            E11::new,
+            E12::new,
+            E13::new,
+            E14::new,
+            E15::new
+    };
+
+    private BenchmarkEvents() { }
+
+    @SuppressWarnings("unchecked")
+    public static Class<? extends Event> getType(final int index) {
+        return (Class<? extends Event>) TYPES[index];
+    }
+
+    public static Event newEvent(final int index) {
+        return FACTORIES[index].get();
+    }
+
+    public static final class E0 extends AbstractEvent { }
+    public static final class E1 extends AbstractEvent { }
+    public static final class E2 extends AbstractEvent { }
+    public static final class E3 extends AbstractEvent { }
+    public static final class E4 extends AbstractEvent { }
+    public static final class E5 extends AbstractEvent { }
+    public static final class E6 extends AbstractEvent { }
+    public static final class E7 extends AbstractEvent { }
+    public static final class E8 extends AbstractEvent { }
+    public static final class E9 extends AbstractEvent { }
+    public static final class E10 extends AbstractEvent { }
+    public static final class E11 extends AbstractEvent { }
+    public static final class E12 extends AbstractEvent { }
+    public static final class E13 extends AbstractEvent { }
+    public static final class E14 extends AbstractEvent { }
+    public static final class E15 extends AbstractEvent { }
+
+}
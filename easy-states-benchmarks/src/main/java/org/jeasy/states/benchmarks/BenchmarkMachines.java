@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.benchmarks;
+
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.EventHandler;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+import org.jeasy.states.core.ConcurrencyMode;
+import org.jeasy.states.core.FiniteStateMachineBuilder;
+import org.jeasy.states.core.TransitionBuilder;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Factory of synthetic machines used by benchmarks.
+ *
+ * A machine with {@code n} states and {@code m} event types defines {@code n * m} transitions:
+ * in state {@code i}, an event of type {@code j} moves the machine to state {@code (i + j + 1) % n}.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public final class BenchmarkMachines {
+
+    private BenchmarkMachines() { }
+
+    public static State[] states(final int stateCount) {
+        State[] states = new State[stateCount];
+        for (int i = 0; i < stateCount; i++) {
+            states[i] = new State("s" + i);
+        }
+        return states;
+    }
+
+    public static Set<Transition> transitions(final State[] states, final int eventTypeCount, final int handlerCost) {
+        if (eventTypeCount > BenchmarkEvents.MAX_EVENT_TYPES) {
+            throw new IllegalArgumentException("At most " + BenchmarkEvents.MAX_EVENT_TYPES + " event types are supported");
+        }
+        EventHandler<Event> eventHandler = handlerCost > 0 ? new CpuConsumingEventHandler(handlerCost) : null;
+        Set<Transition> transitions = new LinkedHashSet<>();
+        for (int i = 0; i < states.length; i++) {
+            for (int j = 0; j < eventTypeCount; j++) {
+                TransitionBuilder transitionBuilder = new TransitionBuilder()
+                        .name("t" + i + "_" + j)
+                        .sourceState(states[i])
+                        .eventType(BenchmarkEvents.getType(j))
+                        .targetState(states[(i + j + 1) % states.length]);
+                if (eventHandler != null) {
+                    transitionBuilder.eventHandler(eventHandler);
+                }
+                transitions.add(transitionBuilder.build());
+            }
+        }
+        return transitions;
+    }
+
+    public static FiniteStateMachineBuilder builder(final State[] states, final Set<Transition> transitions) {
+        Set<State> stateSet = new HashSet<>();
+        for (State state : states) {
+            stateSet.add(state);
+        }
+        return new FiniteStateMachineBuilder(stateSet, states[0])
+                .registerTransitions(transitions);
+    }
+
+    public static FiniteStateMachineDefinition definition(final int stateCount, final int eventTypeCount, final int handlerCost) {
+        return definition(stateCount, eventTypeCount, handlerCost, ConcurrencyMode.SYNCHRONIZED);
+    }
+
+    public static FiniteStateMachineDefinition definition(final int stateCount, final int eventTypeCount, final int handlerCost,
+                                                          final ConcurrencyMode concurrencyMode) {
+        State[] states = states(stateCount);
+        return builder(states, transitions(states, eventTypeCount, handlerCost))
+                .concurrencyMode(concurrencyMode)
+                .buildDefinition();
+    }
+
+    /**
+     * Pre-allocated events cycling through the given number of event types.
+     */
+    public static Event[] events(final int eventTypeCount, final int size) {
+        Event[] events = new Event[size];
+        for (int i = 0; i < size; i++) {
+            events[i] = BenchmarkEvents.newEvent(i % eventTypeCount);
+        }
+        return events;
+    }
+
+    private static final class CpuConsumingEventHandler implements EventHandler<Event> {
+
+        private final long tokens;
+
+        private CpuConsumingEventHandler(final long tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        public void handleEvent(final Event event) {
+            Blackhole.consumeCPU(tokens);
+        }
+
+    }
+
+}
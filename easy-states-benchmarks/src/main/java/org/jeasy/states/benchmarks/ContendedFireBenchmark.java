@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.benchmarks;
+
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.core.ConcurrencyMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FiniteStateMachine#fire(Event)} throughput when several threads fire events on the same machine.
+ * The number of threads defaults to 4 and can be changed with the JMH {@code -t} option.
+ * Both concurrency modes of FSM instances are measured.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ContendedFireBenchmark {
+
+    @Param({"32"})
+    public int stateCount;
+
+    @Param({"4"})
+    public int eventTypeCount;
+
+    @Param({"0", "100"})
+    public int handlerCost;
+
+    @Param({"SYNCHRONIZED", "OPTIMISTIC"})
+    public ConcurrencyMode concurrencyMode;
+
+    private FiniteStateMachine finiteStateMachine;
+
+    @Setup
+    public void setUp() {
+        finiteStateMachine = BenchmarkMachines.definition(stateCount, eventTypeCount, handlerCost, concurrencyMode).newInstance();
+    }
+
+    @State(Scope.Thread)
+    public static class ProducerState {
+
+        private static final int EVENTS = 1024;
+
+        private Event[] events;
+        private int index;
+
+        @Setup
+        public void setUp(final ContendedFireBenchmark benchmark) {
+            events = BenchmarkMachines.events(benchmark.eventTypeCount, EVENTS);
+        }
+
+        Event next() {
+            return events[index++ & (EVENTS - 1)];
+        }
+
+    }
+
+    @Benchmark
+    public org.jeasy.states.api.State fire(final ProducerState producer) throws FiniteStateMachineException {
+        return finiteStateMachine.fire(producer.next());
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.benchmarks;
+
+import org.jeasy.states.annotation.OnTransition;
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.Transition;
+import org.jeasy.states.core.FiniteStateMachineBuilder;
+import org.jeasy.states.core.TransitionBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FiniteStateMachine#fire(Event)} latency as the way event handlers are invoked varies:
+ * a lambda calling the handler method directly, a method annotated with {@link OnTransition}
+ * (invoked through a method handle held in a field) and the same method invoked with reflection.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class HandlerInvocationBenchmark {
+
+    @Param({"direct", "methodHandle", "reflection"})
+    public String invocation;
+
+    private FiniteStateMachine finiteStateMachine;
+    private Event event;
+
+    @Setup
+    public void setUp() throws Exception {
+        org.jeasy.states.api.State s0 = new org.jeasy.states.api.State("s0");
+        org.jeasy.states.api.State s1 = new org.jeasy.states.api.State("s1");
+        FiniteStateMachineBuilder builder = new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(s0, s1)), s0);
+        Handlers handlers = new Handlers();
+        switch (invocation) {
+            case "direct":
+                builder.registerTransition(transition(s0, s1, handlers::toggle))
+                        .registerTransition(transition(s1, s0, handlers::toggle));
+                break;
+            case "methodHandle":
+                builder.registerEventHandlers(handlers);
+                break;
+            case "reflection":
+                Method toggle = Handlers.class.getMethod("toggle", Event.class);
+                builder.registerTransition(transition(s0, s1, e -> toggle.invoke(handlers, e)))
+                        .registerTransition(transition(s1, s0, e -> toggle.invoke(handlers, e)));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown invocation " + invocation);
+        }
+        finiteStateMachine = builder.build();
+        event = BenchmarkEvents.newEvent(0);
+    }
+
+    @Benchmark
+    public org.jeasy.states.api.State fire() throws FiniteStateMachineException {
+        return finiteStateMachine.fire(event);
+    }
+
+    private static Transition transition(final org.jeasy.states.api.State source, final org.jeasy.states.api.State target,
+                                         final org.jeasy.states.api.EventHandler<Event> eventHandler) {
+        return new TransitionBuilder()
+                .sourceState(source)
+                .eventType(BenchmarkEvents.E0.class)
+                .eventHandler(eventHandler)
+                .targetState(target)
+                .build();
+    }
+
+    public static class Handlers {
+
+        private long toggles;
+
+        @OnTransition(from = "s0", event = BenchmarkEvents.E0.class, to = "s1")
+        @OnTransition(from = "s1", event = BenchmarkEvents.E0.class, to = "s0")
+        public void toggle(final Event event) {
+            toggles++;
+        }
+
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.processor;
+
+import org.jeasy.states.annotation.OnTransition;
+import org.jeasy.states.annotation.StateMachine;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Annotation processor generating a dedicated {@link org.jeasy.states.api.FiniteStateMachine} implementation
+ * for each type annotated with {@link StateMachine}.
+ *
+ * The definition is validated at compile time: states, transitions and event handler methods that are not valid
+ * are reported as compilation errors. The generated {@code fire} method is a {@code switch} on the current
+ * state ordinal nested with a {@code switch} on the fired event type, which calls event handler methods directly.
+ * Transitions declared for a supertype of the fired event apply as well, the most specific type being preferred.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+@SupportedAnnotationTypes("org.jeasy.states.annotation.StateMachine")
+public class StateMachineProcessor extends AbstractProcessor {
+
+    static final String GENERATED_CLASS_SUFFIX = "StateMachine";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnvironment) {
+        for (Element element : roundEnvironment.getElementsAnnotatedWith(StateMachine.class)) {
+            Definition definition = readDefinition((TypeElement) element);
+            if (definition != null) {
+                writeStateMachine(definition);
+            }
+        }
+        return true;
+    }
+
+    private Definition readDefinition(final TypeElement type) {
+        StateMachine stateMachine = type.getAnnotation(StateMachine.class);
+        Definition definition = new Definition(type);
+        boolean valid = true;
+
+        List<String> states = new ArrayList<>(Arrays.asList(stateMachine.states()));
+        if (states.isEmpty() && type.getKind() == ElementKind.ENUM) {
+            for (Element enclosed : type.getEnclosedElements()) {
+                if (enclosed.getKind() == ElementKind.ENUM_CONSTANT) {
+                    states.add(enclosed.getSimpleName().toString());
+                }
+            }
+        }
+        if (new LinkedHashSet<>(states).size() != states.size()) {
+            valid = error(type, "State names must be unique: " + states);
+        }
+        definition.states.addAll(states);
+
+        definition.initialState = states.indexOf(stateMachine.initialState());
+        if (definition.initialState < 0) {
+            valid = error(type, "Initial state '" + stateMachine.initialState() + "' must belong to FSM states: " + states);
+        }
+        for (String finalState : stateMachine.finalStates()) {
+            int ordinal = states.indexOf(finalState);
+            if (ordinal < 0) {
+                valid = error(type, "Final state '" + finalState + "' must belong to FSM states: " + states);
+            } else {
+                definition.finalStates.add(ordinal);
+            }
+        }
+
+        for (OnTransition onTransition : type.getAnnotationsByType(OnTransition.class)) {
+            valid &= addTransition(definition, type, onTransition, null);
+        }
+        for (Element enclosed : type.getEnclosedElements()) {
+            if (enclosed.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+            for (OnTransition onTransition : enclosed.getAnnotationsByType(OnTransition.class)) {
+                valid &= addTransition(definition, enclosed, onTransition, (ExecutableElement) enclosed);
+            }
+        }
+        return valid ? definition : null;
+    }
+
+    private boolean addTransition(final Definition definition, final Element element,
+                                  final OnTransition onTransition, final ExecutableElement handler) {
+        Types types = processingEnv.getTypeUtils();
+        boolean valid = true;
+        TransitionDefinition transition = new TransitionDefinition();
+        transition.name = onTransition.name();
+        transition.source = definition.states.indexOf(onTransition.from());
+        transition.target = definition.states.indexOf(onTransition.to());
+        transition.eventType = types.erasure(eventType(onTransition));
+        transition.handler = handler;
+        if (transition.source < 0) {
+            valid = error(element, "Source state '" + onTransition.from() + "' of transition '" + transition.name + "' must belong to FSM states: " + definition.states);
+        }
+        if (transition.target < 0) {
+            valid = error(element, "Target state '" + onTransition.to() + "' of transition '" + transition.name + "' must belong to FSM states: " + definition.states);
+        }
+        for (TransitionDefinition other : definition.transitions) {
+            if (other.source == transition.source && types.isSameType(other.eventType, transition.eventType)) {
+                valid = error(element, "Transition '" + transition.name + "' is already defined from state '" + onTransition.from() + "' for event type " + transition.eventType);
+            }
+        }
+        if (handler != null) {
+            if (handler.getModifiers().contains(Modifier.PRIVATE)) {
+                valid = error(handler, "Event handler method " + handler.getSimpleName() + " must not be private");
+            }
+            if (!handler.getModifiers().contains(Modifier.STATIC) && definition.type.getKind() == ElementKind.ENUM) {
+                valid = error(handler, "Event handler methods of an enum must be static");
+            }
+            if (handler.getParameters().size() > 1) {
+                valid = error(handler, "Event handler method " + handler.getSimpleName() + " must take at most one parameter");
+            } else if (handler.getParameters().size() == 1) {
+                TypeMirror parameterType = types.erasure(handler.getParameters().get(0).asType());
+                if (!types.isAssignable(transition.eventType, parameterType)) {
+                    valid = error(handler, "Event type " + transition.eventType + " is not assignable to the parameter of event handler method " + handler.getSimpleName());
+                }
+            }
+        }
+        definition.transitions.add(transition);
+        return valid;
+    }
+
+    private static TypeMirror eventType(final OnTransition onTransition) {
+        try {
+            onTransition.event();
+            throw new IllegalStateException("Event type classes are not available at compile time");
+        } catch (MirroredTypeException e) {
+            return e.getTypeMirror();
+        }
+    }
+
+    private boolean error(final Element element, final String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+        return false;
+    }
+
+    private void writeStateMachine(final Definition definition) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(definition.type).getQualifiedName().toString();
+        String className = generatedClassName(definition.type);
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, definition.type);
+            try (Writer writer = file.openWriter()) {
+                writer.write(new StateMachineWriter(processingEnv.getTypeUtils(), definition, packageName, className).write());
+            }
+        } catch (IOException e) {
+            error(definition.type, "Unable to write generated state machine " + qualifiedName + ": " + e.getMessage());
+        }
+    }
+
+    static String generatedClassName(final TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+            name.insert(0, enclosing.getSimpleName() + "_");
+        }
+        return name.append(GENERATED_CLASS_SUFFIX).toString();
+    }
+
+    /**
+     * Machine declared by a type annotated with {@link StateMachine}.
+     */
+    static final class Definition {
+
+        final TypeElement type;
+        final List<String> states = new ArrayList<>();
+        final Set<Integer> finalStates = new LinkedHashSet<>();
+        final List<TransitionDefinition> transitions = new ArrayList<>();
+        int initialState;
+
+        Definition(final TypeElement type) {
+            this.type = type;
+        }
+    }
+
+    /**
+     * Transition declared with {@link OnTransition}.
+     */
+    static final class TransitionDefinition {
+
+        String name;
+        int source;
+        int target;
+        TypeMirror eventType;
+        ExecutableElement handler;
+    }
+
+}
@@ -0,0 +1,347 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.processor;
+
+import org.jeasy.states.processor.StateMachineProcessor.Definition;
+import org.jeasy.states.processor.StateMachineProcessor.TransitionDefinition;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Write the source code of the {@link org.jeasy.states.api.FiniteStateMachine} implementation of a {@link Definition}.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+class StateMachineWriter {
+
+    private final Types types;
+    private final Definition definition;
+    private final String packageName;
+    private final String className;
+    private final String typeName;
+    private final List<TypeMirror> eventTypes;
+    private final boolean instanceHandlers;
+    private final StringBuilder source = new StringBuilder();
+
+    StateMachineWriter(final Types types, final Definition definition, final String packageName, final String className) {
+        this.types = types;
+        this.definition = definition;
+        this.packageName = packageName;
+        this.className = className;
+        this.typeName = types.erasure(definition.type.asType()).toString();
+        this.eventTypes = sortEventTypes();
+        this.instanceHandlers = definition.transitions.stream()
+                .anyMatch(transition -> transition.handler != null && !transition.handler.getModifiers().contains(Modifier.STATIC));
+    }
+
+    /*
+     * Event types are given an id such that subtypes are tested before their supertypes,
+     * so that the first declared type an event class is assignable to is its most specific one.
+     */
+    private List<TypeMirror> sortEventTypes() {
+        List<TypeMirror> remaining = new ArrayList<>();
+        for (TransitionDefinition transition : definition.transitions) {
+            if (remaining.stream().noneMatch(type -> types.isSameType(type, transition.eventType))) {
+                remaining.add(transition.eventType);
+            }
+        }
+        List<TypeMirror> sorted = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            for (TypeMirror candidate : remaining) {
+                if (remaining.stream().noneMatch(type -> type != candidate && types.isSubtype(type, candidate))) {
+                    sorted.add(candidate);
+                    remaining.remove(candidate);
+                    break;
+                }
+            }
+        }
+        return sorted;
+    }
+
+    /*
+     * Transition made from the given state for events of the given type: the one declared for the most specific
+     * supertype of the event type, or null if none.
+     */
+    private TransitionDefinition resolve(final int state, final TypeMirror eventType) {
+        TransitionDefinition resolved = null;
+        for (TransitionDefinition transition : definition.transitions) {
+            if (transition.source == state && types.isSubtype(eventType, transition.eventType)
+                    && (resolved == null || types.isSubtype(transition.eventType, resolved.eventType))) {
+                resolved = transition;
+            }
+        }
+        return resolved;
+    }
+
+    String write() {
+        if (!packageName.isEmpty()) {
+            line(0, "package " + packageName + ";");
+            line(0, "");
+        }
+        line(0, "import org.jeasy.states.api.Event;");
+        line(0, "import org.jeasy.states.api.FiniteStateMachine;");
+        line(0, "import org.jeasy.states.api.FiniteStateMachineBatchException;");
+        line(0, "import org.jeasy.states.api.FiniteStateMachineException;");
+        line(0, "import org.jeasy.states.api.State;");
+        line(0, "import org.jeasy.states.api.Transition;");
+        line(0, "import org.jeasy.states.core.TransitionBuilder;");
+        line(0, "");
+        line(0, "import java.util.Arrays;");
+        line(0, "import java.util.Collections;");
+        line(0, "import java.util.LinkedHashSet;");
+        line(0, "import java.util.Set;");
+        line(0, "");
+        line(0, "/**");
+        line(0, " * {@link FiniteStateMachine} generated from {@link " + typeName + "}. Do not edit.");
+        line(0, " */");
+        line(0, "public final class " + className + " implements FiniteStateMachine {");
+        line(0, "");
+        writeConstants();
+        if (instanceHandlers) {
+            line(1, "private final " + typeName + " handlers;");
+        }
+        line(1, "private int state;");
+        line(1, "private Event lastEvent;");
+        line(1, "private Transition lastTransition;");
+        line(0, "");
+        if (instanceHandlers) {
+            line(1, "public " + className + "(final " + typeName + " handlers) {");
+            line(2, "this.handlers = handlers;");
+        } else {
+            line(1, "public " + className + "() {");
+        }
+        line(2, "this.state = " + definition.initialState + ";");
+        line(1, "}");
+        line(0, "");
+        writeEventTypeId();
+        writeFire();
+        writeMethods();
+        line(0, "}");
+        return source.toString();
+    }
+
+    private void writeConstants() {
+        List<String> states = definition.states;
+        line(1, "private static final State[] STATES = {");
+        for (String state : states) {
+            line(3, "new State(" + literal(state) + "),");
+        }
+        line(1, "};");
+        line(0, "");
+        line(1, "private static final boolean[] FINAL = {");
+        for (int i = 0; i < states.size(); i++) {
+            line(3, definition.finalStates.contains(i) + ",");
+        }
+        line(1, "};");
+        line(0, "");
+        line(1, "private static final Transition[] TRANSITIONS = {");
+        for (TransitionDefinition transition : definition.transitions) {
+            line(3, "new TransitionBuilder().name(" + literal(transition.name) + ")"
+                    + ".sourceState(STATES[" + transition.source + "])"
+                    + ".eventType(" + transition.eventType + ".class)"
+                    + ".targetState(STATES[" + transition.target + "]).build(),");
+        }
+        line(1, "};");
+        line(0, "");
+        line(1, "private static final Set<State> STATE_SET = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(STATES)));");
+        line(1, "private static final Set<Transition> TRANSITION_SET = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(TRANSITIONS)));");
+        StringBuilder finalStates = new StringBuilder();
+        for (int finalState : definition.finalStates) {
+            finalStates.append(finalStates.length() == 0 ? "" : ", ").append("STATES[").append(finalState).append("]");
+        }
+        line(1, "private static final Set<State> FINAL_STATE_SET = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.<State>asList(" + finalStates + ")));");
+        line(0, "");
+    }
+
+    /*
+     * The id of the event type of each event class is resolved once, on the first event of this class
+     */
+    private void writeEventTypeId() {
+        line(1, "private static final ClassValue<Integer> EVENT_TYPE_IDS = new ClassValue<Integer>() {");
+        line(2, "@Override");
+        line(2, "protected Integer computeValue(final Class<?> type) {");
+        for (int i = 0; i < eventTypes.size(); i++) {
+            line(3, "if (" + types.erasure(eventTypes.get(i)) + ".class.isAssignableFrom(type)) {");
+            line(4, "return " + i + ";");
+            line(3, "}");
+        }
+        line(3, "return -1;");
+        line(2, "}");
+        line(1, "};");
+        line(0, "");
+        line(1, "private static int eventTypeId(final Event event) {");
+        line(2, "return EVENT_TYPE_IDS.get(event.getClass());");
+        line(1, "}");
+        line(0, "");
+    }
+
+    private void writeFire() {
+        line(1, "@Override");
+        line(1, "public synchronized State fire(final Event event) throws FiniteStateMachineException {");
+        line(2, "if (event == null || FINAL[state]) {");
+        line(3, "return STATES[state];");
+        line(2, "}");
+        line(2, "switch (state) {");
+        for (int state = 0; state < definition.states.size(); state++) {
+            List<String> cases = new ArrayList<>();
+            for (int id = 0; id < eventTypes.size(); id++) {
+                TransitionDefinition transition = resolve(state, eventTypes.get(id));
+                if (transition != null) {
+                    cases.add("case " + id + ":");
+                    writeTransition(cases, transition);
+                }
+            }
+            if (cases.isEmpty()) {
+                continue;
+            }
+            line(3, "case " + state + ":");
+            line(4, "switch (eventTypeId(event)) {");
+            for (String statement : cases) {
+                line(statement.startsWith("case ") ? 5 : 6, statement);
+            }
+            line(5, "default:");
+            line(6, "return STATES[state];");
+            line(4, "}");
+        }
+        line(3, "default:");
+        line(4, "return STATES[state];");
+        line(2, "}");
+        line(1, "}");
+        line(0, "");
+    }
+
+    private void writeTransition(final List<String> statements, final TransitionDefinition transition) {
+        int ordinal = definition.transitions.indexOf(transition);
+        ExecutableElement handler = transition.handler;
+        if (handler != null) {
+            String receiver = handler.getModifiers().contains(Modifier.STATIC) ? typeName : "handlers";
+            String argument = handler.getParameters().isEmpty() ? ""
+                    : "(" + types.erasure(handler.getParameters().get(0).asType()) + ") event";
+            statements.add("try {");
+            statements.add("    " + receiver + "." + handler.getSimpleName() + "(" + argument + ");");
+            statements.add("} catch (Exception e) {");
+            statements.add("    throw new FiniteStateMachineException(TRANSITIONS[" + ordinal + "], event, e);");
+            statements.add("}");
+        }
+        statements.add("state = " + transition.target + ";");
+        statements.add("lastEvent = event;");
+        statements.add("lastTransition = TRANSITIONS[" + ordinal + "];");
+        statements.add("return STATES[" + transition.target + "];");
+    }
+
+    private void writeMethods() {
+        line(1, "@Override");
+        line(1, "public synchronized State fireAll(final Iterable<? extends Event> events) throws FiniteStateMachineBatchException {");
+        line(2, "int index = 0;");
+        line(2, "for (Event event : events) {");
+        line(3, "if (FINAL[state]) {");
+        line(4, "break;");
+        line(3, "}");
+        line(3, "try {");
+        line(4, "fire(event);");
+        line(3, "} catch (FiniteStateMachineException e) {");
+        line(4, "throw new FiniteStateMachineBatchException(index, e);");
+        line(3, "}");
+        line(3, "index++;");
+        line(2, "}");
+        line(2, "return STATES[state];");
+        line(1, "}");
+        line(0, "");
+        line(1, "@Override");
+        line(1, "public synchronized void reset() {");
+        line(2, "reset(STATES[" + definition.initialState + "]);");
+        line(1, "}");
+        line(0, "");
+        line(1, "@Override");
+        line(1, "public synchronized void reset(final State state) {");
+        line(2, "for (int i = 0; i < STATES.length; i++) {");
+        line(3, "if (STATES[i].equals(state)) {");
+        line(4, "this.state = i;");
+        line(4, "this.lastEvent = null;");
+        line(4, "this.lastTransition = null;");
+        line(4, "return;");
+        line(3, "}");
+        line(2, "}");
+        line(2, "throw new IllegalArgumentException(\"State '\" + state + \"' is not registered in FSM states\");");
+        line(1, "}");
+        line(0, "");
+        getter("State getCurrentState", "STATES[state]");
+        getter("State getInitialState", "STATES[" + definition.initialState + "]");
+        getter("Set<State> getFinalStates", "FINAL_STATE_SET");
+        getter("Set<State> getStates", "STATE_SET");
+        getter("Set<Transition> getTransitions", "TRANSITION_SET");
+        getter("Event getLastEvent", "lastEvent");
+        getter("Transition getLastTransition", "lastTransition");
+    }
+
+    /*
+     * Getters are not synchronized, like the ones of FiniteStateMachineImpl
+     */
+    private void getter(final String signature, final String value) {
+        line(1, "@Override");
+        line(1, "public " + signature + "() {");
+        line(2, "return " + value + ";");
+        line(1, "}");
+        line(0, "");
+    }
+
+    private void line(final int indentation, final String line) {
+        for (int i = 0; i < indentation; i++) {
+            source.append("    ");
+        }
+        source.append(line).append('\n');
+    }
+
+    static String literal(final String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                case '\t':
+                    literal.append("\\t");
+                    break;
+                default:
+                    literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.processor;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+import org.jeasy.states.annotation.StateMachine;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class StateMachineProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> errors = new ArrayList<>();
+
+    @Test
+    public void whenClassIsAnnotated_thenStateMachineShouldBeGeneratedAndCallEventHandlers() throws Exception {
+        // Given
+        ClassLoader classLoader = compile("test.Turnstile",
+                "package test;",
+                "import org.jeasy.states.annotation.*;",
+                "import org.jeasy.states.api.*;",
+                "import java.util.*;",
+                "@StateMachine(states = {\"locked\", \"unlocked\"}, initialState = \"locked\")",
+                "@OnTransition(name = \"push\", from = \"locked\", event = Turnstile.PushEvent.class, to = \"locked\")",
+                "public class Turnstile {",
+                "    public static class PushEvent extends AbstractEvent { }",
+                "    public static class CoinEvent extends AbstractEvent { }",
+                "    public static class GoldCoinEvent extends CoinEvent { }",
+                "    public final List<String> calls = new ArrayList<>();",
+                "    @OnTransition(name = \"unlock\", from = \"locked\", event = CoinEvent.class, to = \"unlocked\")",
+                "    void unlock(CoinEvent event) { calls.add(\"unlock \" + event.getClass().getSimpleName()); }",
+                "    @OnTransition(name = \"lock\", from = \"unlocked\", event = PushEvent.class, to = \"locked\")",
+                "    void lock() throws Exception { calls.add(\"lock\"); }",
+                "}");
+        Class<?> type = classLoader.loadClass("test.Turnstile");
+        Object handlers = type.getConstructor().newInstance();
+        FiniteStateMachine stateMachine = (FiniteStateMachine) classLoader.loadClass("test.TurnstileStateMachine")
+                .getConstructor(type).newInstance(handlers);
+        AbstractEvent goldCoinEvent = (AbstractEvent) classLoader.loadClass("test.Turnstile$GoldCoinEvent").getConstructor().newInstance();
+        AbstractEvent pushEvent = (AbstractEvent) classLoader.loadClass("test.Turnstile$PushEvent").getConstructor().newInstance();
+
+        // When
+        State state = stateMachine.fire(goldCoinEvent);
+
+        // Then
+        assertThat(state.getName()).isEqualTo("unlocked");
+        assertThat(stateMachine.getLastTransition().getName()).isEqualTo("unlock");
+        assertThat(stateMachine.getLastEvent()).isSameAs(goldCoinEvent);
+        assertThat(stateMachine.fire(goldCoinEvent).getName()).isEqualTo("unlocked");
+        assertThat(stateMachine.fire(pushEvent).getName()).isEqualTo("locked");
+        assertThat(stateMachine.fire(pushEvent).getName()).isEqualTo("locked");
+        assertThat(type.getField("calls").get(handlers)).isEqualTo(Arrays.asList("unlock GoldCoinEvent", "lock"));
+        assertThat(stateMachine.getStates()).extracting(State::getName).containsExactly("locked", "unlocked");
+        assertThat(stateMachine.getTransitions()).hasSize(3);
+        assertThat(stateMachine.fire(new AbstractEvent() { }).getName()).isEqualTo("locked");
+        assertThat(Modifier.isSynchronized(stateMachine.getClass().getMethod("getCurrentState").getModifiers())).isFalse();
+    }
+
+    @Test
+    public void whenEnumIsAnnotated_thenStatesShouldBeEnumConstants() throws Exception {
+        // Given
+        ClassLoader classLoader = compile("test.Order",
+                "package test;",
+                "import org.jeasy.states.annotation.*;",
+                "import org.jeasy.states.api.*;",
+                "@StateMachine(initialState = \"NEW\", finalStates = \"PAID\")",
+                "public enum Order {",
+                "    NEW, PAID;",
+                "    public static class PayEvent extends AbstractEvent { }",
+                "    @OnTransition(from = \"NEW\", event = PayEvent.class, to = \"PAID\")",
+                "    static void pay() { throw new IllegalStateException(\"declined\"); }",
+                "}");
+        FiniteStateMachine stateMachine = (FiniteStateMachine) classLoader.loadClass("test.OrderStateMachine").getConstructor().newInstance();
+        AbstractEvent payEvent = (AbstractEvent) classLoader.loadClass("test.Order$PayEvent").getConstructor().newInstance();
+
+        // When
+        try {
+            stateMachine.fire(payEvent);
+            fail("A FiniteStateMachineException should have been thrown");
+        } catch (FiniteStateMachineException e) {
+            // Then
+            assertThat(e.getCause()).hasMessage("declined");
+        }
+        assertThat(stateMachine.getCurrentState().getName()).isEqualTo("NEW");
+        assertThat(stateMachine.getFinalStates()).containsExactly(new State("PAID"));
+
+        stateMachine.reset(new State("PAID"));
+        assertThat(stateMachine.fire(payEvent).getName()).isEqualTo("PAID");
+    }
+
+    @Test
+    public void whenDefinitionIsNotValid_thenCompilationShouldFail() throws Exception {
+        // When
+        compile("test.Invalid",
+                "package test;",
+                "import org.jeasy.states.annotation.*;",
+                "import org.jeasy.states.api.*;",
+                "@StateMachine(states = {\"s1\", \"s2\"}, initialState = \"s0\")",
+                "public class Invalid {",
+                "    public static class MoveEvent extends AbstractEvent { }",
+                "    @OnTransition(from = \"s1\", event = MoveEvent.class, to = \"s3\")",
+                "    private void move(String argument) { }",
+                "}");
+
+        // Then
+        assertThat(errors).contains(
+                "Initial state 's0' must belong to FSM states: [s1, s2]",
+                "Target state 's3' of transition 'transition' must belong to FSM states: [s1, s2]",
+                "Event handler method move must not be private",
+                "Event type test.Invalid.MoveEvent is not assignable to the parameter of event handler method move");
+    }
+
+    private ClassLoader compile(String className, String... lines) throws Exception {
+        Path sources = folder.newFolder("sources").toPath();
+        Path classes = folder.newFolder("classes").toPath();
+        Path source = sources.resolve(className.replace('.', File.separatorChar) + ".java");
+        Files.createDirectories(source.getParent());
+        Files.write(source, Arrays.asList(lines), StandardCharsets.UTF_8);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            String classPath = Arrays.asList(location(StateMachine.class), location(FiniteStateMachine.class)).stream()
+                    .distinct().collect(Collectors.joining(File.pathSeparator));
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList("-classpath", classPath, "-d", classes.toString(), "-s", classes.toString()),
+                    null, fileManager.getJavaFileObjects(source.toFile()));
+            task.setProcessors(Arrays.asList(new StateMachineProcessor()));
+            task.call();
+        }
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(null));
+            }
+        }
+        return new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader());
+    }
+
+    private static String location(Class<?> type) throws Exception {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declare a finite state machine on a class or an enum. Transitions are declared with {@link OnTransition}
+ * on the annotated type (transitions without event handler) and on its methods (transitions whose event handler
+ * is the annotated method).
+ *
+ * When the easy-states-processor annotation processor is on the compiler path, a dedicated implementation of
+ * {@link org.jeasy.states.api.FiniteStateMachine} named {@code <TypeName>StateMachine} is generated
+ * in the package of the annotated type, and the definition is validated at compile time.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface StateMachine {
+
+    /**
+     * Names of the states of the machine. If empty and the annotated type is an enum,
+     * the names of the enum constants are used.
+     * @return names of the states
+     */
+    String[] states() default {};
+
+    /**
+     * Name of the initial state of the machine.
+     * @return name of the initial state
+     */
+    String initialState();
+
+    /**
+     * Names of the final states of the machine.
+     * @return names of the final states
+     */
+    String[] finalStates() default {};
+
+}
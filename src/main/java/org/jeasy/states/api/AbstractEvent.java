@@ -25,26 +25,62 @@ package org.jeasy.states.api;
 
 import org.jeasy.states.util.Utils;
 
-import java.util.Date;
-
 /**
  * Abstract class for events to which a FSM should react and make transitions.
+ * The timestamp of an event is the current time of the event clock when the event is created
+ * (see {@link #setClock(EventClock)}), or when its timestamp is first read if the clock is lazy
+ * (see {@link EventClock#lazy(EventClock)}). Lazy timestamps should be read by the thread
+ * which created the event, or once the event is safely published. An event keeps the clock which gave its timestamp,
+ * which reads lazy timestamps and formats the timestamp in {@link #toString()}.
  *
  * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
  */
 public abstract class AbstractEvent implements Event {
 
+    /**
+     * Timestamp of an event whose clock was not read yet.
+     */
+    static final long UNSET_TIMESTAMP = Long.MIN_VALUE;
+
+    private static volatile EventClock clock = EventClock.system();
+
     protected String name;
     protected long timestamp;
+    private EventClock timestampClock;
 
     protected AbstractEvent() {
         this.name = Utils.DEFAULT_EVENT_NAME;
-        timestamp = System.currentTimeMillis();
+        resetTimestamp();
     }
 
     protected AbstractEvent(final String name) {
         this.name = name;
-        timestamp = System.currentTimeMillis();
+        resetTimestamp();
+    }
+
+    protected AbstractEvent(final String name, final long timestamp) {
+        this.name = name;
+        this.timestamp = timestamp;
+        this.timestampClock = clock;
+    }
+
+    /**
+     * Set the clock giving the timestamp of events created from now on. Defaults to {@link EventClock#system()}.
+     * @param clock of events
+     */
+    public static void setClock(final EventClock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Event clock must not be null");
+        }
+        AbstractEvent.clock = clock;
+    }
+
+    /**
+     * Return the clock giving the timestamp of events.
+     * @return the clock of events
+     */
+    public static EventClock getClock() {
+        return clock;
     }
 
     public String getName() {
@@ -52,14 +88,40 @@ public abstract class AbstractEvent implements Event {
     }
 
     public long getTimestamp() {
-        return timestamp;
+        long time = timestamp;
+        if (time == UNSET_TIMESTAMP) {
+            time = timestampClock.currentTime();
+            timestamp = time;
+        }
+        return time;
+    }
+
+    /**
+     * Set the timestamp of the event to the current time of the event clock, or leave it unset if the clock is lazy.
+     */
+    final void resetTimestamp() {
+        EventClock eventClock = clock;
+        timestampClock = eventClock;
+        timestamp = eventClock instanceof LazyEventClock ? UNSET_TIMESTAMP : eventClock.currentTime();
+    }
+
+    /**
+     * Set the timestamp of the event to the given time of the current event clock.
+     */
+    final void resetTimestamp(final long time) {
+        timestampClock = clock;
+        timestamp = time;
     }
 
+    /**
+     * {@inheritDoc}
+     * The timestamp is formatted by the clock which gave it, and is not read if it is lazy.
+     */
     @Override
     public String toString() {
         return "Event" +
                 "{name='" + name + '\'' +
-                ", timestamp=" + new Date(timestamp) +
+                ", timestamp=" + (timestamp == UNSET_TIMESTAMP ? "unset" : timestampClock.format(timestamp)) +
                 '}';
     }
 
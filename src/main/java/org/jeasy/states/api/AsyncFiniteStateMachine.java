@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.api;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous FSM interface. Fired events are queued in the machine mailbox and processed
+ * one at a time, in the order they were fired, by an executor. Producers never block.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public interface AsyncFiniteStateMachine {
+
+    /**
+     * Fire an event asynchronously. According to event type, the FSM will make the right transition.
+     * @param event to fire
+     * @return a future completed with the next FSM state defined by the transition to make, or completed
+     * exceptionally with a {@link FiniteStateMachineException} if an exception occurs during event handling
+     */
+    CompletableFuture<State> fireAsync(Event event);
+
+    /**
+     * Fire an event without payload asynchronously by its code (see {@link #fireAsync(int, long)}).
+     * @param eventCode code of the event to fire
+     * @return a future completed with the next FSM state defined by the transition to make
+     */
+    default CompletableFuture<State> fireAsync(int eventCode) {
+        return fireAsync(eventCode, 0L);
+    }
+
+    /**
+     * Fire an event asynchronously by the code registered for its type, without creating an event object
+     * (see {@link FiniteStateMachine#fire(int, long)}). Coded events are queued in the mailbox with other events.
+     * @param eventCode code of the event to fire
+     * @param payload of the event
+     * @return a future completed with the next FSM state defined by the transition to make, or completed
+     * exceptionally with a {@link FiniteStateMachineException} if an exception occurs during event handling
+     * or with an {@link IllegalArgumentException} if the code is not registered
+     */
+    CompletableFuture<State> fireAsync(int eventCode, long payload);
+
+    /**
+     * Return current FSM state. Events that are still in the mailbox are not taken into account.
+     * @return current FSM state
+     */
+    State getCurrentState();
+
+    /**
+     * Return the last processed event.
+     * @return the last processed event
+     */
+    Event getLastEvent();
+
+    /**
+     * Return the last transition made.
+     * @return the last transition made
+     */
+    Transition getLastTransition();
+
+    /**
+     * Return the definition of this FSM.
+     * @return the FSM definition
+     */
+    FiniteStateMachineDefinition getDefinition();
+
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.api;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Coarse clock (see {@link EventClock#cached(long)}). All coarse clocks are refreshed by a single daemon thread,
+ * which ticks with the shortest period of the clocks and refreshes each clock before its time gets older than its period.
+ */
+final class CachedEventClock implements EventClock {
+
+    private static final ConcurrentMap<Long, CachedEventClock> CLOCKS = new ConcurrentHashMap<>();
+    private static volatile long tickMillis = Long.MAX_VALUE;
+    private static Thread ticker;
+
+    private final long periodMillis;
+    private volatile long currentTime;
+
+    /**
+     * Return the clock of the given period, created by the first call.
+     */
+    static CachedEventClock of(final long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Clock period must be positive: " + periodMillis);
+        }
+        CachedEventClock clock = CLOCKS.get(periodMillis);
+        return clock != null ? clock : register(periodMillis);
+    }
+
+    private static synchronized CachedEventClock register(final long periodMillis) {
+        CachedEventClock clock = CLOCKS.computeIfAbsent(periodMillis, CachedEventClock::new);
+        if (periodMillis < tickMillis) {
+            tickMillis = periodMillis;
+            if (ticker == null) {
+                ticker = new Thread(CachedEventClock::tick, "easy-states-event-clock");
+                ticker.setDaemon(true);
+                ticker.start();
+            } else {
+                // tick with the new shortest period from now on
+                LockSupport.unpark(ticker);
+            }
+        }
+        return clock;
+    }
+
+    private static void tick() {
+        for (;;) {
+            long tick = tickMillis;
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(tick));
+            long now = System.currentTimeMillis();
+            for (CachedEventClock clock : CLOCKS.values()) {
+                // refresh the clock if it would be older than its period at the next tick
+                if (now - clock.currentTime + tick > clock.periodMillis) {
+                    clock.currentTime = now;
+                }
+            }
+        }
+    }
+
+    private CachedEventClock(final long periodMillis) {
+        this.periodMillis = periodMillis;
+        this.currentTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public long currentTime() {
+        return currentTime;
+    }
+
+    @Override
+    public String format(final long time) {
+        return new Date(time).toString();
+    }
+
+}
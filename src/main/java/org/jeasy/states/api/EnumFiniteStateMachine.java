@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.api;
+
+import java.util.Set;
+
+/**
+ * FSM whose states are the constants of an enum.
+ *
+ * @param <S> type of the states
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public interface EnumFiniteStateMachine<S extends Enum<S>> {
+
+    /**
+     * Return current FSM state.
+     * @return current FSM state
+     */
+    S getCurrentState();
+
+    /**
+     * Return FSM initial state.
+     * @return FSM initial state
+     */
+    S getInitialState();
+
+    /**
+     * Return FSM final states.
+     * @return FSM final states
+     */
+    Set<S> getFinalStates();
+
+    /**
+     * Return the last triggered event.
+     * @return the last triggered event
+     */
+    Event getLastEvent();
+
+    /**
+     * Return the last transition made.
+     * @return the last transition made
+     */
+    Transition getLastTransition();
+
+    /**
+     * Fire an event. According to event type, the FSM will make the right transition.
+     * @param event to fire
+     * @return The next FSM state defined by the transition to make
+     * @throws FiniteStateMachineException thrown if an exception occurs during event handling
+     */
+    S fire(Event event) throws FiniteStateMachineException;
+
+    /**
+     * Fire an event without payload by its code (see {@link #fire(int, long)}).
+     * @param eventCode code of the event to fire
+     * @return The next FSM state defined by the transition to make
+     * @throws FiniteStateMachineException thrown if an exception occurs during event handling
+     */
+    default S fire(int eventCode) throws FiniteStateMachineException {
+        return fire(eventCode, 0L);
+    }
+
+    /**
+     * Fire an event by the code registered for its type, without creating an event object
+     * (see {@link FiniteStateMachine#fire(int, long)}).
+     * If the code is not registered, this method throws an {@link IllegalArgumentException}.
+     * @param eventCode code of the event to fire
+     * @param payload of the event
+     * @return The next FSM state defined by the transition to make
+     * @throws FiniteStateMachineException thrown if an exception occurs during event handling
+     */
+    S fire(int eventCode, long payload) throws FiniteStateMachineException;
+
+    /**
+     * Fire a batch of events, in order. Once the FSM is in a final state, remaining events are ignored.
+     * @param events to fire
+     * @return The FSM state once all events have been processed
+     * @throws FiniteStateMachineBatchException thrown if an exception occurs during the handling of an event,
+     * in which case previous events of the batch have been processed and next events have not
+     */
+    S fireAll(Iterable<? extends Event> events) throws FiniteStateMachineBatchException;
+
+    /**
+     * Reset the FSM to its initial state and forget the last triggered event and transition.
+     */
+    void reset();
+
+    /**
+     * Reset the FSM to the given state and forget the last triggered event and transition.
+     * @param state the state in which the FSM should be
+     */
+    void reset(S state);
+
+}
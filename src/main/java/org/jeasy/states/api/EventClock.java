@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.api;
+
+/**
+ * Source of the timestamps of events created by {@link AbstractEvent} (see {@link AbstractEvent#setClock(EventClock)}).
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+@FunctionalInterface
+public interface EventClock {
+
+    /**
+     * Return the current time.
+     * @return the current time, in the unit of the clock
+     */
+    long currentTime();
+
+    /**
+     * Format a time of this clock, for example in the string representation of an event.
+     * By default, the time is formatted as a number.
+     * @param time of this clock
+     * @return the formatted time
+     */
+    default String format(final long time) {
+        return Long.toString(time);
+    }
+
+    /**
+     * Return the system clock: the current time in milliseconds since the epoch, formatted as a date.
+     * This is the default clock.
+     * @return the system clock
+     */
+    static EventClock system() {
+        return StandardEventClock.SYSTEM;
+    }
+
+    /**
+     * Return a monotonic clock: the value of {@link System#nanoTime()}, which is only meaningful to measure
+     * the time elapsed between two events.
+     * @return a monotonic clock
+     */
+    static EventClock monotonic() {
+        return StandardEventClock.MONOTONIC;
+    }
+
+    /**
+     * Return a clock whose current time is always 0, for events whose timestamp is not used.
+     * @return a clock returning 0
+     */
+    static EventClock none() {
+        return StandardEventClock.NONE;
+    }
+
+    /**
+     * Return a coarse clock: the time in milliseconds since the epoch, read from a field refreshed by a daemon thread
+     * every given period, so that reading the time is a volatile read instead of a system call.
+     * Coarse clocks are shared: all calls with the same period return the same clock, and all coarse clocks
+     * are refreshed by a single daemon thread, whatever their period.
+     * @param periodMillis refresh period of the clock in milliseconds
+     * @return a coarse clock
+     */
+    static EventClock cached(final long periodMillis) {
+        return CachedEventClock.of(periodMillis);
+    }
+
+    /**
+     * Return a lazy version of the given clock: events created while it is the clock of events
+     * (see {@link AbstractEvent#setClock(EventClock)}) read the clock when their timestamp is first read
+     * instead of when they are created, so that creating an event does not read the clock.
+     * The timestamp of an event is then the time of the first read of its timestamp.
+     * @param clock read lazily
+     * @return a lazy clock
+     */
+    static EventClock lazy(final EventClock clock) {
+        return new LazyEventClock(clock);
+    }
+
+}
@@ -82,4 +82,76 @@ public interface FiniteStateMachine {
      */
     State fire(Event event) throws FiniteStateMachineException;
 
+    /**
+     * Fire an event without payload by its code (see {@link #fire(int, long)}).
+     * @param eventCode code of the event to fire
+     * @return The next FSM state defined by the transition to make
+     * @throws FiniteStateMachineException thrown if an exception occurs during event handling
+     */
+    default State fire(int eventCode) throws FiniteStateMachineException {
+        return fire(eventCode, 0L);
+    }
+
+    /**
+     * Fire an event by the code registered for its type, without creating an event object.
+     * The transition to make is the one made for events of this type and its {@link CodedEventHandler}, if any,
+     * receives the code and the payload. Transition listeners are notified with a null event.
+     * If the code is not registered, this method throws an {@link IllegalArgumentException}.
+     * FSM instances created by Easy States, including journaled ones, can always fire events by code; other
+     * implementations throw an {@link UnsupportedOperationException} unless they override this method.
+     * See also {@link AsyncFiniteStateMachine#fireAsync(int, long)} and {@link EnumFiniteStateMachine#fire(int, long)}.
+     * @param eventCode code of the event to fire
+     * @param payload of the event
+     * @return The next FSM state defined by the transition to make
+     * @throws FiniteStateMachineException thrown if an exception occurs during event handling
+     */
+    default State fire(int eventCode, long payload) throws FiniteStateMachineException {
+        throw new UnsupportedOperationException("Events can not be fired by code on " + getClass().getName());
+    }
+
+    /**
+     * Fire a batch of events, in order. Once the FSM is in a final state, remaining events are ignored.
+     * FSM instances created by Easy States process the batch as a whole, so concurrent events can not be interleaved
+     * with events of the batch. By default, events are fired one by one with {@link #fire(Event)}.
+     * @param events to fire
+     * @return The FSM state once all events have been processed
+     * @throws FiniteStateMachineBatchException thrown if an exception occurs during the handling of an event,
+     * in which case previous events of the batch have been processed and next events have not
+     */
+    default State fireAll(Iterable<? extends Event> events) throws FiniteStateMachineBatchException {
+        int index = 0;
+        for (Event event : events) {
+            if (getFinalStates().contains(getCurrentState())) {
+                break;
+            }
+            try {
+                fire(event);
+            } catch (FiniteStateMachineException e) {
+                throw new FiniteStateMachineBatchException(index, e);
+            }
+            index++;
+        }
+        return getCurrentState();
+    }
+
+    /**
+     * Reset the FSM to its initial state and forget the last triggered event and transition.
+     * This allows to reuse (pool) FSM instances.
+     * If the FSM can not be reset, this method throws an {@link UnsupportedOperationException}.
+     */
+    default void reset() {
+        reset(getInitialState());
+    }
+
+    /**
+     * Reset the FSM to the given state and forget the last triggered event and transition.
+     * If the state is not registered in FSM states, this method throws an {@link IllegalArgumentException}.
+     * FSM instances created by Easy States can always be reset; other implementations throw an
+     * {@link UnsupportedOperationException} unless they override this method.
+     * @param state the state in which the FSM should be
+     */
+    default void reset(State state) {
+        throw new UnsupportedOperationException("FSM instances of type " + getClass().getName() + " can not be reset");
+    }
+
 }
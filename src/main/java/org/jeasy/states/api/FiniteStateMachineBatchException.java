@@ -0,0 +1,59 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.api;
+
+/**
+ * Exception thrown if a problem occurs during the handling of an event of a batch.
+ * In addition to the {@link Transition} and {@link Event} related to the exception,
+ * this class gives access to the index of the failing event in the batch.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public class FiniteStateMachineBatchException extends FiniteStateMachineException {
+
+    /**
+     * The index of the failing event in the batch.
+     */
+    private final int eventIndex;
+
+    /**
+     * Create a new {@link FiniteStateMachineBatchException}.
+     *
+     * @param eventIndex index of the failing event in the batch
+     * @param exception the exception that occurred during the handling of the failing event
+     */
+    public FiniteStateMachineBatchException(final int eventIndex, final FiniteStateMachineException exception) {
+        super(exception.getTransition(), exception.getEvent(), exception.getCause());
+        this.eventIndex = eventIndex;
+    }
+
+    /**
+     * Get the index of the failing event in the batch.
+     * Events before this index have been processed, events after it have not.
+     * @return the index of the failing event in the batch
+     */
+    public int getEventIndex() {
+        return eventIndex;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.api;
+
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Immutable definition of a finite state machine (states, transitions and final states).
+ * A definition is built and validated once and can be safely shared between threads
+ * to create any number of lightweight FSM instances.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public interface FiniteStateMachineDefinition extends AutoCloseable {
+
+    /**
+     * Return FSM initial state.
+     * @return FSM initial state
+     */
+    State getInitialState();
+
+    /**
+     * Return FSM final states.
+     * @return FSM final states
+     */
+    Set<State> getFinalStates();
+
+    /**
+     * Return FSM registered states.
+     * @return FSM registered states
+     */
+    Set<State> getStates();
+
+    /**
+     * Return FSM registered transitions.
+     * @return FSM registered transitions
+     */
+    Set<Transition> getTransitions();
+
+    /**
+     * Create a new FSM instance of this definition, in the initial state.
+     * @return a new FSM instance
+     */
+    FiniteStateMachine newInstance();
+
+    /**
+     * Create a new FSM instance of this definition, in the given state.
+     * If the state is not registered in FSM states, this method throws an {@link IllegalArgumentException}.
+     * @param currentState the state in which the FSM instance should be
+     * @return a new FSM instance
+     */
+    FiniteStateMachine newInstance(State currentState);
+
+    /**
+     * Create a new asynchronous FSM instance of this definition, in the initial state.
+     * Events fired on the instance are processed by the given executor, which can be shared by many instances.
+     * @param executor processing fired events
+     * @return a new asynchronous FSM instance
+     */
+    AsyncFiniteStateMachine newAsyncInstance(Executor executor);
+
+    /**
+     * Create a new asynchronous FSM instance of this definition, in the given state.
+     * If the state is not registered in FSM states, this method throws an {@link IllegalArgumentException}.
+     * @param currentState the state in which the FSM instance should be
+     * @param executor processing fired events
+     * @return a new asynchronous FSM instance
+     */
+    AsyncFiniteStateMachine newAsyncInstance(State currentState, Executor executor);
+
+    /**
+     * Release the resources of this definition, such as its metrics registered in the platform MBean server,
+     * once its FSM instances are discarded. Closing a definition twice is a no-op.
+     */
+    @Override
+    default void close() {
+        // no resources by default
+    }
+
+}
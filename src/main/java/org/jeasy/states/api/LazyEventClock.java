@@ -0,0 +1,51 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.api;
+
+/**
+ * Clock read by events on the first read of their timestamp instead of when they are created
+ * (see {@link EventClock#lazy(EventClock)}).
+ */
+final class LazyEventClock implements EventClock {
+
+    private final EventClock clock;
+
+    LazyEventClock(final EventClock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Event clock must not be null");
+        }
+        this.clock = clock instanceof LazyEventClock ? ((LazyEventClock) clock).clock : clock;
+    }
+
+    @Override
+    public long currentTime() {
+        return clock.currentTime();
+    }
+
+    @Override
+    public String format(final long time) {
+        return clock.format(time);
+    }
+
+}
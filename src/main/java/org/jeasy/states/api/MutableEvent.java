@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.api;
+
+/**
+ * Event which can be reset and reused, for example by a pool of events, instead of being created for each occurrence.
+ * An event must not be reset while a FSM may still use it, for example as its last event.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public abstract class MutableEvent extends AbstractEvent {
+
+    protected MutableEvent() {
+        super();
+    }
+
+    protected MutableEvent(final String name) {
+        super(name);
+    }
+
+    /**
+     * Reset the timestamp of the event to the current time of the event clock,
+     * or to the time of its next read if the clock is lazy.
+     * @return this event
+     */
+    public MutableEvent reset() {
+        resetTimestamp();
+        return this;
+    }
+
+    /**
+     * Reset the timestamp of the event to a time of the current event clock.
+     * @param timestamp of the event
+     * @return this event
+     */
+    public MutableEvent reset(final long timestamp) {
+        resetTimestamp(timestamp);
+        return this;
+    }
+
+    /**
+     * Set the name of the event.
+     * @param name of the event
+     */
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+}
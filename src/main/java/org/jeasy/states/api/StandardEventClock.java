@@ -0,0 +1,64 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.api;
+
+import java.util.Date;
+
+/**
+ * Clocks returned by {@link EventClock#system()}, {@link EventClock#monotonic()} and {@link EventClock#none()}.
+ */
+enum StandardEventClock implements EventClock {
+
+    SYSTEM {
+        @Override
+        public long currentTime() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public String format(final long time) {
+            return new Date(time).toString();
+        }
+    },
+
+    MONOTONIC {
+        @Override
+        public long currentTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public String format(final long time) {
+            return time + "ns";
+        }
+    },
+
+    NONE {
+        @Override
+        public long currentTime() {
+            return 0L;
+        }
+    }
+
+}
@@ -27,11 +27,15 @@ package org.jeasy.states.api;
  * A class representing a FSM state.
  * <strong>States have unique names within a FSM instance</strong>
  *
+ * A state can be nested in a parent state: it then inherits the transitions of its parent (and of the parent's ancestors)
+ * for the event types it does not handle itself, so that transitions shared by several states are registered once on their parent.
+ *
  * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
  */
 public class State {
 
     private final String name;
+    private final State parent;
 
     /**
      * Create a new {@link State}.
@@ -39,7 +43,18 @@ public class State {
      * @param name of the state
      */
     public State(final String name) {
+        this(name, null);
+    }
+
+    /**
+     * Create a new {@link State} nested in a parent state. The parent state must be registered in FSM states as well.
+     *
+     * @param name of the state
+     * @param parent state of the state
+     */
+    public State(final String name, final State parent) {
         this.name = name;
+        this.parent = parent;
     }
 
     /**
@@ -50,6 +65,14 @@ public class State {
         return name;
     }
 
+    /**
+     * Get the parent state.
+     * @return the parent state or null if the state is not nested
+     */
+    public State getParent() {
+        return parent;
+    }
+
     /*
      * States have unique name within a Easy States FSM instance
      */
@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event fired to a FSM instance which stayed in a state longer than the timeout declared for this state.
+ * Transitions upon this event type are registered like transitions upon any other event type.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public class StateTimeoutEvent extends AbstractEvent {
+
+    private final State state;
+    private final long timeoutNanos;
+
+    /**
+     * Create a new {@link StateTimeoutEvent}.
+     *
+     * @param state in which the timeout expired
+     * @param timeoutNanos timeout of the state in nanoseconds
+     */
+    public StateTimeoutEvent(final State state, final long timeoutNanos) {
+        super("StateTimeoutEvent");
+        this.state = state;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    /**
+     * Return the state in which the timeout expired.
+     * @return the state in which the timeout expired
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Return the timeout of the state.
+     * @param unit of the returned timeout
+     * @return the timeout of the state
+     */
+    public long getTimeout(final TimeUnit unit) {
+        return unit.convert(timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "StateTimeoutEvent" +
+                "{state=" + state +
+                ", timeout=" + timeoutNanos + "ns" +
+                '}';
+    }
+
+}
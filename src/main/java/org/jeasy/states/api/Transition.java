@@ -23,9 +23,14 @@
  */
 package org.jeasy.states.api;
 
+import java.util.function.Predicate;
+
 /**
  * Abstraction for a FSM transition.
- * <strong>Transitions are unique according to source state and triggering event type.</strong>
+ * <strong>Transitions are unique according to source state, triggering event type and guard.</strong>
+ * Several guarded transitions can be defined for the same source state and event type: they are evaluated
+ * in registration order and the first one whose guard accepts the fired event is made. The transition without guard,
+ * if any, is made when no guard accepts the event.
  *
  * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
  */
@@ -51,6 +56,8 @@ public interface Transition  {
 
     /**
      * Return fired event type upon which the transition should be made.
+     * The transition is made for events of this type and of its subtypes, unless a transition
+     * is declared for a more specific type of the fired event.
      * @return Event type class
      */
     Class<? extends Event> getEventType();
@@ -61,4 +68,21 @@ public interface Transition  {
      */
     EventHandler getEventHandler();
 
+    /**
+     * Return the guard that a fired event must satisfy for the transition to be made.
+     * Guards should be side-effect free.
+     * @return transition guard or null if the transition is not guarded
+     */
+    default Predicate<? super Event> getGuard() {
+        return null;
+    }
+
+    /**
+     * Return the handler executed when the transition is made upon an event fired by its code.
+     * @return transition coded event handler or null if none
+     */
+    default CodedEventHandler getCodedEventHandler() {
+        return null;
+    }
+
 }
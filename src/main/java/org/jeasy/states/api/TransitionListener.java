@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.api;
+
+/**
+ * Callbacks notified by FSM instances of the events they process.
+ * Listeners are called synchronously by the thread firing events and should therefore be fast.
+ * They should not fire events on the FSM instance which notifies them.
+ * All methods do nothing by default.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public interface TransitionListener {
+
+    /**
+     * Called before the event handler of a transition is executed.
+     * @param transition about to be made
+     * @param event fired
+     */
+    default void beforeTransition(Transition transition, Event event) {
+    }
+
+    /**
+     * Called once the FSM instance has transited to the target state of a transition.
+     * @param transition made
+     * @param event fired
+     */
+    default void afterTransition(Transition transition, Event event) {
+    }
+
+    /**
+     * Called when an event is ignored because the FSM instance is in a final state, or because the event is null.
+     * @param currentState of the FSM instance
+     * @param event ignored, possibly null
+     */
+    default void onIgnoredEvent(State currentState, Event event) {
+    }
+
+    /**
+     * Called when no transition is defined (or accepts the event) for the fired event in the current state.
+     * @param currentState of the FSM instance
+     * @param event fired
+     */
+    default void onUnmatchedEvent(State currentState, Event event) {
+    }
+
+    /**
+     * Called when the guard or the event handler of a transition throws an exception.
+     * The FSM instance state is unchanged.
+     * @param transition that was being made
+     * @param event fired
+     * @param exception thrown
+     */
+    default void onError(Transition transition, Event event, Exception exception) {
+    }
+
+}
@@ -0,0 +1,289 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.EventHandler;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineBatchException;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+import org.jeasy.states.api.TransitionListener;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Base class of FSM instances sharing an immutable {@link FiniteStateMachineDefinitionImpl}.
+ */
+abstract class AbstractFiniteStateMachine implements FiniteStateMachine {
+
+    private static final Logger LOGGER = Logger.getLogger(FiniteStateMachineImpl.class.getSimpleName());
+
+    final FiniteStateMachineDefinitionImpl definition;
+
+    AbstractFiniteStateMachine(final FiniteStateMachineDefinitionImpl definition) {
+        this.definition = definition;
+    }
+
+    /**
+     * Commit step of a transition, supplied by each kind of FSM instance to
+     * {@link #makeTransition(TransitionListener, FiniteStateMachineMetrics, TransitionCommit, int, TransitionTable.Entry, Event, int, long)}.
+     */
+    interface TransitionCommit {
+
+        /**
+         * Transit to the target state of the given entry once its event handler has been successfully executed.
+         * The event is null if it was fired by its code. If this method throws an exception, the state must be unchanged.
+         * @param index of the entity in a population, 0 for other FSM instances
+         */
+        void commitTransition(int index, TransitionTable.Entry entry, Event event) throws Exception;
+
+        /**
+         * Called when the event handler or the commit step of a transition failed, before the listener is notified.
+         * @param index of the entity in a population, 0 for other FSM instances
+         */
+        default void abortTransition(int index) {
+            // no-op by default
+        }
+    }
+
+    /**
+     * Return the entry of the transition to make upon the given event in the given state, or notify the listener
+     * that the event is ignored or unmatched and return null.
+     */
+    static TransitionTable.Entry selectEntry(final TransitionTable table, final int state, final Event event,
+                                             final TransitionListener listener) throws FiniteStateMachineException {
+        if (table.isFinalState(state)) {
+            ignoredEvent(listener, table.getState(state), event);
+            return null;
+        }
+        if (event == null) {
+            nullEvent(listener, table.getState(state));
+            return null;
+        }
+        TransitionTable.Entry entry = table.select(state, event, listener);
+        if (entry == null) {
+            unmatchedEvent(listener, table.getState(state), event);
+        }
+        return entry;
+    }
+
+    /**
+     * Return the entry of the transition to make upon the given event code in the given state, or notify the listener
+     * that the event is ignored or unmatched and return null.
+     */
+    static TransitionTable.Entry selectCodedEntry(final TransitionTable table, final int state, final int eventCode,
+                                                  final TransitionListener listener) {
+        TransitionTable.Entry entry = table.getCodedEntry(state, eventCode);
+        if (table.isFinalState(state)) {
+            ignoredEvent(listener, table.getState(state), null);
+            return null;
+        }
+        if (entry == null) {
+            unmatchedEvent(listener, table.getState(state), null);
+        }
+        return entry;
+    }
+
+    /**
+     * Make the transition of the given entry upon the given event, or upon the given event code if the event is null:
+     * notify the listener, execute the event handler, commit the transition, then record the transition made
+     * and notify the listener. If the event handler or the commit step fails, the transition is aborted,
+     * the listener is notified of the error and a {@link FiniteStateMachineException} is thrown.
+     * Listener and metrics may be null.
+     */
+    static void makeTransition(final TransitionListener listener, final FiniteStateMachineMetrics metrics,
+                               final TransitionCommit commit, final int index, final TransitionTable.Entry entry,
+                               final Event event, final int eventCode, final long payload) throws FiniteStateMachineException {
+        makeTransition(listener, metrics, commit, index, entry, entry.eventHandler, event, eventCode, payload);
+    }
+
+    /**
+     * Make the transition of the given entry, executing the given event handler of the entry (if the event is not null).
+     * Compiled instances pass the handler as a constant of their dispatch tree, so that the JIT can inline its call.
+     */
+    static void makeTransition(final TransitionListener listener, final FiniteStateMachineMetrics metrics,
+                               final TransitionCommit commit, final int index, final TransitionTable.Entry entry,
+                               final EventHandler<Event> eventHandler, final Event event,
+                               final int eventCode, final long payload) throws FiniteStateMachineException {
+        Transition transition = entry.transition;
+        long handlerNanos = -1L;
+        try {
+            if (listener != null) {
+                listener.beforeTransition(transition, event);
+            }
+            //perform action, if any
+            if (event != null ? eventHandler != null : entry.codedEventHandler != null) {
+                long start = metrics != null ? System.nanoTime() : 0L;
+                if (event != null) {
+                    FlightRecorderEvents.handleEvent(entry, eventHandler, event);
+                } else {
+                    FlightRecorderEvents.handleCodedEvent(entry, eventCode, payload);
+                }
+                if (metrics != null) {
+                    handlerNanos = System.nanoTime() - start;
+                }
+            }
+            //transit to target state
+            commit.commitTransition(index, entry, event);
+        } catch (Exception e) {
+            commit.abortTransition(index);
+            error(listener, transition, event, e);
+            throw new FiniteStateMachineException(transition, event, e);
+        } catch (Error e) {
+            commit.abortTransition(index);
+            throw e;
+        }
+        transitionMade(listener, metrics, entry, event, handlerNanos);
+    }
+
+    /**
+     * Record a transition made and notify the listener. Listener and metrics may be null.
+     * @param handlerNanos duration of the event handler, -1 if the transition has no event handler or metrics are disabled
+     */
+    static void transitionMade(final TransitionListener listener, final FiniteStateMachineMetrics metrics,
+                               final TransitionTable.Entry entry, final Event event, final long handlerNanos) {
+        FlightRecorderEvents.transitionCommitted(entry.transition);
+        if (metrics != null) {
+            metrics.transitionMade(entry.ordinal, handlerNanos);
+        }
+        if (listener != null) {
+            listener.afterTransition(entry.transition, event);
+        }
+    }
+
+    /*
+     * Notification of events which do not lead to a transition, and of errors. Listeners may be null.
+     */
+
+    static void ignoredEvent(final TransitionListener listener, final State currentState, final Event event) {
+        if (LOGGER.isLoggable(Level.WARNING)) {
+            LOGGER.log(Level.WARNING, "FSM is in final state '" + currentState.getName() + "', event " + event + " is ignored.");
+        }
+        FlightRecorderEvents.ignoredEvent(currentState, event);
+        if (listener != null) {
+            listener.onIgnoredEvent(currentState, event);
+        }
+    }
+
+    static void ignoredEvents(final TransitionListener listener, final State currentState,
+                              final Event event, final Iterator<? extends Event> remainingEvents) {
+        if (LOGGER.isLoggable(Level.WARNING)) {
+            LOGGER.log(Level.WARNING, "FSM is in final state '" + currentState.getName() + "', remaining events of the batch are ignored.");
+        }
+        FlightRecorderEvents.ignoredEvent(currentState, event);
+        if (listener != null) {
+            listener.onIgnoredEvent(currentState, event);
+            while (remainingEvents.hasNext()) {
+                listener.onIgnoredEvent(currentState, remainingEvents.next());
+            }
+        }
+    }
+
+    static void nullEvent(final TransitionListener listener, final State currentState) {
+        LOGGER.log(Level.WARNING, "Null event fired, FSM state unchanged");
+        FlightRecorderEvents.ignoredEvent(currentState, null);
+        if (listener != null) {
+            listener.onIgnoredEvent(currentState, null);
+        }
+    }
+
+    static void unmatchedEvent(final TransitionListener listener, final State currentState, final Event event) {
+        FlightRecorderEvents.unmatchedEvent(currentState, event);
+        if (listener != null) {
+            listener.onUnmatchedEvent(currentState, event);
+        }
+    }
+
+    static void error(final TransitionListener listener, final Transition transition, final Event event, final Exception e) {
+        if (LOGGER.isLoggable(Level.SEVERE)) {
+            LOGGER.log(Level.SEVERE, "An exception occurred during handling event " + event + " of transition " + transition, e);
+        }
+        if (listener != null) {
+            listener.onError(transition, event, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public State fireAll(final Iterable<? extends Event> events) throws FiniteStateMachineBatchException {
+        int index = 0;
+        for (Event event : events) {
+            try {
+                fire(event);
+            } catch (FiniteStateMachineException e) {
+                throw new FiniteStateMachineBatchException(index, e);
+            }
+            index++;
+        }
+        return getCurrentState();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        reset(definition.getInitialState());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public State getInitialState() {
+        return definition.getInitialState();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<State> getFinalStates() {
+        return definition.getFinalStates();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<State> getStates() {
+        return definition.getStates();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Transition> getTransitions() {
+        return definition.getTransitions();
+    }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AsyncFiniteStateMachine;
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Actor-style FSM instance: fired events are queued in a lock-free mailbox which is drained by the executor.
+ * At most one drain task per instance is scheduled at any time, which guarantees single-threaded, in order processing.
+ * A drain task processes a bounded batch of events before yielding the executor thread to other instances.
+ */
+final class AsyncFiniteStateMachineImpl implements AsyncFiniteStateMachine, Runnable {
+
+    /**
+     * Maximum number of events processed by a drain task before it is rescheduled.
+     */
+    static final int BATCH_SIZE = 64;
+
+    private static final AtomicIntegerFieldUpdater<AsyncFiniteStateMachineImpl> SCHEDULED =
+            AtomicIntegerFieldUpdater.newUpdater(AsyncFiniteStateMachineImpl.class, "scheduled");
+
+    private final FiniteStateMachineDefinition definition;
+    private final FiniteStateMachine finiteStateMachine;
+    private final Executor executor;
+    private final Queue<Task> mailbox;
+    private volatile int scheduled;
+
+    AsyncFiniteStateMachineImpl(final FiniteStateMachineDefinition definition,
+                                final FiniteStateMachine finiteStateMachine, final Executor executor) {
+        this.definition = definition;
+        this.finiteStateMachine = finiteStateMachine;
+        this.executor = executor;
+        this.mailbox = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<State> fireAsync(final Event event) {
+        Task task = new Task(event);
+        mailbox.offer(task);
+        schedule();
+        return task;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<State> fireAsync(final int eventCode, final long payload) {
+        Task task = new Task(eventCode, payload);
+        mailbox.offer(task);
+        schedule();
+        return task;
+    }
+
+    /**
+     * Queue an expired state timeout of the wrapped instance, so that its timeout event is fired by the drain task
+     * like any other event (see {@link TimingWheel}).
+     */
+    void expire(final TimingWheel.Timeout timeout) {
+        mailbox.offer(new Task(timeout));
+        schedule();
+    }
+
+    private void schedule() {
+        if (SCHEDULED.compareAndSet(this, 0, 1)) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled = 0;
+                Task task;
+                while ((task = mailbox.poll()) != null) {
+                    task.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drain the mailbox. This method is invoked by the executor only.
+     */
+    @Override
+    public void run() {
+        try {
+            for (int processed = 0; processed < BATCH_SIZE; processed++) {
+                Task task = mailbox.poll();
+                if (task == null) {
+                    break;
+                }
+                process(task);
+            }
+        } finally {
+            scheduled = 0;
+            if (!mailbox.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private void process(final Task task) {
+        if (task.timeout != null) {
+            TimingWheel.expire(task.timeout);
+            task.complete(null);
+            return;
+        }
+        try {
+            task.complete(task.coded ? finiteStateMachine.fire(task.eventCode, task.payload) : finiteStateMachine.fire(task.event));
+        } catch (Throwable throwable) {
+            // complete the future whatever the failure, errors are then propagated to the executor
+            task.completeExceptionally(throwable);
+            if (throwable instanceof Error) {
+                throw (Error) throwable;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public State getCurrentState() {
+        return finiteStateMachine.getCurrentState();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Event getLastEvent() {
+        return finiteStateMachine.getLastEvent();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Transition getLastTransition() {
+        return finiteStateMachine.getLastTransition();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FiniteStateMachineDefinition getDefinition() {
+        return definition;
+    }
+
+    /**
+     * A queued event, event code and payload or expired state timeout, along with the future of its outcome.
+     */
+    private static final class Task extends CompletableFuture<State> {
+
+        private final Event event;
+        private final boolean coded;
+        private final int eventCode;
+        private final long payload;
+        private final TimingWheel.Timeout timeout;
+
+        private Task(final Event event) {
+            this.event = event;
+            this.coded = false;
+            this.eventCode = 0;
+            this.payload = 0L;
+            this.timeout = null;
+        }
+
+        private Task(final int eventCode, final long payload) {
+            this.event = null;
+            this.coded = true;
+            this.eventCode = eventCode;
+            this.payload = payload;
+            this.timeout = null;
+        }
+
+        private Task(final TimingWheel.Timeout timeout) {
+            this.event = null;
+            this.coded = false;
+            this.eventCode = 0;
+            this.payload = 0L;
+            this.timeout = timeout;
+        }
+
+    }
+
+}
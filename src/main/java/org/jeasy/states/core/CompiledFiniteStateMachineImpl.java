@@ -0,0 +1,275 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.EventHandler;
+import org.jeasy.states.api.FiniteStateMachineBatchException;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+import org.jeasy.states.api.TransitionListener;
+
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * FSM instance dispatching events through the {@link Dispatcher} compiled for its definition
+ * (see {@link FiniteStateMachineBuilder#compile()}). Events are fired under the instance monitor.
+ *
+ * Definitions with state timeouts or the {@link ConcurrencyMode#OPTIMISTIC} concurrency mode cannot be compiled.
+ */
+class CompiledFiniteStateMachineImpl extends AbstractFiniteStateMachine implements AbstractFiniteStateMachine.TransitionCommit {
+
+    private final TransitionTable table;
+    private final Dispatcher dispatcher;
+    private int currentStateOrdinal;
+    private Event lastEvent;
+    private Transition lastTransition;
+
+    CompiledFiniteStateMachineImpl(final FiniteStateMachineDefinitionImpl definition, final Dispatcher dispatcher, final int currentStateOrdinal) {
+        super(definition);
+        this.table = definition.getTransitionTable();
+        this.dispatcher = dispatcher;
+        this.currentStateOrdinal = currentStateOrdinal;
+    }
+
+    /**
+     * Compile the dispatcher of the given definition and create an instance in the given state.
+     * If the definition cannot be compiled, this method throws an {@link IllegalStateException}.
+     */
+    static CompiledFiniteStateMachineImpl compile(final FiniteStateMachineDefinitionImpl definition, final State currentState) {
+        if (definition.getConcurrencyMode() == ConcurrencyMode.OPTIMISTIC) {
+            throw new IllegalStateException("FSM definitions with the OPTIMISTIC concurrency mode cannot be compiled");
+        }
+        if (definition.hasStateTimeouts()) {
+            throw new IllegalStateException("FSM definitions with state timeouts cannot be compiled");
+        }
+        Dispatcher dispatcher = Dispatchers.newDispatcher(Dispatcher.compile(definition.getTransitionTable()));
+        int ordinal = definition.getStateOrdinal(currentState);
+        if (definition.getConcurrencyMode() == ConcurrencyMode.REENTRANT_LOCK) {
+            return new ReentrantLockCompiledFiniteStateMachineImpl(definition, dispatcher, ordinal);
+        }
+        return new CompiledFiniteStateMachineImpl(definition, dispatcher, ordinal);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized State fire(final Event event) throws FiniteStateMachineException {
+        return doFire(event);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized State fire(final int eventCode, final long payload) throws FiniteStateMachineException {
+        return doFire(eventCode, payload);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized State fireAll(final Iterable<? extends Event> events) throws FiniteStateMachineBatchException {
+        return doFireAll(events);
+    }
+
+    final State doFireAll(final Iterable<? extends Event> events) throws FiniteStateMachineBatchException {
+        int index = 0;
+        Iterator<? extends Event> iterator = events.iterator();
+        while (iterator.hasNext()) {
+            Event event = iterator.next();
+            if (table.isFinalState(currentStateOrdinal)) {
+                ignoredEvents(definition.getTransitionListener(), table.getState(currentStateOrdinal), event, iterator);
+                break;
+            }
+            try {
+                doFire(event);
+            } catch (FiniteStateMachineException e) {
+                throw new FiniteStateMachineBatchException(index, e);
+            }
+            index++;
+        }
+        return table.getState(currentStateOrdinal);
+    }
+
+    final State doFire(final int eventCode, final long payload) throws FiniteStateMachineException {
+        TransitionListener listener = definition.getTransitionListener();
+        TransitionTable.Entry entry = selectCodedEntry(table, currentStateOrdinal, eventCode, listener);
+        if (entry != null) {
+            makeTransition(listener, definition.getMetrics(), this, 0, entry, null, eventCode, payload);
+        }
+        return table.getState(currentStateOrdinal);
+    }
+
+    final State doFire(final Event event) throws FiniteStateMachineException {
+        int current = currentStateOrdinal;
+        if (table.isFinalState(current)) {
+            ignoredEvent(definition.getTransitionListener(), table.getState(current), event);
+            return table.getState(current);
+        }
+        if (event == null) {
+            nullEvent(definition.getTransitionListener(), table.getState(current));
+            return table.getState(current);
+        }
+        return dispatcher.fire(this, current, event);
+    }
+
+    /*
+     * Branches of the dispatch tree (see Dispatcher)
+     */
+
+    /**
+     * Make the transition of a declared event type without guard, whose entry and event handler are constants of the dispatch tree.
+     */
+    final State transit(final TransitionTable.Entry entry, final EventHandler<Event> eventHandler, final Event event) throws FiniteStateMachineException {
+        makeTransition(definition.getTransitionListener(), definition.getMetrics(), this, 0, entry, eventHandler, event, 0, 0L);
+        return table.getState(entry.target);
+    }
+
+    /**
+     * Make the first transition accepted by its guard among the transitions of a declared event type.
+     */
+    final State transitGuarded(final TransitionTable.Entry head, final Event event) throws FiniteStateMachineException {
+        return transitOrUnmatched(TransitionTable.select(head, event, definition.getTransitionListener()), event);
+    }
+
+    /**
+     * Make the transition of an event whose class is not one of the declared event types of the current state.
+     */
+    final State transitFromTable(final int state, final Event event) throws FiniteStateMachineException {
+        return transitOrUnmatched(table.select(state, event, definition.getTransitionListener()), event);
+    }
+
+    private State transitOrUnmatched(final TransitionTable.Entry entry, final Event event) throws FiniteStateMachineException {
+        if (entry == null) {
+            unmatchedEvent(definition.getTransitionListener(), table.getState(currentStateOrdinal), event);
+            return table.getState(currentStateOrdinal);
+        }
+        return transit(entry, entry.eventHandler, event);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void commitTransition(final int index, final TransitionTable.Entry entry, final Event event) {
+        currentStateOrdinal = entry.target;
+        lastEvent = event;
+        lastTransition = entry.transition;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void reset(final State state) {
+        doReset(state);
+    }
+
+    final void doReset(final State state) {
+        currentStateOrdinal = definition.getStateOrdinal(state);
+        lastEvent = null;
+        lastTransition = null;
+    }
+
+    Dispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public State getCurrentState() {
+        return table.getState(currentStateOrdinal);
+    }
+
+    @Override
+    public Event getLastEvent() {
+        return lastEvent;
+    }
+
+    @Override
+    public Transition getLastTransition() {
+        return lastTransition;
+    }
+
+    /**
+     * Compiled FSM instance firing events under a {@link ReentrantLock} (see {@link ConcurrencyMode#REENTRANT_LOCK}).
+     */
+    private static final class ReentrantLockCompiledFiniteStateMachineImpl extends CompiledFiniteStateMachineImpl {
+
+        private final ReentrantLock lock;
+
+        ReentrantLockCompiledFiniteStateMachineImpl(final FiniteStateMachineDefinitionImpl definition, final Dispatcher dispatcher, final int currentStateOrdinal) {
+            super(definition, dispatcher, currentStateOrdinal);
+            this.lock = new ReentrantLock();
+        }
+
+        @Override
+        public State fire(final Event event) throws FiniteStateMachineException {
+            FlightRecorderEvents.lock(lock);
+            try {
+                return doFire(event);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public State fire(final int eventCode, final long payload) throws FiniteStateMachineException {
+            FlightRecorderEvents.lock(lock);
+            try {
+                return doFire(eventCode, payload);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public State fireAll(final Iterable<? extends Event> events) throws FiniteStateMachineBatchException {
+            FlightRecorderEvents.lock(lock);
+            try {
+                return doFireAll(events);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void reset(final State state) {
+            FlightRecorderEvents.lock(lock);
+            try {
+                doReset(state);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+}
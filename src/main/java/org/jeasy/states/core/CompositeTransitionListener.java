@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+import org.jeasy.states.api.TransitionListener;
+
+import java.util.List;
+
+/**
+ * Transition listener notifying several listeners in registration order.
+ */
+final class CompositeTransitionListener implements TransitionListener {
+
+    private final TransitionListener[] listeners;
+
+    CompositeTransitionListener(final List<TransitionListener> listeners) {
+        this.listeners = listeners.toArray(new TransitionListener[0]);
+    }
+
+    @Override
+    public void beforeTransition(final Transition transition, final Event event) {
+        for (TransitionListener listener : listeners) {
+            listener.beforeTransition(transition, event);
+        }
+    }
+
+    @Override
+    public void afterTransition(final Transition transition, final Event event) {
+        for (TransitionListener listener : listeners) {
+            listener.afterTransition(transition, event);
+        }
+    }
+
+    @Override
+    public void onIgnoredEvent(final State currentState, final Event event) {
+        for (TransitionListener listener : listeners) {
+            listener.onIgnoredEvent(currentState, event);
+        }
+    }
+
+    @Override
+    public void onUnmatchedEvent(final State currentState, final Event event) {
+        for (TransitionListener listener : listeners) {
+            listener.onUnmatchedEvent(currentState, event);
+        }
+    }
+
+    @Override
+    public void onError(final Transition transition, final Event event, final Exception exception) {
+        for (TransitionListener listener : listeners) {
+            listener.onError(transition, event, exception);
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+/**
+ * Strategy used by FSM instances to make transitions when events are fired concurrently.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public enum ConcurrencyMode {
+
+    /**
+     * Events are fired under the FSM instance monitor. This is the default mode.
+     */
+    SYNCHRONIZED,
+
+    /**
+     * Events are fired under a {@link java.util.concurrent.locks.ReentrantLock} owned by the FSM instance.
+     * Unlike a monitor, this lock does not pin a virtual thread to its carrier thread while an event handler blocks:
+     * this mode should be used when event handlers run on virtual threads (see {@link VirtualThreads}).
+     */
+    REENTRANT_LOCK,
+
+    /**
+     * Events are fired without locking: the current state, the last event and the last transition
+     * are kept in a single holder which is atomically swapped (compare-and-set) when a transition is made,
+     * retrying on conflict. Transitions with an event handler claim the holder while the handler runs
+     * so that handlers are executed exactly once and in order, concurrent events waiting for the claim to be released:
+     * waiting threads spin for a short while then park, so the claim behaves like a lock.
+     * This mode fits machines shared by many producers where most transitions have no or short event handlers.
+     * Transitions with slow or blocking event handlers should use another mode.
+     * Firing an event from an event handler of the same FSM instance is not supported in this mode.
+     */
+    OPTIMISTIC
+
+}
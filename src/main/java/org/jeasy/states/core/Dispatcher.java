@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.EventHandler;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dispatch of events fired in compiled FSM instances (see {@link FiniteStateMachineBuilder#compile()}).
+ *
+ * A definition is compiled into a tree of method handles taking the instance, the ordinal of its current state and the
+ * fired event: a binary search on the state ordinal, then for each state a chain of {@link MethodHandles#guardWithTest}
+ * comparing the class of the event with the event types declared for the state. Each branch is bound to the transition
+ * entry and the event handler of its event type as constants. Events of another class (subtypes of the declared types)
+ * are dispatched by the {@link TransitionTable}.
+ *
+ * On Java 21+, the tree of a definition is held in a static final field of a hidden class defined for it
+ * (see {@link Dispatchers}): the JIT treats it as a constant and inlines the dispatch down to the event handlers.
+ * On older versions, the tree is held in an instance field and invoked without being inlined.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+abstract class Dispatcher {
+
+    /**
+     * Maximum number of event types compared in sequence before dispatching through the transition table.
+     */
+    static final int MAX_COMPARED_EVENT_TYPES = 8;
+
+    private static final MethodHandle IS_SAME_CLASS;
+    private static final MethodHandle IS_LESS_THAN;
+    private static final MethodHandle TRANSIT;
+    private static final MethodHandle TRANSIT_GUARDED;
+    private static final MethodHandle TRANSIT_FROM_TABLE;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            IS_SAME_CLASS = lookup.findStatic(Dispatcher.class, "isSameClass",
+                    MethodType.methodType(boolean.class, Class.class, Event.class));
+            IS_LESS_THAN = lookup.findStatic(Dispatcher.class, "isLessThan",
+                    MethodType.methodType(boolean.class, int.class, int.class));
+            TRANSIT = lookup.findVirtual(CompiledFiniteStateMachineImpl.class, "transit",
+                    MethodType.methodType(State.class, TransitionTable.Entry.class, EventHandler.class, Event.class));
+            TRANSIT_GUARDED = lookup.findVirtual(CompiledFiniteStateMachineImpl.class, "transitGuarded",
+                    MethodType.methodType(State.class, TransitionTable.Entry.class, Event.class));
+            TRANSIT_FROM_TABLE = lookup.findVirtual(CompiledFiniteStateMachineImpl.class, "transitFromTable",
+                    MethodType.methodType(State.class, int.class, Event.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Fire an event in the given (non final) state of the given instance.
+     * @return the current state of the instance once the transition, if any, is made
+     * @throws FiniteStateMachineException thrown if a guard or the event handler throws an exception
+     */
+    abstract State fire(CompiledFiniteStateMachineImpl finiteStateMachine, int state, Event event) throws FiniteStateMachineException;
+
+    /**
+     * Compile the dispatch tree of the given transition table, of type (CompiledFiniteStateMachineImpl, int, Event)State.
+     */
+    static MethodHandle compile(final TransitionTable table) {
+        MethodHandle[] states = new MethodHandle[table.getStateCount()];
+        for (int ordinal = 0; ordinal < states.length; ordinal++) {
+            states[ordinal] = compileState(table, ordinal);
+        }
+        return selectState(states, 0, states.length);
+    }
+
+    /*
+     * Binary search of the dispatch of the current state among the dispatches of states [from, to)
+     */
+    private static MethodHandle selectState(final MethodHandle[] states, final int from, final int to) {
+        if (to - from == 1) {
+            return states[from];
+        }
+        int middle = (from + to) >>> 1;
+        MethodHandle isLessThanMiddle = MethodHandles.dropArguments(MethodHandles.insertArguments(IS_LESS_THAN, 0, middle),
+                0, CompiledFiniteStateMachineImpl.class);
+        return MethodHandles.guardWithTest(isLessThanMiddle, selectState(states, from, middle), selectState(states, middle, to));
+    }
+
+    /*
+     * Dispatch of the events fired in the given state: declared event types are compared in declaration order
+     */
+    private static MethodHandle compileState(final TransitionTable table, final int ordinal) {
+        MethodHandle dispatch = MethodHandles.dropArguments(MethodHandles.insertArguments(TRANSIT_FROM_TABLE, 1, ordinal),
+                1, int.class);
+        Map<Class<?>, TransitionTable.Entry> declaredEntries = table.getDeclaredEntries(ordinal);
+        if (table.isFinalState(ordinal) || declaredEntries.size() > MAX_COMPARED_EVENT_TYPES) {
+            return dispatch;
+        }
+        List<Map.Entry<Class<?>, TransitionTable.Entry>> declarations = new ArrayList<>(declaredEntries.entrySet());
+        for (int i = declarations.size() - 1; i >= 0; i--) {
+            Class<?> eventType = declarations.get(i).getKey();
+            TransitionTable.Entry entry = declarations.get(i).getValue();
+            MethodHandle transit = entry.guard == null
+                    ? MethodHandles.insertArguments(TRANSIT, 1, entry, entry.eventHandler)
+                    : MethodHandles.insertArguments(TRANSIT_GUARDED, 1, entry);
+            MethodHandle isEventType = MethodHandles.dropArguments(MethodHandles.insertArguments(IS_SAME_CLASS, 0, eventType),
+                    0, CompiledFiniteStateMachineImpl.class, int.class);
+            dispatch = MethodHandles.guardWithTest(isEventType, MethodHandles.dropArguments(transit, 1, int.class), dispatch);
+        }
+        return dispatch;
+    }
+
+    private static boolean isSameClass(final Class<?> eventType, final Event event) {
+        return event.getClass() == eventType;
+    }
+
+    private static boolean isLessThan(final int bound, final int state) {
+        return state < bound;
+    }
+
+    /**
+     * Dispatcher invoking a dispatch tree held in a field, which the JIT does not treat as a constant.
+     */
+    static final class Bound extends Dispatcher {
+
+        private final MethodHandle tree;
+
+        Bound(final MethodHandle tree) {
+            this.tree = tree;
+        }
+
+        @Override
+        State fire(final CompiledFiniteStateMachineImpl finiteStateMachine, final int state, final Event event) throws FiniteStateMachineException {
+            try {
+                return (State) tree.invokeExact(finiteStateMachine, state, event);
+            } catch (FiniteStateMachineException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e); // not thrown by dispatch trees
+            }
+        }
+    }
+
+}
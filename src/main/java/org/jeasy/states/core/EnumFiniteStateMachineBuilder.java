@@ -0,0 +1,205 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.CodedEventHandler;
+import org.jeasy.states.api.EnumFiniteStateMachine;
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.EventHandler;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builder of FSM instances whose states are the constants of an enum.
+ *
+ * Transitions are indexed by the ordinal of their source state and final states are held in an {@link EnumSet},
+ * so that states are compared by identity and no {@link State} is created when events are fired.
+ *
+ * @param <S> type of the states
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public class EnumFiniteStateMachineBuilder<S extends Enum<S>> {
+
+    private final Class<S> stateType;
+    private final S initialState;
+    private final EnumSet<S> finalStates;
+    private final Set<Transition> transitions;
+    private final Map<Integer, Class<? extends Event>> eventCodes;
+
+    /**
+     * Create a new {@link EnumFiniteStateMachineBuilder}.
+     *
+     * @param stateType enum of the machine states
+     * @param initialState of the machine
+     */
+    public EnumFiniteStateMachineBuilder(final Class<S> stateType, final S initialState) {
+        if (stateType == null || initialState == null) {
+            throw new IllegalArgumentException("State type and initial state must not be null");
+        }
+        this.stateType = stateType;
+        this.initialState = initialState;
+        this.finalStates = EnumSet.noneOf(stateType);
+        this.transitions = new LinkedHashSet<>();
+        this.eventCodes = new HashMap<>();
+    }
+
+    /**
+     * Register a transition without event handler.
+     * @param sourceState of the transition
+     * @param eventType upon which the transition should be made
+     * @param targetState of the transition
+     * @return a configured FSM Builder instance
+     */
+    public EnumFiniteStateMachineBuilder<S> registerTransition(final S sourceState, final Class<? extends Event> eventType, final S targetState) {
+        return register(sourceState, eventType, targetState, null, null);
+    }
+
+    /**
+     * Register a transition. If a transition is already registered for the same source state and event type,
+     * this method throws an {@link IllegalArgumentException}.
+     * @param sourceState of the transition
+     * @param eventType upon which the transition should be made
+     * @param targetState of the transition
+     * @param eventHandler to execute when the transition is made
+     * @param <E> type of the event
+     * @return a configured FSM Builder instance
+     */
+    public <E extends Event> EnumFiniteStateMachineBuilder<S> registerTransition(final S sourceState, final Class<E> eventType,
+                                                                               final S targetState, final EventHandler<E> eventHandler) {
+        return register(sourceState, eventType, targetState, eventHandler, null);
+    }
+
+    /**
+     * Register a transition with the handler executed when it is made upon an event fired by its code
+     * (see {@link #registerEventCode(int, Class)}). If a transition is already registered for the same source state
+     * and event type, this method throws an {@link IllegalArgumentException}.
+     * @param sourceState of the transition
+     * @param eventType upon which the transition should be made
+     * @param targetState of the transition
+     * @param eventHandler to execute when the transition is made upon an event object, may be null
+     * @param codedEventHandler to execute when the transition is made upon an event code
+     * @param <E> type of the event
+     * @return a configured FSM Builder instance
+     */
+    public <E extends Event> EnumFiniteStateMachineBuilder<S> registerTransition(final S sourceState, final Class<E> eventType,
+                                                                               final S targetState, final EventHandler<E> eventHandler,
+                                                                               final CodedEventHandler codedEventHandler) {
+        return register(sourceState, eventType, targetState, eventHandler, codedEventHandler);
+    }
+
+    /**
+     * Register the code of an event type, so that events of this type can be fired by their code without creating
+     * event objects (see {@link EnumFiniteStateMachine#fire(int, long)}). Transitions made upon a coded event type
+     * must have a coded event handler if they have an event handler.
+     * If the code is out of bounds or already registered, this method throws an {@link IllegalArgumentException}.
+     * @param eventCode between 0 and {@link FiniteStateMachineBuilder#MAX_EVENT_CODE}
+     * @param eventType of events fired with this code
+     * @return a configured FSM Builder instance
+     */
+    public EnumFiniteStateMachineBuilder<S> registerEventCode(final int eventCode, final Class<? extends Event> eventType) {
+        if (eventCode < 0 || eventCode > FiniteStateMachineBuilder.MAX_EVENT_CODE) {
+            throw new IllegalArgumentException("Event code " + eventCode + " must be between 0 and " + FiniteStateMachineBuilder.MAX_EVENT_CODE);
+        }
+        if (eventType == null) {
+            throw new IllegalArgumentException("No event type is defined for event code " + eventCode);
+        }
+        if (eventCodes.containsKey(eventCode)) {
+            throw new IllegalArgumentException("Event code " + eventCode + " is already registered for event type " + eventCodes.get(eventCode).getName());
+        }
+        eventCodes.put(eventCode, eventType);
+        return this;
+    }
+
+    private EnumFiniteStateMachineBuilder<S> register(final S sourceState, final Class<? extends Event> eventType,
+                                                      final S targetState, final EventHandler<?> eventHandler,
+                                                      final CodedEventHandler codedEventHandler) {
+        if (sourceState == null || eventType == null || targetState == null) {
+            throw new IllegalArgumentException("Source state, event type and target state of a transition must not be null");
+        }
+        TransitionBuilder transitionBuilder = new TransitionBuilder()
+                .sourceState(new State(sourceState.name()))
+                .eventType(eventType)
+                .targetState(new State(targetState.name()));
+        if (eventHandler != null) {
+            transitionBuilder.eventHandler(eventHandler);
+        }
+        if (codedEventHandler != null) {
+            transitionBuilder.codedEventHandler(codedEventHandler);
+        }
+        Transition transition = transitionBuilder.build();
+        if (!transitions.add(transition)) {
+            throw new IllegalArgumentException("A transition is already registered from state '" + sourceState + "' for event type " + eventType.getName());
+        }
+        return this;
+    }
+
+    /**
+     * Register FSM final state. Once in final state, the FSM will ignore all incoming events.
+     * @param finalState the FSM final state
+     * @return a configured FSM Builder instance
+     */
+    public EnumFiniteStateMachineBuilder<S> registerFinalState(final S finalState) {
+        finalStates.add(finalState);
+        return this;
+    }
+
+    /**
+     * Register FSM final states. Once in final state, the FSM will ignore all incoming events.
+     * @param finalStates the FSM final states to register
+     * @return a configured FSM Builder instance
+     */
+    public EnumFiniteStateMachineBuilder<S> registerFinalStates(final Set<S> finalStates) {
+        this.finalStates.addAll(finalStates);
+        return this;
+    }
+
+    /**
+     * Build a FSM instance.
+     * If a transition made upon a coded event type is guarded, or has an event handler but no coded event handler,
+     * this method throws an {@link IllegalStateException}.
+     * @return a configured FSM instance
+     */
+    public EnumFiniteStateMachine<S> build() {
+        S[] constants = stateType.getEnumConstants();
+        // states are registered in ordinal order so that state ordinals in the transition table are enum ordinals
+        Set<State> states = new LinkedHashSet<>();
+        for (S constant : constants) {
+            states.add(new State(constant.name()));
+        }
+        Set<State> finalStateSet = new HashSet<>();
+        for (S finalState : finalStates) {
+            finalStateSet.add(new State(finalState.name()));
+        }
+        TransitionTable table = new TransitionTable(states, finalStateSet, transitions, eventCodes);
+        return new EnumFiniteStateMachineImpl<>(constants, initialState, finalStates, table);
+    }
+
+}
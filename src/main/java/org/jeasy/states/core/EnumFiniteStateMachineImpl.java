@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.EnumFiniteStateMachine;
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.FiniteStateMachineBatchException;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.Transition;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * FSM instance whose states are enum constants: the current state is the ordinal of the constant.
+ * Events are fired under the instance monitor.
+ */
+final class EnumFiniteStateMachineImpl<S extends Enum<S>> implements EnumFiniteStateMachine<S>, AbstractFiniteStateMachine.TransitionCommit {
+
+    private final S[] states;
+    private final S initialState;
+    private final Set<S> finalStates;
+    private final TransitionTable table;
+    private int currentStateOrdinal;
+    private Event lastEvent;
+    private Transition lastTransition;
+
+    EnumFiniteStateMachineImpl(final S[] states, final S initialState, final EnumSet<S> finalStates, final TransitionTable table) {
+        this.states = states;
+        this.initialState = initialState;
+        this.finalStates = Collections.unmodifiableSet(EnumSet.copyOf(finalStates));
+        this.table = table;
+        this.currentStateOrdinal = initialState.ordinal();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized S fire(final Event event) throws FiniteStateMachineException {
+        TransitionTable.Entry entry = AbstractFiniteStateMachine.selectEntry(table, currentStateOrdinal, event, null);
+        if (entry != null) {
+            AbstractFiniteStateMachine.makeTransition(null, null, this, 0, entry, event, 0, 0L);
+        }
+        return states[currentStateOrdinal];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized S fire(final int eventCode, final long payload) throws FiniteStateMachineException {
+        TransitionTable.Entry entry = AbstractFiniteStateMachine.selectCodedEntry(table, currentStateOrdinal, eventCode, null);
+        if (entry != null) {
+            AbstractFiniteStateMachine.makeTransition(null, null, this, 0, entry, null, eventCode, payload);
+        }
+        return states[currentStateOrdinal];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void commitTransition(final int index, final TransitionTable.Entry entry, final Event event) {
+        currentStateOrdinal = entry.target;
+        lastEvent = event;
+        lastTransition = entry.transition;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized S fireAll(final Iterable<? extends Event> events) throws FiniteStateMachineBatchException {
+        int index = 0;
+        Iterator<? extends Event> iterator = events.iterator();
+        while (iterator.hasNext()) {
+            Event event = iterator.next();
+            if (table.isFinalState(currentStateOrdinal)) {
+                AbstractFiniteStateMachine.ignoredEvents(null, table.getState(currentStateOrdinal), event, iterator);
+                break;
+            }
+            try {
+                fire(event);
+            } catch (FiniteStateMachineException e) {
+                throw new FiniteStateMachineBatchException(index, e);
+            }
+            index++;
+        }
+        return states[currentStateOrdinal];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        reset(initialState);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void reset(final S state) {
+        if (state == null) {
+            throw new IllegalArgumentException("State 'null' is not registered in FSM states");
+        }
+        currentStateOrdinal = state.ordinal();
+        lastEvent = null;
+        lastTransition = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public S getCurrentState() {
+        return states[currentStateOrdinal];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public S getInitialState() {
+        return initialState;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<S> getFinalStates() {
+        return finalStates;
+    }
+
+    @Override
+    public Event getLastEvent() {
+        return lastEvent;
+    }
+
+    @Override
+    public Transition getLastTransition() {
+        return lastTransition;
+    }
+
+}
@@ -0,0 +1,631 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the transitions made by FSM instances of a shared definition.
+ *
+ * The journal is a sequence of memory-mapped segment files. Each segment starts with a dictionary of the states
+ * of the definition and a dictionary of its transitions (name, source state name and target state name) followed by
+ * fixed-size records made of the identifier of a FSM instance, either the index of the transition it made
+ * or the index of the state it was put in (when started in a state other than the initial state or reset),
+ * and a CRC-32 checksum. Records are aligned on their size, so that they never straddle a page boundary.
+ * When the journal is opened, records are appended after the last valid record of the last segment
+ * (a torn record left by a crash is overwritten). A new segment is started once the current one is full,
+ * after the current one is forced to the storage device. The journal can be compacted with {@link #compact()}.
+ *
+ * FSM instances created with {@link #newInstance(long)} append a record once the event handler of a transition
+ * has been successfully executed and before transiting to the target state. Records are appended under the journal
+ * lock, which is not held while records are forced to the storage device. When records are forced
+ * (see {@link EventJournalBuilder#syncEvery(int)}), a flusher thread forces all records appended so far by all
+ * instances at once (group commit) and appending instances wait until their record is durable.
+ *
+ * States of FSM instances are rebuilt by replaying the journal, without executing event handlers.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public class EventJournal implements Closeable {
+
+    static final int MAGIC = 0x45534A4C;
+    static final byte VERSION = 2;
+    static final int RECORD_SIZE = Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+    private final FiniteStateMachineDefinitionImpl definition;
+    private final int segmentSize;
+    private final int syncEvery;
+    private final long maxSyncDelayNanos;
+    private final byte[] header;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition recordsAppended = lock.newCondition();
+    private final Condition recordsSynced = lock.newCondition();
+    private final Thread flusher;
+    private final CRC32 checksum = new CRC32();
+
+    private long nextSegmentIndex;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    // sequence numbers of the last appended record and of the last record forced to the storage device
+    private long appendedSequence;
+    private long syncedSequence;
+    // time at which the oldest record not forced yet was appended (or earlier)
+    private long unsyncedSinceNanos;
+    private boolean forcing;
+    private IOException syncFailure;
+    private boolean closed;
+
+    EventJournal(final Path directory, final FiniteStateMachineDefinitionImpl definition,
+                 final int segmentSize, final int syncEvery, final long maxSyncDelayNanos) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.definition = definition;
+        this.syncEvery = syncEvery;
+        this.maxSyncDelayNanos = maxSyncDelayNanos;
+        this.header = header(definition.getTransitionTable());
+        if (segmentSize < minimumSegmentSize(definition)) {
+            throw new IllegalArgumentException("The segment size must be at least " + minimumSegmentSize(definition) + " bytes");
+        }
+        this.segmentSize = segmentSize;
+        List<Path> segments = segments();
+        this.nextSegmentIndex = segments.isEmpty() ? 0 : segmentIndex(segments.get(segments.size() - 1)) + 1;
+        if (!segments.isEmpty()) {
+            reopenSegment(segments.get(segments.size() - 1));
+        }
+        if (syncEvery > 0) {
+            flusher = new Thread(this::flush, "easy-states-journal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Return the minimum size of the segments of a journal of the given definition: its header and one record.
+     */
+    static int minimumSegmentSize(final FiniteStateMachineDefinitionImpl definition) {
+        return header(definition.getTransitionTable()).length + RECORD_SIZE;
+    }
+
+    /**
+     * Create a new journaled FSM instance in the initial state.
+     * @param machineId identifier of the FSM instance in the journal
+     * @return a new journaled FSM instance
+     */
+    public FiniteStateMachine newInstance(final long machineId) {
+        return new JournaledFiniteStateMachineImpl(definition, definition.getStateOrdinal(definition.getInitialState()), this, machineId).start();
+    }
+
+    /**
+     * Create a new journaled FSM instance in the given state, typically the state rebuilt by {@link #replay()}.
+     * Unless it is the initial state, the state of the instance is journaled.
+     * If the state is not registered in FSM states, this method throws an {@link IllegalArgumentException}.
+     * @param machineId identifier of the FSM instance in the journal
+     * @param currentState the state in which the FSM instance should be
+     * @return a new journaled FSM instance
+     * @throws IOException thrown if the state of the instance cannot be journaled
+     */
+    public FiniteStateMachine newInstance(final long machineId, final State currentState) throws IOException {
+        int stateOrdinal = definition.getStateOrdinal(currentState);
+        if (stateOrdinal != definition.getStateOrdinal(definition.getInitialState())) {
+            appendState(machineId, stateOrdinal);
+        }
+        return new JournaledFiniteStateMachineImpl(definition, stateOrdinal, this, machineId).start();
+    }
+
+    /**
+     * Append a transition record to the journal.
+     */
+    void append(final long machineId, final int transitionOrdinal) throws IOException {
+        // transition indexes are shifted by one, a zero marks the end of the records of a segment
+        appendRecord(machineId, transitionOrdinal + 1);
+    }
+
+    /**
+     * Append a state record to the journal.
+     */
+    void appendState(final long machineId, final int stateOrdinal) throws IOException {
+        // state indexes are shifted by one and negated
+        appendRecord(machineId, -(stateOrdinal + 1));
+    }
+
+    private void appendRecord(final long machineId, final int record) throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Event journal is closed");
+            }
+            checkSyncFailure();
+            if (segment == null || segment.remaining() < RECORD_SIZE) {
+                startSegment();
+            }
+            putRecord(machineId, record);
+            long sequence = ++appendedSequence;
+            if (syncEvery == 0) {
+                return;
+            }
+            if (sequence == syncedSequence + 1 && !forcing) {
+                unsyncedSinceNanos = System.nanoTime();
+                recordsAppended.signal();
+            } else if (sequence - syncedSequence >= syncEvery) {
+                recordsAppended.signal();
+            }
+            while (syncedSequence < sequence) {
+                checkSyncFailure();
+                if (closed) {
+                    throw new IOException("Event journal is closed");
+                }
+                recordsSynced.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Force all appended records to the storage device.
+     * @throws IOException thrown if records cannot be forced
+     */
+    public void sync() throws IOException {
+        lock.lock();
+        try {
+            forceAppendedRecords();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Force records once syncEvery records are waiting or the oldest one waited for the maximum sync delay
+     */
+    private void flush() {
+        lock.lock();
+        try {
+            while (!closed && syncFailure == null) {
+                long unsynced = appendedSequence - syncedSequence;
+                long delay = unsyncedSinceNanos + maxSyncDelayNanos - System.nanoTime();
+                if (unsynced == 0 || forcing) {
+                    recordsAppended.awaitUninterruptibly();
+                } else if (unsynced < syncEvery && delay > 0) {
+                    recordsAppended.awaitNanos(delay);
+                } else {
+                    try {
+                        forceAppendedRecords();
+                    } catch (IOException e) {
+                        // reported to appenders
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Force records appended so far, without holding the lock while forcing. Called with the lock held.
+     */
+    private void forceAppendedRecords() throws IOException {
+        while (forcing) {
+            recordsSynced.awaitUninterruptibly();
+        }
+        checkSyncFailure();
+        long sequence = appendedSequence;
+        MappedByteBuffer records = segment;
+        if (sequence == syncedSequence || records == null) {
+            return;
+        }
+        long started = System.nanoTime();
+        forcing = true;
+        lock.unlock();
+        try {
+            records.force();
+        } catch (RuntimeException e) {
+            syncFailure = new IOException("Event journal records cannot be forced", e);
+        } finally {
+            lock.lock();
+            forcing = false;
+            if (syncFailure == null) {
+                syncedSequence = Math.max(syncedSequence, sequence);
+                // records appended while forcing are not older than the start of the force
+                unsyncedSinceNanos = started;
+            }
+            recordsSynced.signalAll();
+            // records appended while forcing are left to the flusher
+            recordsAppended.signal();
+        }
+        checkSyncFailure();
+    }
+
+    private void checkSyncFailure() throws IOException {
+        if (syncFailure != null) {
+            throw new IOException("Event journal records cannot be forced", syncFailure);
+        }
+    }
+
+    /*
+     * Called with the lock held
+     */
+    private void putRecord(final long machineId, final int record) {
+        segment.putLong(machineId);
+        segment.putInt(record);
+        segment.putInt(checksum(checksum, machineId, record));
+    }
+
+    /*
+     * Called with the lock held. The current segment is forced before the next one is started,
+     * so that only the last segment can end with a torn record after a crash.
+     */
+    private void startSegment() throws IOException {
+        closeSegment(true);
+        Path file = directory.resolve(String.format("%020d%s", nextSegmentIndex++, SEGMENT_SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segment.put(header);
+    }
+
+    /*
+     * Called from the constructor: records are appended after the last valid record of the segment
+     * if it has the header of the definition, otherwise a new segment is started on the first append
+     */
+    private void reopenSegment(final Path file) throws IOException {
+        FileChannel segmentChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentChannel.size());
+            ByteBuffer segmentHeader = buffer.duplicate();
+            if (segmentHeader.remaining() < header.length + RECORD_SIZE) {
+                segmentChannel.close();
+                return;
+            }
+            segmentHeader.limit(header.length);
+            if (!segmentHeader.equals(ByteBuffer.wrap(header))) {
+                segmentChannel.close();
+                return;
+            }
+            TransitionTable table = definition.getTransitionTable();
+            buffer.position(header.length);
+            while (buffer.remaining() >= RECORD_SIZE) {
+                int position = buffer.position();
+                long machineId = buffer.getLong();
+                int record = buffer.getInt();
+                if (!isValidRecord(checksum, machineId, record, buffer.getInt(), table.getStateCount(), table.getTransitionCount())) {
+                    buffer.position(position);
+                    break;
+                }
+            }
+            clearTail(buffer);
+            channel = segmentChannel;
+            segment = buffer;
+        } catch (IOException | RuntimeException e) {
+            segmentChannel.close();
+            throw e;
+        }
+    }
+
+    /*
+     * Zero the bytes following the last valid record, if any, so that records appended after a torn record
+     * are not followed by stale ones
+     */
+    private static void clearTail(final MappedByteBuffer buffer) {
+        int position = buffer.position();
+        for (int i = position; i < buffer.limit(); i++) {
+            if (buffer.get(i) != 0) {
+                for (int j = position; j < buffer.limit(); j++) {
+                    buffer.put(j, (byte) 0);
+                }
+                return;
+            }
+        }
+    }
+
+    /*
+     * Called with the lock held. Records of the segment are forced inline, once per segment.
+     */
+    private void closeSegment(final boolean force) throws IOException {
+        if (segment != null) {
+            while (forcing) {
+                recordsSynced.awaitUninterruptibly();
+            }
+            if (force) {
+                segment.force();
+                syncedSequence = appendedSequence;
+                recordsSynced.signalAll();
+            }
+            segment = null;
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Compact the journal: the current state of each journaled FSM instance is appended as a state record
+     * to new segments, which are forced to the storage device, then older segments are deleted.
+     * If the compaction is interrupted by a crash, replaying the journal still rebuilds the same states.
+     * Appending FSM instances wait until the compaction is over. The journal must not be replayed concurrently.
+     * @return the number of journaled FSM instances
+     * @throws IOException thrown if the journal cannot be compacted
+     */
+    public int compact() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Event journal is closed");
+            }
+            checkSyncFailure();
+            closeSegment(true);
+            List<Path> compactedSegments = segments();
+            Map<Long, Integer> states = new HashMap<>();
+            replay(states::put);
+            for (Map.Entry<Long, Integer> state : states.entrySet()) {
+                if (segment == null || segment.remaining() < RECORD_SIZE) {
+                    startSegment();
+                }
+                putRecord(state.getKey(), -(state.getValue() + 1));
+            }
+            if (segment != null) {
+                segment.force();
+            }
+            for (Path file : compactedSegments) {
+                Files.delete(file);
+            }
+            PopulationSnapshot.syncDirectory(directory);
+            return states.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rebuild the current state of journaled FSM instances, without executing event handlers.
+     * If a journaled transition is from or to a state which is not registered in FSM states,
+     * this method throws an {@link IllegalArgumentException}.
+     * @return the current state of each journaled FSM instance, by identifier
+     * @throws IOException thrown if the journal cannot be read
+     */
+    public Map<Long, State> replay() throws IOException {
+        TransitionTable table = definition.getTransitionTable();
+        Map<Long, State> states = new HashMap<>();
+        replay((machineId, target) -> states.put(machineId, table.getState(target)));
+        return states;
+    }
+
+    /**
+     * Rebuild the state of the entities of a population, without executing event handlers.
+     * FSM instance identifiers are entity indexes.
+     * If a journaled transition is from or to a state which is not registered in FSM states,
+     * this method throws an {@link IllegalArgumentException}.
+     * @param population in which states are rebuilt
+     * @return the number of replayed records
+     * @throws IOException thrown if the journal cannot be read
+     */
+    public long replay(final FiniteStateMachinePopulation population) throws IOException {
+        return replay((machineId, target) -> {
+            if (machineId < 0 || machineId >= population.size()) {
+                throw new IndexOutOfBoundsException("Journaled FSM instance " + machineId + " is out of population bounds [0, " + population.size() + ")");
+            }
+            population.setOrdinal((int) machineId, target);
+        });
+    }
+
+    /*
+     * Replay records up to the first torn or corrupted one, only possible at the end of the last segment after a crash
+     */
+    private long replay(final RecordVisitor visitor) throws IOException {
+        CRC32 crc = new CRC32();
+        long records = 0;
+        for (Path file : segments()) {
+            try (FileChannel segmentChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size());
+                if (buffer.remaining() < Integer.BYTES + 1 || buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+                    throw new IOException("File " + file + " is not a supported event journal segment");
+                }
+                int[] states = new int[readCount(buffer, file)];
+                for (int i = 0; i < states.length; i++) {
+                    states[i] = definition.getStateOrdinal(new State(readString(buffer, file)));
+                }
+                int[] targets = new int[readCount(buffer, file)];
+                for (int i = 0; i < targets.length; i++) {
+                    readString(buffer, file); // transition name
+                    definition.getStateOrdinal(new State(readString(buffer, file))); // source state must still be registered
+                    targets[i] = definition.getStateOrdinal(new State(readString(buffer, file)));
+                }
+                buffer.position(align(buffer.position()));
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    long machineId = buffer.getLong();
+                    int record = buffer.getInt();
+                    int checksum = buffer.getInt();
+                    if (machineId == 0 && record == 0 && checksum == 0) {
+                        break; // end of the records of the segment
+                    }
+                    if (!isValidRecord(crc, machineId, record, checksum, states.length, targets.length)) {
+                        return records;
+                    }
+                    visitor.visit(machineId, record > 0 ? targets[record - 1] : states[-record - 1]);
+                    records++;
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Event journal segment " + file + " is truncated", e);
+            }
+        }
+        return records;
+    }
+
+    private static boolean isValidRecord(final CRC32 crc, final long machineId, final int record, final int checksum,
+                                         final int stateCount, final int transitionCount) {
+        return record != 0 && record <= transitionCount && record >= -stateCount
+                && checksum == checksum(crc, machineId, record);
+    }
+
+    private static int checksum(final CRC32 crc, final long machineId, final int record) {
+        crc.reset();
+        for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+            crc.update((int) (machineId >>> shift));
+        }
+        for (int shift = Integer.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+            crc.update(record >>> shift);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static int align(final int position) {
+        return (position + RECORD_SIZE - 1) / RECORD_SIZE * RECORD_SIZE;
+    }
+
+    /**
+     * Force and close the current segment. Journaled FSM instances can no longer fire events.
+     * @throws IOException thrown if the current segment cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closeSegment(true);
+            recordsAppended.signalAll();
+            recordsSynced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Return the definition of journaled FSM instances.
+     * @return the FSM definition
+     */
+    public FiniteStateMachineDefinition getDefinition() {
+        return definition;
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path segment : stream) {
+                segments.add(segment);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long segmentIndex(final Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static byte[] header(final TransitionTable table) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeInt(table.getStateCount());
+            for (int ordinal = 0; ordinal < table.getStateCount(); ordinal++) {
+                writeString(output, table.getState(ordinal).getName());
+            }
+            output.writeInt(table.getTransitionCount());
+            for (int ordinal = 0; ordinal < table.getTransitionCount(); ordinal++) {
+                Transition transition = table.getTransitionEntry(ordinal).transition;
+                writeString(output, transition.getName());
+                writeString(output, transition.getSourceState().getName());
+                writeString(output, transition.getTargetState().getName());
+            }
+            // records are aligned on their size
+            while (bytes.size() % RECORD_SIZE != 0) {
+                output.writeByte(0);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // not thrown by in-memory streams
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(final DataOutputStream output, final String string) throws IOException {
+        byte[] bytes = String.valueOf(string).getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static int readCount(final MappedByteBuffer buffer, final Path file) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IOException("Invalid dictionary size " + count + " in event journal segment " + file);
+        }
+        return count;
+    }
+
+    private static String readString(final MappedByteBuffer buffer, final Path file) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Invalid name length " + length + " in event journal segment " + file);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private interface RecordVisitor {
+        void visit(long machineId, int target);
+    }
+
+}
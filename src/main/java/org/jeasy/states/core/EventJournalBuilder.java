@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event journal builder.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public class EventJournalBuilder {
+
+    static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    static final long DEFAULT_MAX_SYNC_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Path directory;
+    private final FiniteStateMachineDefinition definition;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private int syncEvery;
+    private long maxSyncDelayNanos = DEFAULT_MAX_SYNC_DELAY_NANOS;
+
+    /**
+     * Create a new {@link EventJournalBuilder}.
+     * @param directory in which journal segments are stored, created if needed
+     * @param definition of journaled FSM instances, built with {@link FiniteStateMachineBuilder#buildDefinition()}
+     */
+    public EventJournalBuilder(final Path directory, final FiniteStateMachineDefinition definition) {
+        if (!(definition instanceof FiniteStateMachineDefinitionImpl)) {
+            throw new IllegalArgumentException("The definition must be built with a FiniteStateMachineBuilder");
+        }
+        this.directory = directory;
+        this.definition = definition;
+    }
+
+    /**
+     * Set the size in bytes of journal segment files. Defaults to 64 MiB.
+     * Segments must be large enough for the dictionaries of the definition and a record,
+     * otherwise this method throws an {@link IllegalArgumentException}.
+     * @param segmentSize in bytes
+     * @return the event journal builder
+     */
+    public EventJournalBuilder segmentSize(final int segmentSize) {
+        int minimumSegmentSize = EventJournal.minimumSegmentSize((FiniteStateMachineDefinitionImpl) definition);
+        if (segmentSize < minimumSegmentSize) {
+            throw new IllegalArgumentException("The segment size must be at least " + minimumSegmentSize + " bytes");
+        }
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * Force appended records to the storage device, by groups of up to the given number of records.
+     * Records are forced by a flusher thread once the given number of records are waiting to be forced or the oldest
+     * one waited for the maximum sync delay (see {@link #maxSyncDelay(long, TimeUnit)}), and FSM instances wait until
+     * their record is forced before transiting to the target state.
+     * Defaults to 0: records are only forced by the journal when a segment is full and are otherwise written to the storage
+     * device by the operating system, which makes them survive a crash of the JVM but not a crash of the operating system.
+     * @param syncEvery number of records
+     * @return the event journal builder
+     */
+    public EventJournalBuilder syncEvery(final int syncEvery) {
+        if (syncEvery < 0) {
+            throw new IllegalArgumentException("The number of records between syncs must not be negative");
+        }
+        this.syncEvery = syncEvery;
+        return this;
+    }
+
+    /**
+     * Set the maximum time a record waits for other records before being forced to the storage device.
+     * Defaults to 1 millisecond. Ignored unless records are forced (see {@link #syncEvery(int)}).
+     * @param maxSyncDelay maximum delay
+     * @param unit of the delay
+     * @return the event journal builder
+     */
+    public EventJournalBuilder maxSyncDelay(final long maxSyncDelay, final TimeUnit unit) {
+        if (maxSyncDelay < 0) {
+            throw new IllegalArgumentException("The maximum sync delay must not be negative");
+        }
+        this.maxSyncDelayNanos = unit.toNanos(maxSyncDelay);
+        return this;
+    }
+
+    /**
+     * Open the event journal.
+     * @return the event journal
+     * @throws IOException thrown if the journal directory cannot be created or read
+     */
+    public EventJournal build() throws IOException {
+        return new EventJournal(directory, (FiniteStateMachineDefinitionImpl) definition, segmentSize, syncEvery, maxSyncDelayNanos);
+    }
+
+}
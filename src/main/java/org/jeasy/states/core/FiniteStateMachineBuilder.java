@@ -23,12 +23,22 @@
  */
 package org.jeasy.states.core;
 
+import org.jeasy.states.api.Event;
 import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
 import org.jeasy.states.api.State;
 import org.jeasy.states.api.Transition;
+import org.jeasy.states.api.TransitionListener;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
@@ -41,6 +51,11 @@ import java.util.logging.Logger;
  */
 public class FiniteStateMachineBuilder {
 
+    /**
+     * Highest event code (see {@link #registerEventCode(int, Class)}).
+     */
+    public static final int MAX_EVENT_CODE = 0xFFFF;
+
     private static final Logger LOGGER = Logger.getLogger(FiniteStateMachineBuilder.class.getName());
 
     static {
@@ -54,7 +69,17 @@ public class FiniteStateMachineBuilder {
         }
     }
 
-    private final FiniteStateMachineImpl finiteStateMachine;
+    private final Set<State> states;
+    private final State initialState;
+    private final Set<State> finalStates;
+    private final Set<Transition> transitions;
+    private final List<TransitionListener> transitionListeners;
+    private ConcurrencyMode concurrencyMode;
+    private String metricsName;
+    private FiniteStateMachineMetrics registeredMetrics;
+    private final Map<Integer, Class<? extends Event>> eventCodes;
+    private final Map<State, Long> stateTimeouts;
+    private TimingWheel timingWheel;
     private final FiniteStateMachineDefinitionValidator finiteStateMachineDefinitionValidator;
     private final TransitionDefinitionValidator transitionDefinitionValidator;
 
@@ -65,7 +90,14 @@ public class FiniteStateMachineBuilder {
      * @param initialState of the machine
      */
     public FiniteStateMachineBuilder(final Set<State> states, final State initialState) {
-        finiteStateMachine = new FiniteStateMachineImpl(states, initialState);
+        this.states = states;
+        this.initialState = initialState;
+        this.finalStates = new HashSet<>();
+        this.transitions = new LinkedHashSet<>();
+        this.transitionListeners = new ArrayList<>();
+        this.eventCodes = new LinkedHashMap<>();
+        this.stateTimeouts = new LinkedHashMap<>();
+        this.concurrencyMode = ConcurrencyMode.SYNCHRONIZED;
         finiteStateMachineDefinitionValidator = new FiniteStateMachineDefinitionValidator();
         transitionDefinitionValidator = new TransitionDefinitionValidator();
     }
@@ -77,8 +109,8 @@ public class FiniteStateMachineBuilder {
      * @return a configured FSM Builder instance
      */
     public FiniteStateMachineBuilder registerTransition(final Transition transition) {
-        transitionDefinitionValidator.validateTransitionDefinition(transition, finiteStateMachine);
-        finiteStateMachine.registerTransition(transition);
+        transitionDefinitionValidator.validateTransitionDefinition(transition, states);
+        transitions.add(transition);
         return this;
     }
 
@@ -95,6 +127,79 @@ public class FiniteStateMachineBuilder {
         return this;
     }
 
+    /**
+     * Register the transitions declared with {@link org.jeasy.states.annotation.OnTransition} on the class
+     * of the given object and on its methods. Annotated methods are the event handlers of their transitions:
+     * they are bound once to the object with method handles, so that no reflection happens when events are handled.
+     * If a transition or an event handler method is not valid, this method throws an {@link IllegalArgumentException}.
+     * @param handlers object declaring the annotated methods
+     * @return a configured FSM Builder instance
+     */
+    public FiniteStateMachineBuilder registerEventHandlers(final Object handlers) {
+        for (Transition transition : MethodHandleEventHandler.transitions(handlers)) {
+            registerTransition(transition);
+        }
+        return this;
+    }
+
+    /**
+     * Register the code of an event type, so that events of this type can be fired by their code without creating
+     * event objects (see {@link FiniteStateMachine#fire(int, long)}). Codes index a table, so they should be small:
+     * they must be between 0 and {@value #MAX_EVENT_CODE}. Transitions made upon events of this type must not be guarded,
+     * and transitions with an event handler must have a coded event handler as well.
+     * If the code is not valid or already registered, this method throws an {@link IllegalArgumentException}.
+     * @param eventCode code of the event type
+     * @param eventType the event type
+     * @return a configured FSM Builder instance
+     */
+    public FiniteStateMachineBuilder registerEventCode(final int eventCode, final Class<? extends Event> eventType) {
+        if (eventCode < 0 || eventCode > MAX_EVENT_CODE) {
+            throw new IllegalArgumentException("Event code " + eventCode + " must be between 0 and " + MAX_EVENT_CODE);
+        }
+        if (eventType == null) {
+            throw new IllegalArgumentException("No event type is defined for event code " + eventCode);
+        }
+        if (eventCodes.containsKey(eventCode)) {
+            throw new IllegalArgumentException("Event code " + eventCode + " is already registered for event type " + eventCodes.get(eventCode).getName());
+        }
+        eventCodes.put(eventCode, eventType);
+        return this;
+    }
+
+    /**
+     * Register the timeout of a state: a FSM instance which stays in this state longer than the timeout is fired
+     * a {@link org.jeasy.states.api.StateTimeoutEvent}, upon which transitions can be registered as usual.
+     * The timeout is armed when the instance enters the state and cancelled when it leaves the state.
+     * Timeouts are armed in the timing wheel set with {@link #timingWheel(TimingWheel)}, with the resolution of its tick.
+     * If the state is not registered in FSM states or if the timeout is not positive, this method throws an {@link IllegalArgumentException}.
+     * @param state the state
+     * @param timeout of the state
+     * @param unit of the timeout
+     * @return a configured FSM Builder instance
+     */
+    public FiniteStateMachineBuilder registerStateTimeout(final State state, final long timeout, final TimeUnit unit) {
+        if (!states.contains(state)) {
+            String stateName = state != null ? state.getName() : null;
+            throw new IllegalArgumentException("State '" + stateName + "' is not registered in FSM states");
+        }
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Timeout of state '" + state.getName() + "' must be positive");
+        }
+        stateTimeouts.put(state, unit.toNanos(timeout));
+        return this;
+    }
+
+    /**
+     * Set the timing wheel arming state timeouts of FSM instances (see {@link #registerStateTimeout(State, long, TimeUnit)}).
+     * A wheel is typically shared by all FSM definitions of an application.
+     * @param timingWheel the timing wheel
+     * @return a configured FSM Builder instance
+     */
+    public FiniteStateMachineBuilder timingWheel(final TimingWheel timingWheel) {
+        this.timingWheel = timingWheel;
+        return this;
+    }
+
     /**
      * Register FSM final state which is not mandatory.
      * Once in final state, the FSM will ignore all incoming events.
@@ -102,7 +207,7 @@ public class FiniteStateMachineBuilder {
      * @return a configured FSM Builder instance
      */
     public FiniteStateMachineBuilder registerFinalState(final State finalState) {
-        finiteStateMachine.registerFinalState(finalState);
+        finalStates.add(finalState);
         return this;
     }
 
@@ -119,14 +224,98 @@ public class FiniteStateMachineBuilder {
         return this;
     }
 
+    /**
+     * Register a listener notified by FSM instances of the events they process.
+     * Listeners are notified in registration order.
+     * @param transitionListener the listener to register
+     * @return a configured FSM Builder instance
+     */
+    public FiniteStateMachineBuilder registerTransitionListener(final TransitionListener transitionListener) {
+        transitionListeners.add(transitionListener);
+        return this;
+    }
+
+    /**
+     * Enable metrics of FSM instances: number of transitions made and event handler durations per transition,
+     * number of ignored events, unmatched events and errors. Metrics are registered in the platform MBean server as
+     * {@code org.jeasy.states:type=FiniteStateMachine,name=<name>} and returned by {@link FiniteStateMachineMetrics#of}.
+     * Each definition built by this builder has its own metrics: the metrics of a definition replace, in the MBean server,
+     * the metrics of the previous definition built by this builder. Metrics are unregistered when the definition is closed
+     * (see {@link FiniteStateMachineDefinition#close()}).
+     * @param name of the metrics, unique in the JVM
+     * @return a configured FSM Builder instance
+     */
+    public FiniteStateMachineBuilder enableMetrics(final String name) {
+        this.metricsName = name;
+        return this;
+    }
+
+    /**
+     * Set the strategy used by FSM instances to make transitions when events are fired concurrently.
+     * Defaults to {@link ConcurrencyMode#SYNCHRONIZED} on all Java versions. When event handlers run on virtual threads
+     * (Java 21+) and block, {@link ConcurrencyMode#REENTRANT_LOCK} avoids pinning their carrier thread.
+     * @param concurrencyMode the concurrency mode of FSM instances
+     * @return a configured FSM Builder instance
+     */
+    public FiniteStateMachineBuilder concurrencyMode(final ConcurrencyMode concurrencyMode) {
+        this.concurrencyMode = concurrencyMode;
+        return this;
+    }
+
     /**
      * Build a FSM instance. This method checks if FSM definition is valid.
      * If FSM state is not valid, this methods throws an {@link IllegalStateException}
      * @return a configured FSM instance
      */
     public FiniteStateMachine build() {
-        finiteStateMachineDefinitionValidator.validateFiniteStateMachineDefinition(finiteStateMachine);
-        return finiteStateMachine;
+        return buildDefinition().newInstance();
+    }
+
+    /**
+     * Build a FSM instance whose event dispatch is compiled for this definition into a tree of method handles:
+     * in each state, the class of fired events is compared with the event types declared for the state by a chain of
+     * {@link java.lang.invoke.MethodHandles#guardWithTest guards} whose branches call the event handler of their
+     * transition directly. Events of other classes (subtypes of the declared types) and events fired by their code
+     * are dispatched through the transition table. On Java 21+, the tree is held by a hidden class defined for the
+     * definition, so that the JIT can inline the whole dispatch and the event handlers; on older versions the tree
+     * is invoked without being inlined. Each call builds a new definition and compiles it for a single instance:
+     * instances created from the definition returned by {@link #buildDefinition()} are not compiled.
+     * If FSM state is not valid, or if the definition has state timeouts or the {@link ConcurrencyMode#OPTIMISTIC}
+     * concurrency mode (which compiled instances do not support), this methods throws an {@link IllegalStateException}
+     * @return a compiled FSM instance
+     */
+    public FiniteStateMachine compile() {
+        FiniteStateMachineDefinitionImpl definition = (FiniteStateMachineDefinitionImpl) buildDefinition();
+        return CompiledFiniteStateMachineImpl.compile(definition, definition.getInitialState());
+    }
+
+    /**
+     * Build an immutable FSM definition. This method checks if FSM definition is valid and
+     * freezes it into a dispatch table indexed by state and event type.
+     * The definition can then be shared to create any number of FSM instances.
+     * If FSM state is not valid, this methods throws an {@link IllegalStateException}
+     * @return a validated FSM definition
+     */
+    public FiniteStateMachineDefinition buildDefinition() {
+        if (!stateTimeouts.isEmpty()) {
+            if (timingWheel == null) {
+                throw new IllegalStateException("A timing wheel must be set to arm state timeouts");
+            }
+            if (concurrencyMode == ConcurrencyMode.OPTIMISTIC) {
+                throw new IllegalStateException("State timeouts are not supported in " + ConcurrencyMode.OPTIMISTIC + " concurrency mode");
+            }
+        }
+        FiniteStateMachineDefinitionImpl definition = new FiniteStateMachineDefinitionImpl(states, initialState, finalStates,
+                transitions, concurrencyMode, transitionListeners, metricsName, eventCodes, stateTimeouts, timingWheel);
+        finiteStateMachineDefinitionValidator.validateFiniteStateMachineDefinition(definition);
+        if (definition.getMetrics() != null) {
+            if (registeredMetrics != null && registeredMetrics.getName().equals(metricsName)) {
+                registeredMetrics.unregister();
+            }
+            definition.getMetrics().register();
+            registeredMetrics = definition.getMetrics();
+        }
+        return definition;
     }
 
 }
@@ -0,0 +1,242 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AsyncFiniteStateMachine;
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+import org.jeasy.states.api.TransitionListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+final class FiniteStateMachineDefinitionImpl implements FiniteStateMachineDefinition {
+
+    private final State initialState;
+    private final Set<State> finalStates;
+    private final Set<State> states;
+    private final Set<Transition> transitions;
+    private final TransitionTable transitionTable;
+    private final ConcurrencyMode concurrencyMode;
+    private final TransitionListener transitionListener;
+    private final FiniteStateMachineMetrics metrics;
+    private final long[] stateTimeouts;
+    private final TimingWheel timingWheel;
+
+    FiniteStateMachineDefinitionImpl(final Set<State> states, final State initialState,
+                                     final Set<State> finalStates, final Set<Transition> transitions,
+                                     final ConcurrencyMode concurrencyMode, final List<TransitionListener> transitionListeners,
+                                     final String metricsName, final Map<Integer, Class<? extends Event>> eventCodes,
+                                     final Map<State, Long> stateTimeouts, final TimingWheel timingWheel) {
+        this.states = Collections.unmodifiableSet(new HashSet<>(states));
+        this.initialState = initialState;
+        this.finalStates = Collections.unmodifiableSet(new HashSet<>(finalStates));
+        this.transitions = Collections.unmodifiableSet(new LinkedHashSet<>(transitions));
+        this.transitionTable = new TransitionTable(this.states, this.finalStates, this.transitions, eventCodes);
+        this.concurrencyMode = concurrencyMode;
+        this.timingWheel = timingWheel;
+        if (stateTimeouts.isEmpty()) {
+            this.stateTimeouts = null;
+        } else {
+            this.stateTimeouts = new long[transitionTable.getStateCount()];
+            for (Map.Entry<State, Long> stateTimeout : stateTimeouts.entrySet()) {
+                this.stateTimeouts[getStateOrdinal(stateTimeout.getKey())] = stateTimeout.getValue();
+            }
+        }
+        this.metrics = metricsName != null ? new FiniteStateMachineMetrics(metricsName, transitionTable) : null;
+        List<TransitionListener> listeners = new ArrayList<>(transitionListeners);
+        if (metrics != null) {
+            listeners.add(metrics);
+        }
+        if (listeners.isEmpty()) {
+            this.transitionListener = null;
+        } else if (listeners.size() == 1) {
+            this.transitionListener = listeners.get(0);
+        } else {
+            this.transitionListener = new CompositeTransitionListener(listeners);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FiniteStateMachine newInstance() {
+        return newInstance(initialState);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FiniteStateMachine newInstance(final State currentState) {
+        int ordinal = getStateOrdinal(currentState);
+        if (concurrencyMode == ConcurrencyMode.OPTIMISTIC) {
+            return new OptimisticFiniteStateMachineImpl(this, ordinal);
+        }
+        return createInstance(ordinal).start();
+    }
+
+    /*
+     * Create a locking instance, whose state timeout is not armed yet
+     */
+    private FiniteStateMachineImpl createInstance(final int ordinal) {
+        if (concurrencyMode == ConcurrencyMode.REENTRANT_LOCK) {
+            return new ReentrantLockFiniteStateMachineImpl(this, ordinal);
+        }
+        return new FiniteStateMachineImpl(this, ordinal);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncFiniteStateMachine newAsyncInstance(final Executor executor) {
+        return newAsyncInstance(initialState, executor);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncFiniteStateMachine newAsyncInstance(final State currentState, final Executor executor) {
+        if (concurrencyMode == ConcurrencyMode.OPTIMISTIC) {
+            return new AsyncFiniteStateMachineImpl(this, newInstance(currentState), executor);
+        }
+        // state timeouts are queued in the mailbox, so the mailbox is set before the timeout is armed
+        FiniteStateMachineImpl finiteStateMachine = createInstance(getStateOrdinal(currentState));
+        AsyncFiniteStateMachineImpl asyncFiniteStateMachine = new AsyncFiniteStateMachineImpl(this, finiteStateMachine, executor);
+        finiteStateMachine.setMailbox(asyncFiniteStateMachine);
+        finiteStateMachine.start();
+        return asyncFiniteStateMachine;
+    }
+
+    /**
+     * Return the ordinal of a registered state.
+     * If the state is not registered in FSM states, this method throws an {@link IllegalArgumentException}.
+     */
+    int getStateOrdinal(final State state) {
+        int ordinal = transitionTable.getOrdinal(state);
+        if (ordinal == TransitionTable.UNKNOWN_STATE) {
+            String stateName = state != null ? state.getName() : null;
+            throw new IllegalArgumentException("State '" + stateName + "' is not registered in FSM states");
+        }
+        return ordinal;
+    }
+
+    TransitionTable getTransitionTable() {
+        return transitionTable;
+    }
+
+    ConcurrencyMode getConcurrencyMode() {
+        return concurrencyMode;
+    }
+
+    /**
+     * Return the transition listener of FSM instances, or null if no listener is registered.
+     */
+    TransitionListener getTransitionListener() {
+        return transitionListener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        if (metrics != null) {
+            metrics.unregister();
+        }
+    }
+
+    /**
+     * Return the metrics of FSM instances, or null if metrics are not enabled.
+     */
+    FiniteStateMachineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Return true if a timeout is declared for at least one state.
+     */
+    boolean hasStateTimeouts() {
+        return stateTimeouts != null;
+    }
+
+    /**
+     * Return the timeout in nanoseconds of the state of the given ordinal, or 0 if no timeout is declared for this state.
+     */
+    long getStateTimeout(final int ordinal) {
+        return stateTimeouts != null ? stateTimeouts[ordinal] : 0L;
+    }
+
+    /**
+     * Return the timing wheel arming state timeouts, or null if no timeout is declared.
+     */
+    TimingWheel getTimingWheel() {
+        return timingWheel;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public State getInitialState() {
+        return initialState;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<State> getFinalStates() {
+        return finalStates;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<State> getStates() {
+        return states;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Transition> getTransitions() {
+        return transitions;
+    }
+
+}
@@ -23,7 +23,7 @@
  */
 package org.jeasy.states.core;
 
-import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
 import org.jeasy.states.api.State;
 import org.jeasy.states.util.Utils;
 
@@ -32,21 +32,33 @@ import java.util.Set;
 class FiniteStateMachineDefinitionValidator {
 
     /**
-     * Deterministic FSM validation : for each state, exactly one outgoing transition for an event type must be defined.
+     * FSM definition validation : the initial state, the final states and the parents of nested states
+     * must belong to FSM states. Transitions are checked when they are registered and frozen in the transition table,
+     * where guarded transitions of the same state and event type are evaluated in registration order and nested states
+     * inherit the transitions of their parent states for the event types they do not handle themselves.
      */
-    void validateFiniteStateMachineDefinition(FiniteStateMachine finiteStateMachine) {
+    void validateFiniteStateMachineDefinition(FiniteStateMachineDefinition finiteStateMachineDefinition) {
 
-        Set<State> states = finiteStateMachine.getStates();
+        Set<State> states = finiteStateMachineDefinition.getStates();
 
         //check if initial state belongs to FSM declared states.
-        State initialState = finiteStateMachine.getInitialState();
+        State initialState = finiteStateMachineDefinition.getInitialState();
         if (!states.contains(initialState)) {
             throw new IllegalStateException("Initial state '" + initialState.getName() + "' must belong to FSM states: " +
                     Utils.dumpFSMStates(states));
         }
 
+        //check if parent states belong to FSM declared states.
+        for (State state : states) {
+            State parent = state.getParent();
+            if (parent != null && !states.contains(parent)) {
+                throw new IllegalStateException("Parent state '" + parent.getName() + "' of state '" + state.getName() +
+                        "' must belong to FSM states: " + Utils.dumpFSMStates(states));
+            }
+        }
+
         //check if registered final states belong to FSM declared states.
-        for (State finalState : finiteStateMachine.getFinalStates()) {
+        for (State finalState : finiteStateMachineDefinition.getFinalStates()) {
             if (!states.contains(finalState)) {
                 throw new IllegalStateException("Final state '" + finalState.getName() + "' must belong to FSM states: " +
                         Utils.dumpFSMStates(states));
@@ -25,122 +25,223 @@ package org.jeasy.states.core;
 
 import org.jeasy.states.api.*;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Iterator;
 
-final class FiniteStateMachineImpl implements FiniteStateMachine {
-
-    private static final Logger LOGGER = Logger.getLogger(FiniteStateMachineImpl.class.getSimpleName());
+/**
+ * FSM instance: holds the runtime state of the machine (current state, last event and last transition)
+ * and shares its immutable definition with all other instances of the same definition.
+ * Events are fired under the instance monitor.
+ */
+class FiniteStateMachineImpl extends AbstractFiniteStateMachine implements AbstractFiniteStateMachine.TransitionCommit {
 
-    private State currentState;
-    private final State initialState;
-    private final Set<State> finalStates;
-    private final Set<State> states;
-    private final Set<Transition> transitions;
+    private int currentStateOrdinal;
     private Event lastEvent;
     private Transition lastTransition;
+    /**
+     * State timeouts of the instance, null if its definition has no state timeout.
+     */
+    private final StateTimeouts stateTimeouts;
 
-    FiniteStateMachineImpl(final Set<State> states, final State initialState) {
-        this.states = states;
-        this.initialState = initialState;
-        currentState = initialState;
-        transitions = new HashSet<>();
-        finalStates = new HashSet<>();
+    FiniteStateMachineImpl(final FiniteStateMachineDefinitionImpl definition, final int currentStateOrdinal) {
+        super(definition);
+        this.currentStateOrdinal = currentStateOrdinal;
+        this.stateTimeouts = definition.hasStateTimeouts() ? new StateTimeouts() : null;
+    }
+
+    /**
+     * Set the asynchronous instance wrapping this instance, in the mailbox of which expired timeouts are queued.
+     * Must be called before {@link #start()}. Ignored if the definition has no state timeout.
+     */
+    final void setMailbox(final AsyncFiniteStateMachineImpl mailbox) {
+        if (stateTimeouts != null) {
+            stateTimeouts.mailbox = mailbox;
+        }
+    }
+
+    /**
+     * Return the asynchronous instance wrapping this instance, if any.
+     */
+    final AsyncFiniteStateMachineImpl getMailbox() {
+        return stateTimeouts != null ? stateTimeouts.mailbox : null;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    @SuppressWarnings("unchecked")
-    public final synchronized State fire(final Event event) throws FiniteStateMachineException {
-
-        if (!finalStates.isEmpty() && finalStates.contains(currentState)) {
-            LOGGER.log(Level.WARNING, "FSM is in final state '" + currentState.getName() + "', event " + event + " is ignored.");
-            return currentState;
-        }
+    public synchronized State fire(final Event event) throws FiniteStateMachineException {
+        return doFire(event);
+    }
 
-        if (event == null) {
-            LOGGER.log(Level.WARNING, "Null event fired, FSM state unchanged");
-            return currentState;
-        }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized State fireAll(final Iterable<? extends Event> events) throws FiniteStateMachineBatchException {
+        return doFireAll(events);
+    }
 
-        for (Transition transition : transitions) {
-            if (
-                    currentState.equals(transition.getSourceState()) && //fsm is in the right state as expected by transition definition
-                    transition.getEventType().equals(event.getClass()) && //fired event type is as expected by transition definition
-                    states.contains(transition.getTargetState()) //target state is defined
-                    ) {
-                try {
-                    //perform action, if any
-                    if (transition.getEventHandler() != null) {
-                        transition.getEventHandler().handleEvent(event);
-                    }
-                    //transit to target state
-                    currentState = transition.getTargetState();
-
-                    //save last triggered event and transition
-                    lastEvent = event;
-                    lastTransition = transition;
-
-                    break;
-                } catch (Exception e) {
-                    LOGGER.log(Level.SEVERE, "An exception occurred during handling event " + event + " of transition " + transition, e);
-                    throw new FiniteStateMachineException(transition, event, e);
-                }
+    /**
+     * Fire a batch of events without any synchronization: callers are responsible for guarding the instance.
+     */
+    final State doFireAll(final Iterable<? extends Event> events) throws FiniteStateMachineBatchException {
+        TransitionTable table = definition.getTransitionTable();
+        int index = 0;
+        Iterator<? extends Event> iterator = events.iterator();
+        while (iterator.hasNext()) {
+            Event event = iterator.next();
+            if (table.isFinalState(currentStateOrdinal)) {
+                ignoredEvents(definition.getTransitionListener(), table.getState(currentStateOrdinal), event, iterator);
+                break;
             }
+            try {
+                doFire(event);
+            } catch (FiniteStateMachineException e) {
+                throw new FiniteStateMachineBatchException(index, e);
+            }
+            index++;
         }
-        return currentState;
+        return table.getState(currentStateOrdinal);
     }
 
-    void registerTransition(final Transition transition) {
-        transitions.add(transition);
+    /**
+     * Fire an event without any synchronization: callers are responsible for guarding the instance.
+     */
+    final State doFire(final Event event) throws FiniteStateMachineException {
+        TransitionTable table = definition.getTransitionTable();
+        TransitionListener listener = definition.getTransitionListener();
+        TransitionTable.Entry entry = selectEntry(table, currentStateOrdinal, event, listener);
+        if (entry != null) {
+            makeTransition(listener, definition.getMetrics(), this, 0, entry, event, 0, 0L);
+        }
+        return table.getState(currentStateOrdinal);
     }
 
-    void registerFinalState(final State finalState) {
-        finalStates.add(finalState);
+    /**
+     * Return true if a transition is defined for the given event in the current state, whether or not its guard accepts the event.
+     */
+    final boolean hasTransition(final Event event) {
+        TransitionTable table = definition.getTransitionTable();
+        return event != null && !table.isFinalState(currentStateOrdinal)
+                && table.getEntry(currentStateOrdinal, event.getClass()) != null;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public State getCurrentState() {
-        return currentState;
+    public synchronized State fire(final int eventCode, final long payload) throws FiniteStateMachineException {
+        return doFire(eventCode, payload);
     }
 
     /**
-     * {@inheritDoc}
+     * Fire an event by its code without any synchronization: callers are responsible for guarding the instance.
      */
-    @Override
-    public State getInitialState() {
-        return initialState;
+    final State doFire(final int eventCode, final long payload) throws FiniteStateMachineException {
+        TransitionTable table = definition.getTransitionTable();
+        TransitionListener listener = definition.getTransitionListener();
+        TransitionTable.Entry entry = selectCodedEntry(table, currentStateOrdinal, eventCode, listener);
+        if (entry != null) {
+            makeTransition(listener, definition.getMetrics(), this, 0, entry, null, eventCode, payload);
+        }
+        return table.getState(currentStateOrdinal);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Set<State> getFinalStates() {
-        return finalStates;
+    public final void commitTransition(final int index, final TransitionTable.Entry entry, final Event event) throws Exception {
+        commit(entry, event);
+        currentStateOrdinal = entry.target;
+        //save last triggered event and transition
+        lastEvent = event;
+        lastTransition = entry.transition;
+        if (stateTimeouts != null) {
+            stateEntered();
+        }
+    }
+
+    /**
+     * Called once the event handler of a transition has been successfully executed, before the FSM transits
+     * to the target state. The event is null if it was fired by its code.
+     * If this method throws an exception, the FSM state is unchanged.
+     */
+    void commit(final TransitionTable.Entry entry, final Event event) throws Exception {
+        // no-op by default
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Set<State> getStates() {
-        return states;
+    public synchronized void reset(final State state) {
+        doReset(state);
+    }
+
+    final void doReset(final State state) {
+        currentStateOrdinal = definition.getStateOrdinal(state);
+        lastEvent = null;
+        lastTransition = null;
+        if (stateTimeouts != null) {
+            stateEntered();
+        }
+    }
+
+    /**
+     * Arm the timeout of the current state, if any, once the instance is created.
+     * @return this instance
+     */
+    synchronized FiniteStateMachineImpl start() {
+        doStart();
+        return this;
+    }
+
+    final void doStart() {
+        if (stateTimeouts != null) {
+            stateEntered();
+        }
+    }
+
+    /**
+     * Fire a {@link StateTimeoutEvent} if the given timeout is still the timeout of the current state.
+     * Called by the timing wheel once the timeout expired.
+     */
+    synchronized void expire(final TimingWheel.Timeout expired) throws FiniteStateMachineException {
+        doExpire(expired);
+    }
+
+    final void doExpire(final TimingWheel.Timeout expired) throws FiniteStateMachineException {
+        if (stateTimeouts == null || stateTimeouts.timeout != expired) {
+            // the instance left the state in the meantime
+            return;
+        }
+        stateTimeouts.timeout = null;
+        doFire(new StateTimeoutEvent(getCurrentState(), expired.timeoutNanos));
+    }
+
+    /*
+     * Cancel the timeout of the state left, if not expired yet, and arm the timeout of the state entered.
+     * A transition to the same state re-arms its timeout.
+     */
+    private void stateEntered() {
+        TimingWheel timingWheel = definition.getTimingWheel();
+        if (stateTimeouts.timeout != null) {
+            timingWheel.cancel(stateTimeouts.timeout);
+            stateTimeouts.timeout = null;
+        }
+        long timeoutNanos = definition.getStateTimeout(currentStateOrdinal);
+        if (timeoutNanos > 0 && !definition.getTransitionTable().isFinalState(currentStateOrdinal)) {
+            stateTimeouts.timeout = timingWheel.schedule(this, timeoutNanos);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Set<Transition> getTransitions() {
-        return transitions;
+    public State getCurrentState() {
+        return definition.getTransitionTable().getState(currentStateOrdinal);
     }
 
     @Override
@@ -153,4 +254,20 @@ final class FiniteStateMachineImpl implements FiniteStateMachine {
         return lastTransition;
     }
 
+    /**
+     * Runtime state of the state timeouts of an instance, kept apart so that instances without state timeouts
+     * do not carry it.
+     */
+    private static final class StateTimeouts {
+
+        /**
+         * Timeout of the current state, null if not armed.
+         */
+        private TimingWheel.Timeout timeout;
+        /**
+         * Asynchronous instance wrapping this instance, null if the instance is not asynchronous.
+         */
+        private AsyncFiniteStateMachineImpl mailbox;
+    }
+
 }
@@ -0,0 +1,219 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+import org.jeasy.states.api.TransitionListener;
+
+import javax.management.JMException;
+import javax.management.InstanceNotFoundException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of all FSM instances of a definition, enabled with {@link FiniteStateMachineBuilder#enableMetrics(String)}.
+ *
+ * Counters are {@link LongAdder}s and handler durations are recorded in fixed-memory logarithmic histograms,
+ * one per transition, so that recording does not allocate.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public final class FiniteStateMachineMetrics implements FiniteStateMachineMetricsMXBean, TransitionListener {
+
+    private final String name;
+    private final TransitionTable table;
+    private final LongAdder[] transitionCounts;
+    private final LatencyHistogram handlerDurations;
+    private final LongAdder ignoredEvents = new LongAdder();
+    private final LongAdder unmatchedEvents = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicBoolean registered = new AtomicBoolean();
+
+    FiniteStateMachineMetrics(final String name, final TransitionTable table) {
+        this.name = name;
+        this.table = table;
+        this.transitionCounts = new LongAdder[table.getTransitionCount()];
+        for (int i = 0; i < transitionCounts.length; i++) {
+            transitionCounts[i] = new LongAdder();
+        }
+        this.handlerDurations = new LatencyHistogram(table.getTransitionCount());
+    }
+
+    /**
+     * Return the metrics of the given definition.
+     * @param definition of FSM instances
+     * @return the metrics of the definition or null if metrics are not enabled
+     */
+    public static FiniteStateMachineMetrics of(final FiniteStateMachineDefinition definition) {
+        if (definition instanceof FiniteStateMachineDefinitionImpl) {
+            return ((FiniteStateMachineDefinitionImpl) definition).getMetrics();
+        }
+        return null;
+    }
+
+    /**
+     * Record a transition made.
+     * @param transitionOrdinal of the transition
+     * @param handlerNanos duration of the event handler, negative if the transition has no event handler
+     */
+    void transitionMade(final int transitionOrdinal, final long handlerNanos) {
+        transitionCounts[transitionOrdinal].increment();
+        if (handlerNanos >= 0) {
+            handlerDurations.record(transitionOrdinal, handlerNanos);
+        }
+    }
+
+    @Override
+    public void onIgnoredEvent(final State currentState, final Event event) {
+        ignoredEvents.increment();
+    }
+
+    @Override
+    public void onUnmatchedEvent(final State currentState, final Event event) {
+        unmatchedEvents.increment();
+    }
+
+    @Override
+    public void onError(final Transition transition, final Event event, final Exception exception) {
+        errors.increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTransitions() {
+        long transitions = 0;
+        for (LongAdder count : transitionCounts) {
+            transitions += count.sum();
+        }
+        return transitions;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getIgnoredEvents() {
+        return ignoredEvents.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getUnmatchedEvents() {
+        return unmatchedEvents.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TransitionMetrics> getTransitionMetrics() {
+        List<TransitionMetrics> transitionMetrics = new ArrayList<>();
+        for (int ordinal = 0; ordinal < transitionCounts.length; ordinal++) {
+            Transition transition = table.getTransitionEntry(ordinal).transition;
+            transitionMetrics.add(new TransitionMetrics(transition.getName(),
+                    transition.getSourceState().getName(),
+                    transition.getEventType().getName(),
+                    transition.getTargetState().getName(),
+                    transitionCounts[ordinal].sum(),
+                    handlerDurations.percentile(ordinal, 50),
+                    handlerDurations.percentile(ordinal, 99),
+                    handlerDurations.percentile(ordinal, 99.9),
+                    handlerDurations.max(ordinal)));
+        }
+        return transitionMetrics;
+    }
+
+    /**
+     * Return the name of the metrics.
+     * @return the name of the metrics
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the name under which the metrics are registered in the platform MBean server.
+     * @return the object name of the metrics
+     */
+    public ObjectName getObjectName() {
+        try {
+            return new ObjectName("org.jeasy.states:type=FiniteStateMachine,name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Invalid metrics name '" + name + "'", e);
+        }
+    }
+
+    /**
+     * Register the metrics in the platform MBean server. Registering the same metrics again is a no-op.
+     * If other metrics are already registered under the same name, this method throws an {@link IllegalStateException}.
+     */
+    void register() {
+        if (!registered.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, getObjectName());
+        } catch (JMException e) {
+            registered.set(false);
+            throw new IllegalStateException("Unable to register FSM metrics '" + name + "'", e);
+        }
+    }
+
+    /**
+     * Unregister the metrics from the platform MBean server, typically once FSM instances of the definition are discarded.
+     * Unregistering metrics which are not registered is a no-op: other metrics registered under the same name are left untouched.
+     */
+    public void unregister() {
+        if (!registered.compareAndSet(true, false)) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName());
+        } catch (InstanceNotFoundException e) {
+            // already unregistered from the MBean server
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to unregister FSM metrics '" + name + "'", e);
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link FiniteStateMachineMetrics}, registered as
+ * {@code org.jeasy.states:type=FiniteStateMachine,name=<name>} in the platform MBean server.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public interface FiniteStateMachineMetricsMXBean {
+
+    /**
+     * Return the number of transitions made by all FSM instances of the definition.
+     * @return the number of transitions made
+     */
+    long getTransitions();
+
+    /**
+     * Return the number of events ignored because FSM instances were in a final state or because events were null.
+     * @return the number of ignored events
+     */
+    long getIgnoredEvents();
+
+    /**
+     * Return the number of events for which no transition is defined in the current state.
+     * @return the number of unmatched events
+     */
+    long getUnmatchedEvents();
+
+    /**
+     * Return the number of exceptions thrown by guards and event handlers.
+     * @return the number of errors
+     */
+    long getErrors();
+
+    /**
+     * Return the metrics of each transition of the definition.
+     * @return metrics of each transition
+     */
+    List<TransitionMetrics> getTransitionMetrics();
+
+}
@@ -0,0 +1,347 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.TransitionListener;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Fixed-size population of FSM instances of a shared definition, indexed by entity number.
+ *
+ * Only the current state of each entity is stored, as an ordinal of the definition's transition table in a
+ * primitive array: one byte per entity for definitions of up to 256 states, two bytes for up to 65536 states
+ * and four bytes otherwise. Unlike {@link FiniteStateMachineRegistry}, the last event and last transition
+ * of entities are not recorded. Entities are guarded by a fixed set of locks (one per stripe of indexes).
+ *
+ * The population can be written to a binary snapshot file, either fully or incrementally (only entities
+ * whose state changed since the previous snapshot), and restored from a full snapshot followed by
+ * the incremental snapshots taken after it, in order.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public class FiniteStateMachinePopulation {
+
+    /**
+     * Number of consecutive entities whose states are read under a single acquisition of each stripe lock.
+     */
+    static final int CHUNK_SIZE = 4096;
+
+    private final FiniteStateMachineDefinitionImpl definition;
+    private final OrdinalArray ordinals;
+    private final StripedLocks locks;
+    private final AtomicLongArray dirty;
+    private final AbstractFiniteStateMachine.TransitionCommit commit = this::commitTransition;
+
+    /**
+     * Create a new {@link FiniteStateMachinePopulation} with a default number of lock stripes.
+     * All entities are in the initial state.
+     *
+     * @param definition of FSM instances
+     * @param size number of entities
+     */
+    public FiniteStateMachinePopulation(final FiniteStateMachineDefinition definition, final int size) {
+        this(definition, size, StripedLocks.defaultStripes());
+    }
+
+    /**
+     * Create a new {@link FiniteStateMachinePopulation}. All entities are in the initial state.
+     *
+     * @param definition of FSM instances, built with {@link FiniteStateMachineBuilder#buildDefinition()}
+     * @param size number of entities
+     * @param stripes minimum number of locks guarding entities
+     */
+    public FiniteStateMachinePopulation(final FiniteStateMachineDefinition definition, final int size, final int stripes) {
+        if (!(definition instanceof FiniteStateMachineDefinitionImpl)) {
+            throw new IllegalArgumentException("The definition must be built with a FiniteStateMachineBuilder");
+        }
+        if (((FiniteStateMachineDefinitionImpl) definition).hasStateTimeouts()) {
+            throw new IllegalArgumentException("State timeouts are not supported by populations");
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("The population size must not be negative");
+        }
+        this.definition = (FiniteStateMachineDefinitionImpl) definition;
+        this.ordinals = OrdinalArray.of(this.definition.getTransitionTable().getStateCount(), size);
+        this.ordinals.fill(this.definition.getStateOrdinal(definition.getInitialState()));
+        this.locks = new StripedLocks(stripes);
+        this.dirty = new AtomicLongArray((size + Long.SIZE - 1) >>> 6);
+    }
+
+    /**
+     * Fire an event for the given entity.
+     * @param index of the entity
+     * @param event to fire
+     * @return The next FSM state of the entity defined by the transition to make
+     * @throws FiniteStateMachineException thrown if an exception occurs during event handling
+     */
+    public State fire(final int index, final Event event) throws FiniteStateMachineException {
+        checkIndex(index);
+        ReentrantLock lock = locks.get(index);
+        FlightRecorderEvents.lock(lock);
+        try {
+            return doFire(index, event);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private State doFire(final int index, final Event event) throws FiniteStateMachineException {
+        TransitionTable table = definition.getTransitionTable();
+        TransitionListener listener = definition.getTransitionListener();
+        int currentStateOrdinal = ordinals.get(index);
+        TransitionTable.Entry entry = AbstractFiniteStateMachine.selectEntry(table, currentStateOrdinal, event, listener);
+        if (entry == null) {
+            return table.getState(currentStateOrdinal);
+        }
+        AbstractFiniteStateMachine.makeTransition(listener, definition.getMetrics(), commit, index, entry, event, 0, 0L);
+        return table.getState(entry.target);
+    }
+
+    /*
+     * Commit step of the transitions of entities
+     */
+    private void commitTransition(final int index, final TransitionTable.Entry entry, final Event event) {
+        if (entry.target != ordinals.get(index)) {
+            ordinals.set(index, entry.target);
+            markDirty(index);
+        }
+    }
+
+    /**
+     * Return the current state of the given entity.
+     * @param index of the entity
+     * @return the current state of the entity
+     */
+    public State getCurrentState(final int index) {
+        checkIndex(index);
+        return definition.getTransitionTable().getState(getOrdinal(index));
+    }
+
+    /**
+     * Put the given entity in the given state.
+     * If the state is not registered in FSM states, this method throws an {@link IllegalArgumentException}.
+     * @param index of the entity
+     * @param state of the entity
+     */
+    public void reset(final int index, final State state) {
+        checkIndex(index);
+        int ordinal = definition.getStateOrdinal(state);
+        ReentrantLock lock = locks.get(index);
+        FlightRecorderEvents.lock(lock);
+        try {
+            ordinals.set(index, ordinal);
+            markDirty(index);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Put the given entity in the initial state.
+     * @param index of the entity
+     */
+    public void reset(final int index) {
+        reset(index, definition.getInitialState());
+    }
+
+    /**
+     * Perform the given action for the current state of each entity, in index order.
+     * States are read by chunks of consecutive entities, each stripe lock being acquired once per chunk:
+     * the state of each entity is consistent, but entities may change while others are read.
+     * The action is performed outside of locks.
+     * @param action to perform for each entity state and index
+     */
+    public void forEach(final ObjIntConsumer<? super State> action) {
+        TransitionTable table = definition.getTransitionTable();
+        int[] chunk = new int[CHUNK_SIZE];
+        for (int from = 0; from < ordinals.size(); from += CHUNK_SIZE) {
+            int count = getOrdinals(from, chunk);
+            for (int i = 0; i < count; i++) {
+                action.accept(table.getState(chunk[i]), from + i);
+            }
+        }
+    }
+
+    /**
+     * Write the state of all entities to the given file, replacing its content if any.
+     * The snapshot is written to a temporary file of the same directory which then atomically replaces the given file:
+     * if it cannot be written, the given file is left unchanged and changed entities are part of the next incremental snapshot.
+     * Changes made concurrently may or may not be part of the snapshot, but are part of the next incremental snapshot.
+     * @param file to write
+     * @throws IOException thrown if the snapshot cannot be written
+     */
+    public void snapshot(final Path file) throws IOException {
+        PopulationSnapshot.write(this, file, false);
+    }
+
+    /**
+     * Write the state of entities changed since the previous snapshot to the given file, replacing its content if any.
+     * The snapshot is written to a temporary file of the same directory which then atomically replaces the given file:
+     * if it cannot be written, the given file is left unchanged and changed entities are part of the next incremental snapshot.
+     * Changes made concurrently may or may not be part of the snapshot, but are part of the next incremental snapshot.
+     * @param file to write
+     * @return the number of entities written
+     * @throws IOException thrown if the snapshot cannot be written
+     */
+    public int incrementalSnapshot(final Path file) throws IOException {
+        return PopulationSnapshot.write(this, file, true);
+    }
+
+    /**
+     * Restore the state of entities from the given full or incremental snapshot file. The file is memory-mapped
+     * and fully validated before any entity is restored, so a truncated or corrupted snapshot leaves the population unchanged.
+     * If the snapshot was taken from a population of a different size, this method throws an {@link IllegalArgumentException}.
+     * @param file to read
+     * @return the number of entities restored
+     * @throws IOException thrown if the snapshot cannot be read, is malformed or contains a state which is not registered in FSM states
+     */
+    public int restore(final Path file) throws IOException {
+        return PopulationSnapshot.read(this, file);
+    }
+
+    /**
+     * Return the number of entities.
+     * @return the number of entities
+     */
+    public int size() {
+        return ordinals.size();
+    }
+
+    /**
+     * Return the definition of FSM instances.
+     * @return the FSM definition
+     */
+    public FiniteStateMachineDefinition getDefinition() {
+        return definition;
+    }
+
+    TransitionTable getTransitionTable() {
+        return definition.getTransitionTable();
+    }
+
+    int getOrdinal(final int index) {
+        ReentrantLock lock = locks.get(index);
+        FlightRecorderEvents.lock(lock);
+        try {
+            return ordinals.get(index);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read the states of consecutive entities starting at the given index, acquiring each stripe lock once,
+     * and return the number of states read.
+     */
+    int getOrdinals(final int from, final int[] chunk) {
+        int count = Math.min(chunk.length, ordinals.size() - from);
+        // chain the entities of the chunk by stripe
+        int[] first = new int[locks.size()];
+        Arrays.fill(first, -1);
+        int[] next = new int[count];
+        for (int i = count - 1; i >= 0; i--) {
+            int stripe = locks.stripe(from + i);
+            next[i] = first[stripe];
+            first[stripe] = i;
+        }
+        for (int stripe = 0; stripe < first.length; stripe++) {
+            if (first[stripe] < 0) {
+                continue;
+            }
+            ReentrantLock lock = locks.getStripe(stripe);
+            FlightRecorderEvents.lock(lock);
+            try {
+                for (int i = first[stripe]; i >= 0; i = next[i]) {
+                    chunk[i] = ordinals.get(from + i);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Set the state of an entity without marking it as changed since the previous snapshot.
+     */
+    void setOrdinal(final int index, final int ordinal) {
+        checkIndex(index);
+        ReentrantLock lock = locks.get(index);
+        FlightRecorderEvents.lock(lock);
+        try {
+            ordinals.set(index, ordinal);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the bit set of entities changed since the previous call, and clear it.
+     */
+    long[] drainDirtyWords() {
+        long[] words = new long[dirty.length()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = dirty.getAndSet(i, 0L);
+        }
+        return words;
+    }
+
+    /**
+     * Mark again the entities of words previously drained, when they could not be written in a snapshot.
+     */
+    void restoreDirtyWords(final long[] words) {
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            if (word != 0) {
+                dirty.accumulateAndGet(i, word, (current, restored) -> current | restored);
+            }
+        }
+    }
+
+    private void markDirty(final int index) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        long current = dirty.get(word);
+        while ((current & bit) == 0 && !dirty.compareAndSet(word, current, current | bit)) {
+            current = dirty.get(word);
+        }
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= ordinals.size()) {
+            throw new IndexOutOfBoundsException("Entity index " + index + " is out of population bounds [0, " + ordinals.size() + ")");
+        }
+    }
+
+}
@@ -0,0 +1,241 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.FiniteStateMachineBatchException;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Registry of FSM instances of a shared definition, keyed by entity identifier.
+ *
+ * FSM instances are created on demand, in the initial state, the first time an event is fired for their key.
+ * Instances are not guarded by their own monitor but by a fixed set of locks (one per stripe of keys),
+ * so that firing events for millions of entities neither inflates millions of monitors nor allocates one lock per entity.
+ * Event handlers run under the lock of their stripe: slow handlers delay events of other entities of the same stripe,
+ * in which case the number of stripes should be increased. Event handlers must not fire events to the registry:
+ * two handlers firing events for each other's entity from different stripes would deadlock.
+ * Instances are always guarded by these locks: the {@link ConcurrencyMode} of the definition is ignored.
+ *
+ * @param <K> type of entity identifiers
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public class FiniteStateMachineRegistry<K> {
+
+    private final FiniteStateMachineDefinitionImpl definition;
+    private final int initialStateOrdinal;
+    private final Map<K, FiniteStateMachineImpl> finiteStateMachines;
+    private final StripedLocks locks;
+    private final Function<K, FiniteStateMachineImpl> factory;
+
+    /**
+     * Create a new {@link FiniteStateMachineRegistry} with a default number of lock stripes.
+     *
+     * @param definition of FSM instances
+     */
+    public FiniteStateMachineRegistry(final FiniteStateMachineDefinition definition) {
+        this(definition, StripedLocks.defaultStripes());
+    }
+
+    /**
+     * Create a new {@link FiniteStateMachineRegistry}.
+     *
+     * @param definition of FSM instances, built with {@link FiniteStateMachineBuilder#buildDefinition()}
+     * @param stripes minimum number of locks guarding FSM instances
+     */
+    public FiniteStateMachineRegistry(final FiniteStateMachineDefinition definition, final int stripes) {
+        if (!(definition instanceof FiniteStateMachineDefinitionImpl)) {
+            throw new IllegalArgumentException("The definition must be built with a FiniteStateMachineBuilder");
+        }
+        if (((FiniteStateMachineDefinitionImpl) definition).hasStateTimeouts()) {
+            throw new IllegalArgumentException("State timeouts are not supported by registries");
+        }
+        this.definition = (FiniteStateMachineDefinitionImpl) definition;
+        this.initialStateOrdinal = this.definition.getStateOrdinal(definition.getInitialState());
+        this.finiteStateMachines = new ConcurrentHashMap<>();
+        this.locks = new StripedLocks(stripes);
+        this.factory = key -> new FiniteStateMachineImpl(this.definition, initialStateOrdinal);
+    }
+
+    /**
+     * Fire an event for the given entity, creating its FSM instance if needed.
+     * @param key of the entity
+     * @param event to fire
+     * @return The next FSM state of the entity defined by the transition to make
+     * @throws FiniteStateMachineException thrown if an exception occurs during event handling
+     */
+    public State fire(final K key, final Event event) throws FiniteStateMachineException {
+        ReentrantLock lock = locks.get(key.hashCode());
+        FlightRecorderEvents.lock(lock);
+        try {
+            return finiteStateMachines.computeIfAbsent(key, factory).doFire(event);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fire a batch of events for the given entity, creating its FSM instance if needed.
+     * @param key of the entity
+     * @param events to fire
+     * @return The FSM state of the entity once all events have been processed
+     * @throws FiniteStateMachineBatchException thrown if an exception occurs during the handling of an event
+     * @see org.jeasy.states.api.FiniteStateMachine#fireAll(Iterable)
+     */
+    public State fireAll(final K key, final Iterable<? extends Event> events) throws FiniteStateMachineBatchException {
+        ReentrantLock lock = locks.get(key.hashCode());
+        FlightRecorderEvents.lock(lock);
+        try {
+            return finiteStateMachines.computeIfAbsent(key, factory).doFireAll(events);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the current state of the given entity.
+     * @param key of the entity
+     * @return the current state of the entity or null if no FSM instance is registered for this entity
+     */
+    public State getCurrentState(final K key) {
+        FiniteStateMachineImpl finiteStateMachine = finiteStateMachines.get(key);
+        if (finiteStateMachine == null) {
+            return null;
+        }
+        ReentrantLock lock = locks.get(key.hashCode());
+        FlightRecorderEvents.lock(lock);
+        try {
+            return finiteStateMachine.getCurrentState();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the last transition made by the FSM instance of the given entity.
+     * @param key of the entity
+     * @return the last transition made or null if none
+     */
+    public Transition getLastTransition(final K key) {
+        FiniteStateMachineImpl finiteStateMachine = finiteStateMachines.get(key);
+        if (finiteStateMachine == null) {
+            return null;
+        }
+        ReentrantLock lock = locks.get(key.hashCode());
+        FlightRecorderEvents.lock(lock);
+        try {
+            return finiteStateMachine.getLastTransition();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Register the FSM instance of the given entity in the given state, replacing the existing one if any.
+     * If the state is not registered in FSM states, this method throws an {@link IllegalArgumentException}.
+     * @param key of the entity
+     * @param state of the FSM instance
+     */
+    public void register(final K key, final State state) {
+        FiniteStateMachineImpl finiteStateMachine = new FiniteStateMachineImpl(definition, definition.getStateOrdinal(state));
+        ReentrantLock lock = locks.get(key.hashCode());
+        FlightRecorderEvents.lock(lock);
+        try {
+            finiteStateMachines.put(key, finiteStateMachine);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the FSM instance of the given entity.
+     * @param key of the entity
+     * @return the current state of the removed FSM instance or null if no FSM instance is registered for this entity
+     */
+    public State remove(final K key) {
+        ReentrantLock lock = locks.get(key.hashCode());
+        FlightRecorderEvents.lock(lock);
+        try {
+            FiniteStateMachineImpl finiteStateMachine = finiteStateMachines.remove(key);
+            return finiteStateMachine != null ? finiteStateMachine.getCurrentState() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Check if a FSM instance is registered for the given entity.
+     * @param key of the entity
+     * @return true if a FSM instance is registered for this entity
+     */
+    public boolean contains(final K key) {
+        return finiteStateMachines.containsKey(key);
+    }
+
+    /**
+     * Return the number of registered FSM instances.
+     * @return the number of registered FSM instances
+     */
+    public int size() {
+        return finiteStateMachines.size();
+    }
+
+    /**
+     * Perform the given action for the current state of each registered entity.
+     * Iteration is weakly consistent: instances registered or removed during the iteration may or may not be visited.
+     * @param action to perform for each entity and its current state
+     */
+    public void forEach(final BiConsumer<? super K, ? super State> action) {
+        for (Map.Entry<K, FiniteStateMachineImpl> entry : finiteStateMachines.entrySet()) {
+            K key = entry.getKey();
+            State state;
+            ReentrantLock lock = locks.get(key.hashCode());
+            FlightRecorderEvents.lock(lock);
+            try {
+                state = entry.getValue().getCurrentState();
+            } finally {
+                lock.unlock();
+            }
+            action.accept(key, state);
+        }
+    }
+
+    /**
+     * Return the definition of registered FSM instances.
+     * @return the FSM definition
+     */
+    public FiniteStateMachineDefinition getDefinition() {
+        return definition;
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.EventHandler;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Java Flight Recorder events emitted by FSM instances.
+ *
+ * JFR events require Java 11+: on older versions, this class only executes event handlers and acquires locks.
+ * On Java 11+, a dedicated version of this class is loaded from the multi-release jar.
+ */
+final class FlightRecorderEvents {
+
+    private FlightRecorderEvents() { }
+
+    /**
+     * Execute the event handler of a transition.
+     */
+    static void handleEvent(final TransitionTable.Entry entry, final EventHandler<Event> eventHandler, final Event event) throws Exception {
+        eventHandler.handleEvent(event);
+    }
+
+    /**
+     * Execute the coded event handler of a transition.
+     */
+    static void handleCodedEvent(final TransitionTable.Entry entry, final int eventCode, final long payload) throws Exception {
+        entry.codedEventHandler.handleEvent(eventCode, payload);
+    }
+
+    /**
+     * Record a transition made.
+     */
+    static void transitionCommitted(final Transition transition) {
+        // no-op
+    }
+
+    /**
+     * Record an event ignored because the FSM instance is in a final state or because the event is null.
+     */
+    static void ignoredEvent(final State currentState, final Event event) {
+        // no-op
+    }
+
+    /**
+     * Record an event for which no transition is defined in the current state.
+     */
+    static void unmatchedEvent(final State currentState, final Event event) {
+        // no-op
+    }
+
+    /**
+     * Acquire a lock guarding FSM instances.
+     */
+    static void lock(final Lock lock) {
+        lock.lock();
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.State;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * FSM instance appending each transition it makes to an {@link EventJournal} before transiting to the target state,
+ * and the state it is put in before being reset.
+ */
+final class JournaledFiniteStateMachineImpl extends FiniteStateMachineImpl {
+
+    private final EventJournal journal;
+    private final long machineId;
+
+    JournaledFiniteStateMachineImpl(final FiniteStateMachineDefinitionImpl definition, final int currentStateOrdinal,
+                                    final EventJournal journal, final long machineId) {
+        super(definition, currentStateOrdinal);
+        this.journal = journal;
+        this.machineId = machineId;
+    }
+
+    @Override
+    void commit(final TransitionTable.Entry entry, final Event event) throws Exception {
+        journal.append(machineId, entry.ordinal);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UncheckedIOException thrown if the state cannot be journaled, in which case the FSM state is unchanged
+     */
+    @Override
+    public synchronized void reset(final State state) {
+        try {
+            journal.appendState(machineId, definition.getStateOrdinal(state));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        doReset(state);
+    }
+
+}
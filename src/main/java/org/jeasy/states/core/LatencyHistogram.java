@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory histograms of durations in nanoseconds, one per transition ordinal.
+ *
+ * Buckets are logarithmic with four sub-buckets per power of two, so that recorded values are
+ * reported with a relative error of at most 25%, whatever their magnitude.
+ */
+final class LatencyHistogram {
+
+    static final int BUCKETS = 248;
+
+    private final AtomicLongArray counts;
+
+    LatencyHistogram(final int histograms) {
+        this.counts = new AtomicLongArray(histograms * BUCKETS);
+    }
+
+    void record(final int histogram, final long nanos) {
+        counts.incrementAndGet(histogram * BUCKETS + bucket(Math.max(nanos, 0L)));
+    }
+
+    /**
+     * Return the upper bound of the bucket holding the given percentile of recorded values, or 0 if no value is recorded.
+     */
+    long percentile(final int histogram, final double percentile) {
+        long[] snapshot = snapshot(histogram);
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0L;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += snapshot[bucket];
+            if (seen >= Math.max(rank, 1)) {
+                return upperBound(bucket);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    long max(final int histogram) {
+        for (int bucket = BUCKETS - 1; bucket >= 0; bucket--) {
+            if (counts.get(histogram * BUCKETS + bucket) != 0) {
+                return upperBound(bucket);
+            }
+        }
+        return 0L;
+    }
+
+    private long[] snapshot(final int histogram) {
+        long[] snapshot = new long[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            snapshot[bucket] = counts.get(histogram * BUCKETS + bucket);
+        }
+        return snapshot;
+    }
+
+    static int bucket(final long value) {
+        if (value < 4) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - 2)) & 3;
+        return ((exponent - 1) << 2) | subBucket;
+    }
+
+    static long upperBound(final int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int exponent = (bucket >>> 2) + 1;
+        long lowerBound = (4L + (bucket & 3)) << (exponent - 2);
+        return lowerBound + (1L << (exponent - 2)) - 1;
+    }
+
+}
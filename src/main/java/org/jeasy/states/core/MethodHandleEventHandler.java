@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.annotation.OnTransition;
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.EventHandler;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Event handler invoking a method annotated with {@link OnTransition} through a {@link MethodHandle}
+ * bound once to the object declaring the method, so that no access check or argument boxing happens when
+ * events are handled. The handle is held in an instance field, which the JIT does not constant-fold:
+ * the method is not inlined as it would be for a direct call from a lambda
+ * (see {@code HandlerInvocationBenchmark} in the benchmarks module).
+ */
+final class MethodHandleEventHandler implements EventHandler<Event> {
+
+    private static final MethodType EVENT_HANDLER_TYPE = MethodType.methodType(void.class, Event.class);
+
+    private final MethodHandle methodHandle;
+    private final String methodName;
+
+    private MethodHandleEventHandler(final MethodHandle methodHandle, final String methodName) {
+        this.methodHandle = methodHandle;
+        this.methodName = methodName;
+    }
+
+    /**
+     * Create the transitions declared with {@link OnTransition} on the class of the given object and on its methods.
+     * Annotated methods, including inherited ones, are the event handlers of their transitions: they must take
+     * no parameter or a single parameter to which the event type is assignable.
+     * If a method is not a valid event handler, this method throws an {@link IllegalArgumentException}.
+     * @param handlers object declaring annotated methods
+     * @return the transitions, in declaration order of the class annotations then in method name order
+     */
+    static List<Transition> transitions(final Object handlers) {
+        List<Transition> transitions = new ArrayList<>();
+        for (OnTransition onTransition : handlers.getClass().getAnnotationsByType(OnTransition.class)) {
+            transitions.add(transitionBuilder(onTransition).build());
+        }
+        List<Method> methods = new ArrayList<>();
+        for (Class<?> type = handlers.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (method.getAnnotationsByType(OnTransition.class).length > 0 && !method.isBridge() && !isOverridden(method, methods)) {
+                    methods.add(method);
+                }
+            }
+        }
+        methods.sort(Comparator.comparing(Method::getName));
+        for (Method method : methods) {
+            EventHandler<Event> eventHandler = null;
+            for (OnTransition onTransition : method.getAnnotationsByType(OnTransition.class)) {
+                if (eventHandler == null) {
+                    eventHandler = bind(handlers, method, onTransition.event());
+                } else {
+                    checkParameter(method, onTransition.event());
+                }
+                transitions.add(transitionBuilder(onTransition).eventHandler(eventHandler).build());
+            }
+        }
+        return transitions;
+    }
+
+    private static boolean isOverridden(final Method method, final List<Method> methods) {
+        for (Method other : methods) {
+            if (other.getName().equals(method.getName()) && Arrays.equals(other.getParameterTypes(), method.getParameterTypes())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static TransitionBuilder transitionBuilder(final OnTransition onTransition) {
+        return new TransitionBuilder()
+                .name(onTransition.name())
+                .sourceState(new State(onTransition.from()))
+                .eventType(onTransition.event())
+                .targetState(new State(onTransition.to()));
+    }
+
+    private static void checkParameter(final Method method, final Class<? extends Event> eventType) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        if (parameterTypes.length > 1) {
+            throw new IllegalArgumentException("Event handler method '" + method + "' must take at most one parameter");
+        }
+        if (parameterTypes.length == 1 && !parameterTypes[0].isAssignableFrom(eventType)) {
+            throw new IllegalArgumentException("Event type " + eventType.getName() + " is not assignable to the parameter of event handler method '" + method + "'");
+        }
+    }
+
+    private static MethodHandleEventHandler bind(final Object handlers, final Method method, final Class<? extends Event> eventType) {
+        checkParameter(method, eventType);
+        MethodHandle methodHandle;
+        try {
+            if (!Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                method.setAccessible(true);
+            }
+            methodHandle = MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException("Event handler method '" + method + "' is not accessible", e);
+        }
+        if (!Modifier.isStatic(method.getModifiers())) {
+            methodHandle = methodHandle.bindTo(handlers);
+        }
+        if (method.getParameterCount() == 0) {
+            methodHandle = MethodHandles.dropArguments(methodHandle, 0, Event.class);
+        }
+        return new MethodHandleEventHandler(methodHandle.asType(EVENT_HANDLER_TYPE), method.getName());
+    }
+
+    @Override
+    public void handleEvent(final Event event) throws Exception {
+        try {
+            methodHandle.invokeExact(event);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new UndeclaredThrowableException(throwable);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MethodHandleEventHandler{method='" + methodName + "'}";
+    }
+
+}
@@ -0,0 +1,327 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.FiniteStateMachineBatchException;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+import org.jeasy.states.api.TransitionListener;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Optimistic FSM instance (see {@link ConcurrencyMode#OPTIMISTIC}).
+ *
+ * The runtime state of the machine lives in an immutable {@link Snapshot} which is replaced with a compare-and-set.
+ * A transition without event handler (nor transition listener) is committed directly, retrying if another event
+ * was processed in the meantime: such transitions are lock-free. A transition with an event handler first claims
+ * the current snapshot, runs the handler then publishes the new snapshot (or restores the previous one if the handler fails),
+ * so that the outcome is the same as in synchronized mode. While a snapshot is claimed, other threads firing events
+ * spin for a short while then park until the claim is released: the claim acts as a lock, hence this mode is meant
+ * for short event handlers.
+ */
+final class OptimisticFiniteStateMachineImpl extends AbstractFiniteStateMachine implements AbstractFiniteStateMachine.TransitionCommit {
+
+    private static final AtomicReferenceFieldUpdater<OptimisticFiniteStateMachineImpl, Snapshot> SNAPSHOT =
+            AtomicReferenceFieldUpdater.newUpdater(OptimisticFiniteStateMachineImpl.class, Snapshot.class, "snapshot");
+
+    /**
+     * Number of times a thread yields while a snapshot is claimed before parking.
+     */
+    static final int SPINS = 64;
+
+    private volatile Snapshot snapshot;
+    /**
+     * True while a batch of events is processed under a claim. Only read by the thread owning the claim.
+     */
+    private boolean batch;
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+    OptimisticFiniteStateMachineImpl(final FiniteStateMachineDefinitionImpl definition, final int currentStateOrdinal) {
+        super(definition);
+        this.snapshot = new Snapshot(currentStateOrdinal, null, null, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public State fire(final Event event) throws FiniteStateMachineException {
+
+        TransitionTable table = definition.getTransitionTable();
+        TransitionListener listener = definition.getTransitionListener();
+        FiniteStateMachineMetrics metrics = definition.getMetrics();
+
+        for (;;) {
+            Snapshot current = awaitUnclaimed();
+            TransitionTable.Entry entry = selectEntry(table, current.state, event, listener);
+            if (entry == null) {
+                return table.getState(current.state);
+            }
+            if (entry.eventHandler == null && listener == null) {
+                if (commitLockFree(current, entry, event, metrics)) {
+                    return table.getState(entry.target);
+                }
+                continue; // another event was processed in the meantime
+            }
+            if (claim(current)) {
+                makeTransition(listener, metrics, this, 0, entry, event, 0, 0L);
+                return table.getState(entry.target);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public State fire(final int eventCode, final long payload) throws FiniteStateMachineException {
+
+        TransitionTable table = definition.getTransitionTable();
+        TransitionListener listener = definition.getTransitionListener();
+        FiniteStateMachineMetrics metrics = definition.getMetrics();
+
+        for (;;) {
+            Snapshot current = awaitUnclaimed();
+            TransitionTable.Entry entry = selectCodedEntry(table, current.state, eventCode, listener);
+            if (entry == null) {
+                return table.getState(current.state);
+            }
+            if (entry.codedEventHandler == null && listener == null) {
+                if (commitLockFree(current, entry, null, metrics)) {
+                    return table.getState(entry.target);
+                }
+                continue; // another event was processed in the meantime
+            }
+            if (claim(current)) {
+                makeTransition(listener, metrics, this, 0, entry, null, eventCode, payload);
+                return table.getState(entry.target);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The whole batch is processed under a single claim of the current snapshot.
+     */
+    @Override
+    public State fireAll(final Iterable<? extends Event> events) throws FiniteStateMachineBatchException {
+
+        TransitionTable table = definition.getTransitionTable();
+        TransitionListener listener = definition.getTransitionListener();
+        FiniteStateMachineMetrics metrics = definition.getMetrics();
+
+        claim();
+        batch = true;
+        Snapshot claimed;
+        int index = 0;
+        try {
+            Iterator<? extends Event> iterator = events.iterator();
+            while (iterator.hasNext()) {
+                Event event = iterator.next();
+                int state = snapshot.state;
+                if (table.isFinalState(state)) {
+                    ignoredEvents(listener, table.getState(state), event, iterator);
+                    break;
+                }
+                try {
+                    TransitionTable.Entry entry = selectEntry(table, state, event, listener);
+                    if (entry != null) {
+                        makeTransition(listener, metrics, this, 0, entry, event, 0, 0L);
+                    }
+                } catch (FiniteStateMachineException e) {
+                    throw new FiniteStateMachineBatchException(index, e);
+                }
+                index++;
+            }
+        } finally {
+            batch = false;
+            claimed = snapshot;
+            release(new Snapshot(claimed.state, claimed.lastEvent, claimed.lastTransition, null));
+        }
+        return table.getState(claimed.state);
+    }
+
+    /**
+     * Commit a transition without event handler nor listener with a compare-and-set of the current snapshot.
+     * @return true if the transition is made, false if another event was processed in the meantime
+     */
+    private boolean commitLockFree(final Snapshot current, final TransitionTable.Entry entry,
+                                   final Event event, final FiniteStateMachineMetrics metrics) {
+        if (!SNAPSHOT.compareAndSet(this, current, new Snapshot(entry.target, event, entry.transition, null))) {
+            return false;
+        }
+        transitionMade(null, metrics, entry, event, -1L);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The new snapshot is published, or kept claimed until the end of the batch being processed.
+     */
+    @Override
+    public void commitTransition(final int index, final TransitionTable.Entry entry, final Event event) {
+        if (batch) {
+            snapshot = new Snapshot(entry.target, event, entry.transition, Thread.currentThread());
+        } else {
+            release(new Snapshot(entry.target, event, entry.transition, null));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The claimed snapshot is released unchanged, unless a batch is being processed.
+     */
+    @Override
+    public void abortTransition(final int index) {
+        if (!batch) {
+            Snapshot claimed = snapshot;
+            release(new Snapshot(claimed.state, claimed.lastEvent, claimed.lastTransition, null));
+        }
+    }
+
+    /**
+     * Claim the given snapshot if it is still the current one.
+     * @return true if the snapshot is claimed
+     */
+    private boolean claim(final Snapshot current) {
+        return SNAPSHOT.compareAndSet(this, current,
+                new Snapshot(current.state, current.lastEvent, current.lastTransition, Thread.currentThread()));
+    }
+
+    /**
+     * Claim the current snapshot once it is not claimed anymore by another thread.
+     * @return the claimed snapshot
+     */
+    private Snapshot claim() {
+        for (;;) {
+            Snapshot current = awaitUnclaimed();
+            if (claim(current)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Wait for the event handler running on another thread, if any, to complete:
+     * yield a few times, then park until the snapshot is released.
+     */
+    private Snapshot awaitUnclaimed() {
+        Snapshot current = snapshot;
+        int spins = 0;
+        while (current.owner != null) {
+            if (current.owner == Thread.currentThread()) {
+                throw new IllegalStateException("Events can not be fired from an event handler of the same FSM instance in optimistic mode");
+            }
+            if (spins < SPINS) {
+                spins++;
+                Thread.yield();
+            } else {
+                waiters.offer(Thread.currentThread());
+                // check again once registered, in case the snapshot was released in the meantime
+                if (snapshot.owner != null) {
+                    LockSupport.park(this);
+                }
+                waiters.remove(Thread.currentThread());
+            }
+            current = snapshot;
+        }
+        return current;
+    }
+
+    /**
+     * Publish a snapshot in place of the snapshot claimed by the current thread and wake up parked threads.
+     */
+    private void release(final Snapshot released) {
+        snapshot = released;
+        Thread waiter;
+        while ((waiter = waiters.poll()) != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset(final State state) {
+        Snapshot initial = new Snapshot(definition.getStateOrdinal(state), null, null, null);
+        for (;;) {
+            Snapshot current = awaitUnclaimed();
+            if (SNAPSHOT.compareAndSet(this, current, initial)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public State getCurrentState() {
+        return definition.getTransitionTable().getState(snapshot.state);
+    }
+
+    @Override
+    public Event getLastEvent() {
+        return snapshot.lastEvent;
+    }
+
+    @Override
+    public Transition getLastTransition() {
+        return snapshot.lastTransition;
+    }
+
+    /**
+     * Immutable runtime state of the machine.
+     */
+    private static final class Snapshot {
+
+        final int state;
+        final Event lastEvent;
+        final Transition lastTransition;
+        /**
+         * Thread running an event handler on this snapshot, null if the snapshot is not claimed.
+         */
+        final Thread owner;
+
+        Snapshot(final int state, final Event lastEvent, final Transition lastTransition, final Thread owner) {
+            this.state = state;
+            this.lastEvent = lastEvent;
+            this.lastTransition = lastTransition;
+            this.owner = owner;
+        }
+
+    }
+
+}
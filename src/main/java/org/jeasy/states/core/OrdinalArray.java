@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+/**
+ * Compact array of state ordinals, using the smallest primitive type able to hold the ordinals of a definition.
+ */
+abstract class OrdinalArray {
+
+    /**
+     * Create an array of the given size able to hold ordinals of the given number of states.
+     */
+    static OrdinalArray of(final int stateCount, final int size) {
+        switch (width(stateCount)) {
+            case Byte.BYTES:
+                return new ByteOrdinalArray(size);
+            case Short.BYTES:
+                return new ShortOrdinalArray(size);
+            default:
+                return new IntOrdinalArray(size);
+        }
+    }
+
+    /**
+     * Return the number of bytes needed to store the ordinals of the given number of states.
+     */
+    static int width(final int stateCount) {
+        if (stateCount <= 1 << Byte.SIZE) {
+            return Byte.BYTES;
+        }
+        if (stateCount <= 1 << Short.SIZE) {
+            return Short.BYTES;
+        }
+        return Integer.BYTES;
+    }
+
+    abstract int get(int index);
+
+    abstract void set(int index, int ordinal);
+
+    abstract int size();
+
+    /**
+     * Return the number of bytes used to store an ordinal.
+     */
+    abstract int width();
+
+    void fill(final int ordinal) {
+        for (int i = 0; i < size(); i++) {
+            set(i, ordinal);
+        }
+    }
+
+    private static final class ByteOrdinalArray extends OrdinalArray {
+
+        private final byte[] ordinals;
+
+        private ByteOrdinalArray(final int size) {
+            this.ordinals = new byte[size];
+        }
+
+        @Override
+        int get(final int index) {
+            return ordinals[index] & 0xFF;
+        }
+
+        @Override
+        void set(final int index, final int ordinal) {
+            ordinals[index] = (byte) ordinal;
+        }
+
+        @Override
+        int size() {
+            return ordinals.length;
+        }
+
+        @Override
+        int width() {
+            return Byte.BYTES;
+        }
+    }
+
+    private static final class ShortOrdinalArray extends OrdinalArray {
+
+        private final short[] ordinals;
+
+        private ShortOrdinalArray(final int size) {
+            this.ordinals = new short[size];
+        }
+
+        @Override
+        int get(final int index) {
+            return ordinals[index] & 0xFFFF;
+        }
+
+        @Override
+        void set(final int index, final int ordinal) {
+            ordinals[index] = (short) ordinal;
+        }
+
+        @Override
+        int size() {
+            return ordinals.length;
+        }
+
+        @Override
+        int width() {
+            return Short.BYTES;
+        }
+    }
+
+    private static final class IntOrdinalArray extends OrdinalArray {
+
+        private final int[] ordinals;
+
+        private IntOrdinalArray(final int size) {
+            this.ordinals = new int[size];
+        }
+
+        @Override
+        int get(final int index) {
+            return ordinals[index];
+        }
+
+        @Override
+        void set(final int index, final int ordinal) {
+            ordinals[index] = ordinal;
+        }
+
+        @Override
+        int size() {
+            return ordinals.length;
+        }
+
+        @Override
+        int width() {
+            return Integer.BYTES;
+        }
+    }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Composite FSM made of independent orthogonal regions, each region being an instance of its own definition.
+ *
+ * A fired event is delivered to every region, in region order, so that the listeners and metrics of a region
+ * are notified of the events it ignores or does not match. The current state of the composite is the tuple
+ * of the current states of its regions. All regions are guarded by a single lock. If an executor is given,
+ * the event handlers of the regions defining a transition for an event run in parallel on this executor
+ * (in the calling thread for the last of them, and for regions rejected by the executor), and {@link #fire(Event)}
+ * returns once all of them completed. Event handlers running on the executor must not fire events to the composite FSM.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public class OrthogonalFiniteStateMachine {
+
+    private final FiniteStateMachineDefinitionImpl[] definitions;
+    private final FiniteStateMachineImpl[] regions;
+    private final Executor executor;
+    private final ReentrantLock lock;
+
+    /**
+     * Create a new {@link OrthogonalFiniteStateMachine} whose event handlers run in the calling thread.
+     * All regions are in their initial state.
+     *
+     * @param definitions of regions, built with {@link FiniteStateMachineBuilder#buildDefinition()}
+     */
+    public OrthogonalFiniteStateMachine(final List<FiniteStateMachineDefinition> definitions) {
+        this(definitions, null);
+    }
+
+    /**
+     * Create a new {@link OrthogonalFiniteStateMachine}. All regions are in their initial state.
+     *
+     * @param definitions of regions, built with {@link FiniteStateMachineBuilder#buildDefinition()}
+     * @param executor running event handlers of regions in parallel, or null to run them in the calling thread
+     */
+    public OrthogonalFiniteStateMachine(final List<FiniteStateMachineDefinition> definitions, final Executor executor) {
+        if (definitions.isEmpty()) {
+            throw new IllegalArgumentException("At least one region must be defined");
+        }
+        this.definitions = new FiniteStateMachineDefinitionImpl[definitions.size()];
+        this.regions = new FiniteStateMachineImpl[definitions.size()];
+        for (int i = 0; i < regions.length; i++) {
+            FiniteStateMachineDefinition definition = definitions.get(i);
+            if (!(definition instanceof FiniteStateMachineDefinitionImpl)) {
+                throw new IllegalArgumentException("The definition of region " + i + " must be built with a FiniteStateMachineBuilder");
+            }
+            if (((FiniteStateMachineDefinitionImpl) definition).hasStateTimeouts()) {
+                throw new IllegalArgumentException("State timeouts are not supported by orthogonal regions");
+            }
+            this.definitions[i] = (FiniteStateMachineDefinitionImpl) definition;
+            this.regions[i] = new FiniteStateMachineImpl(this.definitions[i], this.definitions[i].getStateOrdinal(definition.getInitialState()));
+        }
+        this.executor = executor;
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * Fire an event to all regions, in region order. Regions which do not define a transition for the event
+     * in their current state notify their listeners and metrics of the ignored or unmatched event, like standalone instances.
+     * If an event handler throws an exception, the other regions still make their transitions
+     * and the exception of the first failing region is thrown.
+     * @param event to fire
+     * @return The current states of the regions once the event is processed
+     * @throws FiniteStateMachineException thrown if an exception occurs during event handling
+     */
+    public List<State> fire(final Event event) throws FiniteStateMachineException {
+        FlightRecorderEvents.lock(lock);
+        try {
+            if (executor == null) {
+                fireSequentially(event);
+                return currentStates();
+            }
+            boolean[] matching = new boolean[regions.length];
+            int matchingCount = 0;
+            for (int i = 0; i < regions.length; i++) {
+                if (regions[i].hasTransition(event)) {
+                    matching[i] = true;
+                    matchingCount++;
+                }
+            }
+            if (matchingCount < 2) {
+                fireSequentially(event);
+            } else {
+                fireInParallel(matching, event);
+            }
+            return currentStates();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fireSequentially(final Event event) throws FiniteStateMachineException {
+        FiniteStateMachineException exception = null;
+        for (FiniteStateMachineImpl region : regions) {
+            try {
+                region.doFire(event);
+            } catch (FiniteStateMachineException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /*
+     * Fire the event to matching regions but the last one on the executor, and to other regions in the calling thread.
+     */
+    private void fireInParallel(final boolean[] matching, final Event event) throws FiniteStateMachineException {
+        int last = regions.length - 1;
+        while (!matching[last]) {
+            last--;
+        }
+        List<CompletableFuture<State>> futures = new ArrayList<>(Collections.nCopies(regions.length, null));
+        RuntimeException exception;
+        try {
+            for (int i = 0; i < last; i++) {
+                if (matching[i]) {
+                    futures.set(i, submit(regions[i], event));
+                }
+            }
+            for (int i = 0; i < regions.length; i++) {
+                if (!matching[i] || i == last) {
+                    futures.set(i, fireInCallingThread(regions[i], event));
+                }
+            }
+        } finally {
+            // join all submitted regions whatever happened, so that no event handler runs once the lock is released
+            exception = join(futures);
+        }
+        if (exception instanceof RegionException) {
+            throw ((RegionException) exception).exception;
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /*
+     * Submit a region to the executor, or fire it in the calling thread if the executor rejects it.
+     */
+    private CompletableFuture<State> submit(final FiniteStateMachineImpl region, final Event event) {
+        try {
+            return CompletableFuture.supplyAsync(() -> fire(region, event), executor);
+        } catch (RejectedExecutionException e) {
+            return fireInCallingThread(region, event);
+        }
+    }
+
+    private static CompletableFuture<State> fireInCallingThread(final FiniteStateMachineImpl region, final Event event) {
+        CompletableFuture<State> future = new CompletableFuture<>();
+        try {
+            future.complete(fire(region, event));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /*
+     * Wait for all regions fired so far and return the exception of the first failing one, in region order, if any.
+     */
+    private static RuntimeException join(final List<CompletableFuture<State>> futures) {
+        RuntimeException exception = null;
+        for (CompletableFuture<State> future : futures) {
+            if (future == null) {
+                continue;
+            }
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                if (exception == null) {
+                    exception = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+                }
+            }
+        }
+        return exception;
+    }
+
+    private static State fire(final FiniteStateMachineImpl region, final Event event) {
+        try {
+            return region.doFire(event);
+        } catch (FiniteStateMachineException e) {
+            throw new RegionException(e);
+        }
+    }
+
+    /**
+     * Return the current states of the regions, in region order.
+     * @return the current states of the regions
+     */
+    public List<State> getCurrentState() {
+        FlightRecorderEvents.lock(lock);
+        try {
+            return currentStates();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<State> currentStates() {
+        State[] states = new State[regions.length];
+        for (int i = 0; i < regions.length; i++) {
+            states[i] = regions[i].getCurrentState();
+        }
+        return Collections.unmodifiableList(Arrays.asList(states));
+    }
+
+    /**
+     * Reset all regions to their initial state.
+     */
+    public void reset() {
+        FlightRecorderEvents.lock(lock);
+        try {
+            for (int i = 0; i < regions.length; i++) {
+                regions[i].doReset(definitions[i].getInitialState());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the number of regions.
+     * @return the number of regions
+     */
+    public int getRegionCount() {
+        return regions.length;
+    }
+
+    /**
+     * Return the definition of a region.
+     * @param region index of the region
+     * @return the definition of the region
+     */
+    public FiniteStateMachineDefinition getDefinition(final int region) {
+        return definitions[region];
+    }
+
+    /**
+     * Checked exception of a region carried through the executor.
+     */
+    private static final class RegionException extends RuntimeException {
+
+        private final FiniteStateMachineException exception;
+
+        RegionException(final FiniteStateMachineException exception) {
+            super(exception);
+            this.exception = exception;
+        }
+    }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.State;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary snapshot format of a {@link FiniteStateMachinePopulation}:
+ *
+ * <pre>
+ * int    magic
+ * byte   version
+ * byte   kind (full or incremental)
+ * int    population size
+ * int    dictionary size, followed by each state name as an int length and its UTF-8 bytes
+ * int    entry count, followed by entries
+ * </pre>
+ *
+ * States are encoded as their index in the dictionary, on one, two or four bytes depending on the dictionary size.
+ * A full snapshot contains the state of every entity in index order, an incremental snapshot contains
+ * the index (as an int) and the state of entities changed since the previous snapshot.
+ */
+final class PopulationSnapshot {
+
+    static final int MAGIC = 0x45535350;
+    static final byte VERSION = 1;
+    static final byte FULL = 0;
+    static final byte INCREMENTAL = 1;
+
+    private PopulationSnapshot() {
+    }
+
+    /**
+     * Write a snapshot of the population to the given file and return the number of entries written.
+     */
+    static int write(final FiniteStateMachinePopulation population, final Path file, final boolean incremental) throws IOException {
+        TransitionTable table = population.getTransitionTable();
+        int width = OrdinalArray.width(table.getStateCount());
+        long[] dirtyWords = population.drainDirtyWords();
+        Path temporaryFile = null;
+        try {
+            temporaryFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            int entryCount;
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE);
+                 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+                entryCount = write(output, population, table, width, incremental ? dirtyWords : null);
+                output.flush();
+                // the content must be on disk before the rename, otherwise a crash may leave an empty or partial snapshot
+                channel.force(true);
+            }
+            move(temporaryFile, file);
+            return entryCount;
+        } catch (IOException | RuntimeException | Error e) {
+            // entities changed since the previous snapshot must be part of the next one
+            population.restoreDirtyWords(dirtyWords);
+            if (temporaryFile != null) {
+                Files.deleteIfExists(temporaryFile);
+            }
+            throw e;
+        }
+    }
+
+    /*
+     * Write the header and entries of the snapshot (all entities if dirty words are null) and return the number of entries
+     */
+    private static int write(final DataOutputStream output, final FiniteStateMachinePopulation population,
+                             final TransitionTable table, final int width, final long[] dirtyWords) throws IOException {
+        int stateCount = table.getStateCount();
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        output.writeByte(dirtyWords == null ? FULL : INCREMENTAL);
+        output.writeInt(population.size());
+        output.writeInt(stateCount);
+        for (int ordinal = 0; ordinal < stateCount; ordinal++) {
+            byte[] name = table.getState(ordinal).getName().getBytes(StandardCharsets.UTF_8);
+            output.writeInt(name.length);
+            output.write(name);
+        }
+        if (dirtyWords == null) {
+            output.writeInt(population.size());
+            int[] chunk = new int[FiniteStateMachinePopulation.CHUNK_SIZE];
+            for (int from = 0; from < population.size(); from += chunk.length) {
+                int count = population.getOrdinals(from, chunk);
+                for (int i = 0; i < count; i++) {
+                    writeOrdinal(output, width, chunk[i]);
+                }
+            }
+            return population.size();
+        }
+        int entryCount = 0;
+        for (long word : dirtyWords) {
+            entryCount += Long.bitCount(word);
+        }
+        output.writeInt(entryCount);
+        for (int i = 0; i < dirtyWords.length; i++) {
+            long word = dirtyWords[i];
+            while (word != 0) {
+                int index = (i << 6) + Long.numberOfTrailingZeros(word);
+                output.writeInt(index);
+                writeOrdinal(output, width, population.getOrdinal(index));
+                word &= word - 1;
+            }
+        }
+        return entryCount;
+    }
+
+    /*
+     * Replace the snapshot file atomically, so that a reader never sees a partially written snapshot,
+     * then sync the directory so that the rename itself survives a crash
+     */
+    private static void move(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Force the entries of the given directory to the storage device where supported. Directories cannot be opened
+     * (nor synced) on all platforms (e.g. Windows), renames are then as durable as the file system makes them.
+     */
+    static void syncDirectory(final Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported on this platform
+        }
+    }
+
+    /**
+     * Apply the snapshot of the given file to the population and return the number of entries read.
+     * The whole file is validated before the first entry is applied, so that a truncated or corrupted
+     * snapshot leaves the population unchanged.
+     */
+    static int read(final FiniteStateMachinePopulation population, final Path file) throws IOException {
+        int[] indexes;
+        int[] ordinals;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < Integer.BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("File " + file + " is not a FSM population snapshot");
+            }
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported FSM population snapshot version " + version);
+            }
+            byte kind = buffer.get();
+            if (kind != FULL && kind != INCREMENTAL) {
+                throw new IOException("Unknown kind " + kind + " of FSM population snapshot " + file);
+            }
+            boolean incremental = kind == INCREMENTAL;
+            int size = buffer.getInt();
+            if (size != population.size()) {
+                throw new IllegalArgumentException("Snapshot of " + size + " entities cannot be restored in a population of " + population.size() + " entities");
+            }
+            int[] dictionary = readDictionary(population, buffer, file);
+            int width = OrdinalArray.width(dictionary.length);
+            int entryCount = buffer.getInt();
+            long entryBytes = (long) entryCount * (incremental ? Integer.BYTES + width : width);
+            if (entryCount < 0 || entryCount > size || (!incremental && entryCount != size) || entryBytes > buffer.remaining()) {
+                throw new IOException("Invalid entry count " + entryCount + " in FSM population snapshot " + file);
+            }
+            indexes = incremental ? new int[entryCount] : null;
+            ordinals = new int[entryCount];
+            for (int i = 0; i < entryCount; i++) {
+                if (incremental) {
+                    int index = buffer.getInt();
+                    if (index < 0 || index >= size) {
+                        throw new IOException("Invalid entity index " + index + " in FSM population snapshot " + file);
+                    }
+                    indexes[i] = index;
+                }
+                int ordinal = readOrdinal(buffer, width);
+                if (ordinal < 0 || ordinal >= dictionary.length) {
+                    throw new IOException("Invalid state " + ordinal + " in FSM population snapshot " + file);
+                }
+                ordinals[i] = dictionary[ordinal];
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("FSM population snapshot " + file + " is truncated", e);
+        }
+        for (int i = 0; i < ordinals.length; i++) {
+            population.setOrdinal(indexes != null ? indexes[i] : i, ordinals[i]);
+        }
+        return ordinals.length;
+    }
+
+    /*
+     * Read the state names of the snapshot and return the ordinal of each one in the population's transition table
+     */
+    private static int[] readDictionary(final FiniteStateMachinePopulation population, final MappedByteBuffer buffer,
+                                        final Path file) throws IOException {
+        int dictionarySize = buffer.getInt();
+        if (dictionarySize < 0 || (long) dictionarySize * Integer.BYTES > buffer.remaining()) {
+            throw new IOException("Invalid dictionary size " + dictionarySize + " in FSM population snapshot " + file);
+        }
+        TransitionTable table = population.getTransitionTable();
+        int[] dictionary = new int[dictionarySize];
+        for (int i = 0; i < dictionarySize; i++) {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IOException("Invalid state name length " + length + " in FSM population snapshot " + file);
+            }
+            byte[] name = new byte[length];
+            buffer.get(name);
+            String stateName = new String(name, StandardCharsets.UTF_8);
+            dictionary[i] = table.getOrdinal(new State(stateName));
+            if (dictionary[i] == TransitionTable.UNKNOWN_STATE) {
+                throw new IOException("State '" + stateName + "' of FSM population snapshot " + file + " is not registered in FSM states");
+            }
+        }
+        return dictionary;
+    }
+
+    private static void writeOrdinal(final DataOutputStream output, final int width, final int ordinal) throws IOException {
+        switch (width) {
+            case Byte.BYTES:
+                output.writeByte(ordinal);
+                break;
+            case Short.BYTES:
+                output.writeShort(ordinal);
+                break;
+            default:
+                output.writeInt(ordinal);
+        }
+    }
+
+    private static int readOrdinal(final MappedByteBuffer buffer, final int width) {
+        switch (width) {
+            case Byte.BYTES:
+                return buffer.get() & 0xFF;
+            case Short.BYTES:
+                return buffer.getShort() & 0xFFFF;
+            default:
+                return buffer.getInt();
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.FiniteStateMachineBatchException;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * FSM instance firing events under a {@link ReentrantLock} instead of the instance monitor
+ * (see {@link ConcurrencyMode#REENTRANT_LOCK}).
+ */
+final class ReentrantLockFiniteStateMachineImpl extends FiniteStateMachineImpl {
+
+    private final ReentrantLock lock;
+
+    ReentrantLockFiniteStateMachineImpl(final FiniteStateMachineDefinitionImpl definition, final int currentStateOrdinal) {
+        super(definition, currentStateOrdinal);
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public State fire(final Event event) throws FiniteStateMachineException {
+        FlightRecorderEvents.lock(lock);
+        try {
+            return doFire(event);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public State fire(final int eventCode, final long payload) throws FiniteStateMachineException {
+        FlightRecorderEvents.lock(lock);
+        try {
+            return doFire(eventCode, payload);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public State fireAll(final Iterable<? extends Event> events) throws FiniteStateMachineBatchException {
+        FlightRecorderEvents.lock(lock);
+        try {
+            return doFireAll(events);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset(final State state) {
+        FlightRecorderEvents.lock(lock);
+        try {
+            doReset(state);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    FiniteStateMachineImpl start() {
+        FlightRecorderEvents.lock(lock);
+        try {
+            doStart();
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    @Override
+    void expire(final TimingWheel.Timeout expired) throws FiniteStateMachineException {
+        FlightRecorderEvents.lock(lock);
+        try {
+            doExpire(expired);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared by many FSM instances: the instance of a given hash is guarded by the stripe
+ * of this hash, so that memory does not grow with the number of instances and no monitor is inflated per instance.
+ */
+final class StripedLocks {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    /**
+     * Create a new {@link StripedLocks}.
+     * @param stripes minimum number of locks, rounded up to a power of two
+     */
+    StripedLocks(final int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("The number of stripes must be positive");
+        }
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Default number of stripes: four times the number of available processors.
+     */
+    static int defaultStripes() {
+        return 4 * Runtime.getRuntime().availableProcessors();
+    }
+
+    ReentrantLock get(final int hash) {
+        return locks[spread(hash) & mask];
+    }
+
+    /**
+     * Return the index of the stripe guarding the given hash.
+     */
+    int stripe(final int hash) {
+        return spread(hash) & mask;
+    }
+
+    /**
+     * Return the lock of the stripe of the given index.
+     */
+    ReentrantLock getStripe(final int stripe) {
+        return locks[stripe];
+    }
+
+    int size() {
+        return locks.length;
+    }
+
+    /*
+     * Spread higher bits of the hash to lower bits which select the stripe
+     */
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+}
@@ -0,0 +1,319 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed hierarchical timing wheel driving state timeouts of FSM instances
+ * (see {@link FiniteStateMachineBuilder#registerStateTimeout(org.jeasy.states.api.State, long, TimeUnit)}).
+ *
+ * Time is divided in ticks. Timeouts expiring within one rotation of the first wheel are hashed by deadline tick
+ * in a bucket of this wheel; later timeouts are hashed in a bucket of a coarser wheel and moved down to finer wheels
+ * as time advances. Buckets are doubly linked lists, so that arming and cancelling a timeout take constant time
+ * whatever the number of armed timeouts. Timeouts expired by a tick are collected then handed in a batch,
+ * outside of the wheel lock, to the executor of the wheel, so that a slow event handler does not delay
+ * other timeouts. Timeouts of asynchronous FSM instances are queued in their mailbox instead, so that their
+ * event handlers are still run one at a time by the executor of the instance.
+ * If the executor rejects an expired timeout, it is processed by the thread advancing the wheel.
+ *
+ * An armed timeout holds a strong reference to its FSM instance until it expires or is cancelled, so an instance
+ * waiting in a state with a timeout is not garbage collected before the timeout. Instances can be {@link
+ * org.jeasy.states.api.FiniteStateMachine#reset(org.jeasy.states.api.State) reset} to a state without timeout
+ * to release them earlier.
+ *
+ * The wheel is advanced by a daemon thread once {@link #start()} is called, or by calling {@link #advance()}.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public final class TimingWheel implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(TimingWheel.class.getName());
+
+    /**
+     * Default number of buckets of each wheel.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final long tickNanos;
+    private final int bits;
+    private final int mask;
+    private final LongSupplier nanoClock;
+    private final Executor executor;
+    private final long startNanos;
+    private final List<Timeout[]> wheels;
+    private long currentTick;
+    private int size;
+    private volatile Thread thread;
+
+    /**
+     * Create a new {@link TimingWheel} of {@link #DEFAULT_WHEEL_SIZE} buckets per wheel,
+     * processing expired timeouts in the {@link ForkJoinPool#commonPool() common pool}.
+     *
+     * @param tickDuration duration of a tick, the resolution of timeouts
+     * @param unit of the tick duration
+     */
+    public TimingWheel(final long tickDuration, final TimeUnit unit) {
+        this(tickDuration, unit, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Create a new {@link TimingWheel} processing expired timeouts in the {@link ForkJoinPool#commonPool() common pool}.
+     *
+     * @param tickDuration duration of a tick, the resolution of timeouts
+     * @param unit of the tick duration
+     * @param wheelSize number of buckets of each wheel, a power of two
+     */
+    public TimingWheel(final long tickDuration, final TimeUnit unit, final int wheelSize) {
+        this(tickDuration, unit, wheelSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a new {@link TimingWheel}.
+     *
+     * @param tickDuration duration of a tick, the resolution of timeouts
+     * @param unit of the tick duration
+     * @param wheelSize number of buckets of each wheel, a power of two
+     * @param executor processing expired timeouts of FSM instances, except asynchronous ones
+     */
+    public TimingWheel(final long tickDuration, final TimeUnit unit, final int wheelSize, final Executor executor) {
+        this(unit.toNanos(tickDuration), wheelSize, System::nanoTime, executor);
+    }
+
+    TimingWheel(final long tickNanos, final int wheelSize, final LongSupplier nanoClock, final Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor must not be null");
+        }
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+        if (wheelSize < 2 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two greater than 1: " + wheelSize);
+        }
+        this.tickNanos = tickNanos;
+        this.bits = Integer.numberOfTrailingZeros(wheelSize);
+        this.mask = wheelSize - 1;
+        this.nanoClock = nanoClock;
+        this.executor = executor;
+        this.startNanos = nanoClock.getAsLong();
+        this.wheels = new ArrayList<>();
+    }
+
+    /**
+     * Start a daemon thread advancing the wheel every tick.
+     * @return this wheel
+     */
+    public synchronized TimingWheel start() {
+        if (thread == null) {
+            Thread ticker = new Thread(this::tick, "easy-states-timing-wheel");
+            ticker.setDaemon(true);
+            thread = ticker;
+            ticker.start();
+        }
+        return this;
+    }
+
+    private void tick() {
+        while (thread == Thread.currentThread()) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(tickNanos);
+            } catch (InterruptedException e) {
+                return;
+            }
+            advance();
+        }
+    }
+
+    /**
+     * Stop the thread advancing the wheel, if started. Armed timeouts do not expire anymore unless the wheel is advanced.
+     */
+    @Override
+    public synchronized void close() {
+        Thread ticker = thread;
+        thread = null;
+        if (ticker != null) {
+            ticker.interrupt();
+        }
+    }
+
+    /**
+     * Advance the wheel to the current time and hand timeouts which expired to the executor of the wheel,
+     * or to the mailbox of asynchronous FSM instances, to fire timeout events.
+     * @return the number of expired timeouts
+     */
+    public int advance() {
+        List<Timeout> expired = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = (nanoClock.getAsLong() - startNanos) / tickNanos;
+            while (currentTick < targetTick) {
+                if (size == 0) {
+                    currentTick = targetTick;
+                    break;
+                }
+                currentTick++;
+                cascade();
+                Timeout bucket = bucket(0, (int) (currentTick & mask));
+                while (bucket.next != bucket) {
+                    Timeout timeout = bucket.next;
+                    unlink(timeout);
+                    expired.add(timeout);
+                }
+            }
+        }
+        for (Timeout timeout : expired) {
+            AsyncFiniteStateMachineImpl mailbox = timeout.machine.getMailbox();
+            if (mailbox != null) {
+                mailbox.expire(timeout);
+                continue;
+            }
+            try {
+                executor.execute(() -> expire(timeout));
+            } catch (RejectedExecutionException e) {
+                expire(timeout);
+            }
+        }
+        return expired.size();
+    }
+
+    /**
+     * Fire the timeout event of an expired timeout to its FSM instance, logging failures.
+     */
+    static void expire(final Timeout timeout) {
+        try {
+            timeout.machine.expire(timeout);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Unable to handle the state timeout of FSM instance " + timeout.machine, e);
+        }
+    }
+
+    /**
+     * Return the number of armed timeouts.
+     * @return the number of armed timeouts
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Arm a timeout of the given FSM instance.
+     */
+    synchronized Timeout schedule(final FiniteStateMachineImpl machine, final long timeoutNanos) {
+        long elapsedNanos = nanoClock.getAsLong() - startNanos + timeoutNanos;
+        long deadline = Math.max(currentTick + 1, (elapsedNanos + tickNanos - 1) / tickNanos);
+        Timeout timeout = new Timeout(machine, deadline, timeoutNanos);
+        insert(timeout);
+        return timeout;
+    }
+
+    /**
+     * Cancel a timeout, if not expired yet.
+     */
+    synchronized void cancel(final Timeout timeout) {
+        if (timeout.next != null) {
+            unlink(timeout);
+        }
+    }
+
+    /*
+     * Move timeouts of the coarser wheels whose bucket is reached by the current tick down to finer wheels,
+     * from the coarsest wheel to the finest.
+     */
+    private void cascade() {
+        int level = 0;
+        while (level + 1 < wheels.size() && (currentTick & ((1L << (bits * (level + 1))) - 1)) == 0) {
+            level++;
+        }
+        for (; level > 0; level--) {
+            Timeout bucket = bucket(level, (int) ((currentTick >>> (bits * level)) & mask));
+            while (bucket.next != bucket) {
+                Timeout timeout = bucket.next;
+                unlink(timeout);
+                insert(timeout);
+            }
+        }
+    }
+
+    private void insert(final Timeout timeout) {
+        long delta = timeout.deadline - currentTick;
+        int level = 0;
+        while (bits * (level + 1) < Long.SIZE - 1 && delta >= 1L << (bits * (level + 1))) {
+            level++;
+        }
+        Timeout bucket = bucket(level, (int) ((timeout.deadline >>> (bits * level)) & mask));
+        timeout.prev = bucket.prev;
+        timeout.next = bucket;
+        bucket.prev.next = timeout;
+        bucket.prev = timeout;
+        size++;
+    }
+
+    private void unlink(final Timeout timeout) {
+        timeout.prev.next = timeout.next;
+        timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+        size--;
+    }
+
+    private Timeout bucket(final int level, final int index) {
+        while (wheels.size() <= level) {
+            Timeout[] wheel = new Timeout[mask + 1];
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i] = new Timeout(null, 0L, 0L);
+                wheel[i].prev = wheel[i];
+                wheel[i].next = wheel[i];
+            }
+            wheels.add(wheel);
+        }
+        return wheels.get(level)[index];
+    }
+
+    /**
+     * Timeout armed in the wheel: a node of the doubly linked list of its bucket, or the sentinel of a bucket.
+     */
+    static final class Timeout {
+
+        final FiniteStateMachineImpl machine;
+        final long deadline;
+        final long timeoutNanos;
+        Timeout prev;
+        Timeout next;
+
+        Timeout(final FiniteStateMachineImpl machine, final long deadline, final long timeoutNanos) {
+            this.machine = machine;
+            this.deadline = deadline;
+            this.timeoutNanos = timeoutNanos;
+        }
+    }
+
+}
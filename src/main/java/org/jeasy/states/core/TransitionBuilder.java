@@ -23,11 +23,14 @@
  */
 package org.jeasy.states.core;
 
+import org.jeasy.states.api.CodedEventHandler;
 import org.jeasy.states.api.Event;
 import org.jeasy.states.api.EventHandler;
 import org.jeasy.states.api.State;
 import org.jeasy.states.api.Transition;
 
+import java.util.function.Predicate;
+
 /**
  * FSM transition builder : this class should be used to build FSM transition instances:
  *
@@ -36,19 +39,21 @@ import org.jeasy.states.api.Transition;
  *     <li>Source and target states must be defined (not null)</li>
  *     <li>Event Type must be defined (not null)</li>
  *     <li>Event Handler is not mandatory</li>
+ *     <li>Guard is not mandatory</li>
  * </ul>
  *
  * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
  */
 public class TransitionBuilder {
 
-    private final TransitionImpl transition;
+    private final TransitionImpl<Event> transition;
+    private Class<? extends Event> guardEventType;
 
     /**
      * Create a new {@link TransitionBuilder}.
      */
     public TransitionBuilder() {
-        transition = new TransitionImpl();
+        transition = new TransitionImpl<>();
     }
 
     /**
@@ -101,11 +106,55 @@ public class TransitionBuilder {
         return this;
     }
 
+    /**
+     * Set the guard of the transition: the transition is made only if the fired event satisfies the guard.
+     * @param guard of the transition
+     * @return FSM transition builder
+     */
+    public TransitionBuilder guard(final Predicate<? super Event> guard) {
+        transition.setGuard(guard);
+        guardEventType = null;
+        return this;
+    }
+
+    /**
+     * Set the guard of the transition for events of the given type: the transition is made only if the fired event
+     * satisfies the guard. The event type of the transition must be the given type or one of its subtypes,
+     * otherwise {@link #build()} throws an {@link IllegalArgumentException}.
+     * @param eventType of events accepted by the guard
+     * @param guard of the transition
+     * @param <E> type of events accepted by the guard
+     * @return FSM transition builder
+     */
+    public <E extends Event> TransitionBuilder guard(final Class<E> eventType, final Predicate<? super E> guard) {
+        transition.setGuard(guard == null ? null : event -> guard.test(eventType.cast(event)));
+        guardEventType = eventType;
+        return this;
+    }
+
+    /**
+     * Set the handler of the transition executed when the transition is made upon an event fired by its code
+     * (see {@link org.jeasy.states.api.FiniteStateMachine#fire(int, long)}).
+     * @param codedEventHandler of the transition
+     * @return FSM transition builder
+     */
+    public TransitionBuilder codedEventHandler(final CodedEventHandler codedEventHandler) {
+        transition.setCodedEventHandler(codedEventHandler);
+        return this;
+    }
+
     /**
      * Build a transition instance.
+     * If the guard of the transition does not accept events of the transition event type,
+     * this method throws an {@link IllegalArgumentException}.
      * @return a transition instance.
      */
     public Transition build() {
+        Class<? extends Event> eventType = transition.getEventType();
+        if (guardEventType != null && eventType != null && !guardEventType.isAssignableFrom(eventType)) {
+            throw new IllegalArgumentException("The guard of transition '" + transition.getName() + "' accepts events of type "
+                    + guardEventType.getName() + " but the transition is made upon events of type " + eventType.getName());
+        }
         return transition;
     }
 
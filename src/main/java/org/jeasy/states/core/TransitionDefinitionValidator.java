@@ -23,10 +23,11 @@
  */
 package org.jeasy.states.core;
 
-import org.jeasy.states.api.FiniteStateMachine;
 import org.jeasy.states.api.State;
 import org.jeasy.states.api.Transition;
 
+import java.util.Set;
+
 class TransitionDefinitionValidator {
 
     /**
@@ -38,8 +39,9 @@ class TransitionDefinitionValidator {
      *     <li>Event Handler is not mandatory</li>
      * </ul>
      * @param transition the transition to validate
+     * @param states the FSM states
      */
-    void validateTransitionDefinition(final Transition transition, FiniteStateMachine finiteStateMachine) {
+    void validateTransitionDefinition(final Transition transition, final Set<State> states) {
 
         String transitionName = transition.getName();
         State sourceState = transition.getSourceState();
@@ -54,10 +56,10 @@ class TransitionDefinitionValidator {
         if (transition.getEventType() == null) {
             throw new IllegalArgumentException("No event type is defined for transition '" + transitionName + "'");
         }
-        if (!finiteStateMachine.getStates().contains(sourceState)) {
+        if (!states.contains(sourceState)) {
             throw new IllegalArgumentException("Source state '" + sourceState.getName() + "' is not registered in FSM states for transition '" + transitionName + "'");
         }
-        if (!finiteStateMachine.getStates().contains(targetState)) {
+        if (!states.contains(targetState)) {
             throw new IllegalArgumentException("target state '" + targetState.getName() + "' is not registered in FSM states for transition '" + transitionName + "'");
         }
     }
@@ -23,19 +23,25 @@
  */
 package org.jeasy.states.core;
 
+import org.jeasy.states.api.CodedEventHandler;
 import org.jeasy.states.api.Event;
 import org.jeasy.states.api.EventHandler;
 import org.jeasy.states.api.State;
 import org.jeasy.states.api.Transition;
 import org.jeasy.states.util.Utils;
 
+import java.util.Objects;
+import java.util.function.Predicate;
+
 final class TransitionImpl<E extends Event> implements Transition {
 
     private String name;
     private State sourceState;
     private State targetState;
-    private Class<E> eventType;
-    private EventHandler<E> eventHandler;
+    private Class<? extends E> eventType;
+    private EventHandler<? extends E> eventHandler;
+    private Predicate<? super Event> guard;
+    private CodedEventHandler codedEventHandler;
 
     public TransitionImpl() {
         name = Utils.DEFAULT_TRANSITION_NAME;
@@ -65,11 +71,11 @@ final class TransitionImpl<E extends Event> implements Transition {
         this.name = name;
     }
 
-    public Class<E> getEventType() {
+    public Class<? extends E> getEventType() {
         return eventType;
     }
 
-    public void setEventType(Class<E> eventType) {
+    public void setEventType(Class<? extends E> eventType) {
         this.eventType = eventType;
     }
 
@@ -77,12 +83,30 @@ final class TransitionImpl<E extends Event> implements Transition {
         return eventHandler;
     }
 
-    public void setEventHandler(EventHandler<E> eventHandler) {
+    public void setEventHandler(EventHandler<? extends E> eventHandler) {
         this.eventHandler = eventHandler;
     }
 
+    public Predicate<? super Event> getGuard() {
+        return guard;
+    }
+
+    public void setGuard(Predicate<? super Event> guard) {
+        this.guard = guard;
+    }
+
+    public CodedEventHandler getCodedEventHandler() {
+        return codedEventHandler;
+    }
+
+    public void setCodedEventHandler(CodedEventHandler codedEventHandler) {
+        this.codedEventHandler = codedEventHandler;
+    }
+
     /*
-     * Transitions are unique according to source state and triggering event type
+     * Transitions are unique according to source state, triggering event type and guard.
+     * Guards are compared by identity (lambdas do not implement equals): two transitions of the same source state
+     * and event type are equal only if they share the same guard instance, or are both unguarded.
      */
 
     @Override
@@ -90,9 +114,9 @@ final class TransitionImpl<E extends Event> implements Transition {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
-        TransitionImpl that = (TransitionImpl) o;
+        TransitionImpl<?> that = (TransitionImpl<?>) o;
 
-        return eventType.equals(that.eventType) && sourceState.equals(that.sourceState);
+        return eventType.equals(that.eventType) && sourceState.equals(that.sourceState) && Objects.equals(guard, that.guard);
 
     }
 
@@ -100,6 +124,7 @@ final class TransitionImpl<E extends Event> implements Transition {
     public int hashCode() {
         int result = sourceState.hashCode();
         result = 31 * result + eventType.hashCode();
+        result = 31 * result + Objects.hashCode(guard);
         return result;
     }
 
@@ -114,6 +139,9 @@ final class TransitionImpl<E extends Event> implements Transition {
         if (eventHandler != null) {
             sb.append(", eventHandler=").append(eventHandler.getClass().getName());
         }
+        if (guard != null) {
+            sb.append(", guard=").append(guard.getClass().getName());
+        }
         sb.append('}');
         return sb.toString();
     }
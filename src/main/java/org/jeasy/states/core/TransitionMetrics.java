@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+/**
+ * Metrics of a transition: how many times it was made and how long its event handler took.
+ * Durations are in nanoseconds and are upper bounds with a relative error of at most 25%.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public class TransitionMetrics {
+
+    private final String name;
+    private final String sourceState;
+    private final String eventType;
+    private final String targetState;
+    private final long count;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    TransitionMetrics(final String name, final String sourceState, final String eventType, final String targetState,
+                      final long count, final long p50, final long p99, final long p999, final long max) {
+        this.name = name;
+        this.sourceState = sourceState;
+        this.eventType = eventType;
+        this.targetState = targetState;
+        this.count = count;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSourceState() {
+        return sourceState;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public String getTargetState() {
+        return targetState;
+    }
+
+    /**
+     * Return the number of times the transition was made.
+     * @return the number of times the transition was made
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Return the median duration of the event handler.
+     * @return the median duration in nanoseconds
+     */
+    public long getHandlerP50() {
+        return p50;
+    }
+
+    /**
+     * Return the 99th percentile of the duration of the event handler.
+     * @return the 99th percentile in nanoseconds
+     */
+    public long getHandlerP99() {
+        return p99;
+    }
+
+    /**
+     * Return the 99.9th percentile of the duration of the event handler.
+     * @return the 99.9th percentile in nanoseconds
+     */
+    public long getHandlerP999() {
+        return p999;
+    }
+
+    /**
+     * Return the maximum duration of the event handler.
+     * @return the maximum duration in nanoseconds
+     */
+    public long getHandlerMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "TransitionMetrics{name='" + name + "', sourceState=" + sourceState + ", eventType=" + eventType +
+                ", targetState=" + targetState + ", count=" + count + ", handlerP50=" + p50 + ", handlerP99=" + p99 +
+                ", handlerP999=" + p999 + ", handlerMax=" + max + '}';
+    }
+}
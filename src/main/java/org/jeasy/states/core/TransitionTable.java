@@ -0,0 +1,383 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.CodedEventHandler;
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.EventHandler;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+import org.jeasy.states.api.TransitionListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Frozen dispatch structure of a FSM definition.
+ *
+ * States are mapped to dense ordinals and transitions are indexed by fired event type then by source state ordinal,
+ * so that finding the transition to make is a direct lookup instead of a scan of the transitions set.
+ * Transitions declared for a supertype of the fired event (a superclass or an interface) apply as well:
+ * the transitions applying to each concrete event class are resolved once, the first time an event of this class is fired.
+ * Transitions that can be made are mapped to dense ordinals as well.
+ * Transitions of the same source state and event type are chained: guarded transitions first, in registration order,
+ * then the transition without guard, if any.
+ * Transitions of parent states are copied once in the rows of their nested states (see {@link State#getParent()}),
+ * so that events fired in a nested state are dispatched with the same lookup as in a flat machine.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+final class TransitionTable {
+
+    /**
+     * Ordinal of a state that is not registered in FSM states.
+     */
+    static final int UNKNOWN_STATE = -1;
+
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private final State[] states;
+    private final Map<State, Integer> ordinals;
+    private final boolean[] finalStates;
+    private final Map<Class<?>, Entry[]> entries;
+    private final ClassValue<Entry[]> resolvedEntries;
+    private final Entry[] transitionEntries;
+    private final Entry[][] codedEntries;
+
+    TransitionTable(final Set<State> states, final Set<State> finalStates, final Set<Transition> transitions) {
+        this(states, finalStates, transitions, Collections.emptyMap());
+    }
+
+    /**
+     * Create a transition table in which events can also be fired by the codes registered for their types.
+     * If a transition made upon a coded event type is guarded, or has an event handler but no coded event handler,
+     * this constructor throws an {@link IllegalStateException}.
+     */
+    TransitionTable(final Set<State> states, final Set<State> finalStates, final Set<Transition> transitions,
+                    final Map<Integer, Class<? extends Event>> eventCodes) {
+        this.states = states.toArray(new State[0]);
+        this.ordinals = new HashMap<>();
+        for (int i = 0; i < this.states.length; i++) {
+            ordinals.put(this.states[i], i);
+        }
+        this.finalStates = new boolean[this.states.length];
+        for (State finalState : finalStates) {
+            int ordinal = getOrdinal(finalState);
+            if (ordinal != UNKNOWN_STATE) {
+                this.finalStates[ordinal] = true;
+            }
+        }
+        this.entries = new IdentityHashMap<>();
+        List<Entry> transitionEntries = new ArrayList<>();
+        for (Transition transition : transitions) {
+            int source = getOrdinal(transition.getSourceState());
+            int target = getOrdinal(transition.getTargetState());
+            if (source == UNKNOWN_STATE || target == UNKNOWN_STATE) {
+                continue; // transitions from or to an undefined state can never be made
+            }
+            Entry[] row = entries.computeIfAbsent(transition.getEventType(), eventType -> new Entry[this.states.length]);
+            Entry entry = new Entry(transition, transitionEntries.size(), source, target);
+            row[source] = chain(row[source], entry);
+            transitionEntries.add(entry);
+        }
+        this.transitionEntries = transitionEntries.toArray(new Entry[0]);
+        inheritParentEntries();
+        this.resolvedEntries = new ClassValue<Entry[]>() {
+            @Override
+            protected Entry[] computeValue(final Class<?> eventType) {
+                return resolve(eventType);
+            }
+        };
+        int maxEventCode = -1;
+        for (int eventCode : eventCodes.keySet()) {
+            maxEventCode = Math.max(maxEventCode, eventCode);
+        }
+        this.codedEntries = new Entry[maxEventCode + 1][];
+        for (Map.Entry<Integer, Class<? extends Event>> eventCode : eventCodes.entrySet()) {
+            Entry[] row = resolvedEntries.get(eventCode.getValue());
+            codedEntries[eventCode.getKey()] = row != NO_ENTRIES ? row : new Entry[this.states.length];
+            for (Entry entry : codedEntries[eventCode.getKey()]) {
+                checkCodedEntries(entry, eventCode.getKey());
+            }
+        }
+    }
+
+    /**
+     * Resolve the transitions applying to events of the given class: for each source state, the transitions declared
+     * for the most specific type of the event, in this order: the event class, its superclasses, then their interfaces.
+     */
+    private Entry[] resolve(final Class<?> eventType) {
+        Entry[] resolved = new Entry[states.length];
+        boolean found = false;
+        for (Class<?> type : hierarchy(eventType)) {
+            Entry[] row = entries.get(type);
+            if (row == null) {
+                continue;
+            }
+            for (int ordinal = 0; ordinal < row.length; ordinal++) {
+                if (resolved[ordinal] == null && row[ordinal] != null) {
+                    resolved[ordinal] = row[ordinal];
+                    found = true;
+                }
+            }
+        }
+        return found ? resolved : NO_ENTRIES;
+    }
+
+    /**
+     * Copy the transitions of parent states in the rows of their nested states. A nested state inherits the transitions
+     * declared by its nearest ancestor for an event type, unless the state or a nearer ancestor declares transitions
+     * for this event type or one of its supertypes. If parent states are nested in a cycle,
+     * this method throws an {@link IllegalStateException}.
+     */
+    private void inheritParentEntries() {
+        List<List<Class<?>>> declaredTypes = new ArrayList<>();
+        for (int ordinal = 0; ordinal < states.length; ordinal++) {
+            declaredTypes.add(new ArrayList<>());
+        }
+        for (Entry entry : transitionEntries) {
+            List<Class<?>> types = declaredTypes.get(entry.source);
+            if (!types.contains(entry.transition.getEventType())) {
+                types.add(entry.transition.getEventType());
+            }
+        }
+        for (int ordinal = 0; ordinal < states.length; ordinal++) {
+            List<Class<?>> handledTypes = new ArrayList<>(declaredTypes.get(ordinal));
+            int depth = 0;
+            for (int parent = getOrdinal(states[ordinal].getParent()); parent != UNKNOWN_STATE;
+                 parent = getOrdinal(states[parent].getParent())) {
+                if (++depth == states.length) {
+                    throw new IllegalStateException("State '" + states[ordinal].getName() + "' is nested in a cycle of parent states");
+                }
+                for (Class<?> eventType : declaredTypes.get(parent)) {
+                    if (!isHandled(handledTypes, eventType)) {
+                        Entry[] row = entries.get(eventType);
+                        row[ordinal] = row[parent];
+                        handledTypes.add(eventType);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isHandled(final List<Class<?>> handledTypes, final Class<?> eventType) {
+        for (Class<?> handledType : handledTypes) {
+            if (handledType.isAssignableFrom(eventType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void checkCodedEntries(final Entry head, final int eventCode) {
+        for (Entry entry = head; entry != null; entry = entry.next) {
+            if (entry.guard != null) {
+                throw new IllegalStateException("Transition '" + entry.transition.getName() + "' made upon event code " + eventCode + " must not be guarded");
+            }
+            if (entry.eventHandler != null && entry.codedEventHandler == null) {
+                throw new IllegalStateException("Transition '" + entry.transition.getName() + "' made upon event code " + eventCode + " must have a coded event handler");
+            }
+        }
+    }
+
+    private static Set<Class<?>> hierarchy(final Class<?> eventType) {
+        Set<Class<?>> hierarchy = new LinkedHashSet<>();
+        for (Class<?> type = eventType; type != null; type = type.getSuperclass()) {
+            hierarchy.add(type);
+        }
+        Deque<Class<?>> types = new ArrayDeque<>(hierarchy);
+        while (!types.isEmpty()) {
+            for (Class<?> anInterface : types.poll().getInterfaces()) {
+                if (hierarchy.add(anInterface)) {
+                    types.add(anInterface);
+                }
+            }
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Return the ordinal of the given state.
+     * @param state for which the ordinal should be returned
+     * @return the ordinal of the state or {@link #UNKNOWN_STATE} if the state is not registered
+     */
+    int getOrdinal(final State state) {
+        Integer ordinal = ordinals.get(state);
+        return ordinal != null ? ordinal : UNKNOWN_STATE;
+    }
+
+    State getState(final int ordinal) {
+        return states[ordinal];
+    }
+
+    int getStateCount() {
+        return states.length;
+    }
+
+    boolean isFinalState(final int ordinal) {
+        return ordinal != UNKNOWN_STATE && finalStates[ordinal];
+    }
+
+    private static Entry chain(final Entry head, final Entry entry) {
+        if (head == null || (head.guard == null && entry.guard != null)) {
+            entry.next = head;
+            return entry;
+        }
+        head.next = chain(head.next, entry);
+        return head;
+    }
+
+    /**
+     * Return the entry of the transition of the given ordinal.
+     */
+    Entry getTransitionEntry(final int ordinal) {
+        return transitionEntries[ordinal];
+    }
+
+    int getTransitionCount() {
+        return transitionEntries.length;
+    }
+
+    /**
+     * Return the transitions that can be made from the given state, including the transitions inherited from its parent states,
+     * by declared event type in registration order.
+     * @param ordinal of the source state
+     * @return the head of the chain of transitions of each event type
+     */
+    Map<Class<?>, Entry> getDeclaredEntries(final int ordinal) {
+        Map<Class<?>, Entry> declaredEntries = new LinkedHashMap<>();
+        for (Entry entry : transitionEntries) {
+            Class<?> eventType = entry.transition.getEventType();
+            Entry head = entries.get(eventType)[ordinal];
+            if (head != null && !declaredEntries.containsKey(eventType)) {
+                declaredEntries.put(eventType, head);
+            }
+        }
+        return declaredEntries;
+    }
+
+    /**
+     * Find the transition to make when an event of the given class is fired in the given state.
+     * @param ordinal of the current state
+     * @param eventType concrete class of the fired event
+     * @return the transition entry or null if no transition is defined
+     */
+    Entry getEntry(final int ordinal, final Class<?> eventType) {
+        if (ordinal == UNKNOWN_STATE) {
+            return null;
+        }
+        Entry[] row = resolvedEntries.get(eventType);
+        return row != NO_ENTRIES ? row[ordinal] : null;
+    }
+
+    /**
+     * Find the transition to make when the given event is fired in the given state, evaluating guards in order.
+     * @param ordinal of the current state
+     * @param event fired
+     * @param listener notified if a guard throws an exception, may be null
+     * @return the transition entry or null if no transition is defined or accepts the event
+     * @throws FiniteStateMachineException thrown if a guard throws an exception
+     */
+    Entry select(final int ordinal, final Event event, final TransitionListener listener) throws FiniteStateMachineException {
+        return select(getEntry(ordinal, event.getClass()), event, listener);
+    }
+
+    /**
+     * Find the transition to make in the given chain of transitions of the same source state and event type.
+     * @param entry head of the chain, may be null
+     * @param event fired
+     * @param listener notified if a guard throws an exception, may be null
+     * @return the transition entry or null if no transition accepts the event
+     * @throws FiniteStateMachineException thrown if a guard throws an exception
+     */
+    static Entry select(Entry entry, final Event event, final TransitionListener listener) throws FiniteStateMachineException {
+        while (entry != null && entry.guard != null) {
+            boolean accepted;
+            try {
+                accepted = entry.guard.test(event);
+            } catch (RuntimeException e) {
+                AbstractFiniteStateMachine.error(listener, entry.transition, event, e);
+                throw new FiniteStateMachineException(entry.transition, event, e);
+            }
+            if (accepted) {
+                return entry;
+            }
+            entry = entry.next;
+        }
+        return entry;
+    }
+
+    /**
+     * Find the transition to make when an event is fired by its code in the given state.
+     * @param ordinal of the current state
+     * @param eventCode of the fired event
+     * @return the transition entry or null if no transition is defined
+     */
+    Entry getCodedEntry(final int ordinal, final int eventCode) {
+        if (eventCode < 0 || eventCode >= codedEntries.length || codedEntries[eventCode] == null) {
+            throw new IllegalArgumentException("Event code " + eventCode + " is not registered");
+        }
+        return ordinal != UNKNOWN_STATE ? codedEntries[eventCode][ordinal] : null;
+    }
+
+    /**
+     * A compiled transition: the transition itself along with its ordinal, source and target state ordinals,
+     * event handlers and guard, and the next candidate transition of the same source state and event type.
+     */
+    static final class Entry {
+
+        final Transition transition;
+        final int ordinal;
+        final int source;
+        final int target;
+        final EventHandler<Event> eventHandler;
+        final Predicate<? super Event> guard;
+        final CodedEventHandler codedEventHandler;
+        Entry next;
+
+        @SuppressWarnings("unchecked")
+        Entry(final Transition transition, final int ordinal, final int source, final int target) {
+            this.transition = transition;
+            this.ordinal = ordinal;
+            this.source = source;
+            this.target = target;
+            this.eventHandler = transition.getEventHandler();
+            this.guard = transition.getGuard();
+            this.codedEventHandler = transition.getCodedEventHandler();
+        }
+
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.EventHandler;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Java Flight Recorder events emitted by FSM instances (Java 11+ version).
+ *
+ * Events are only allocated when they are enabled in the running recording. Event handler executions and
+ * lock waits are recorded when they last longer than the threshold of the recording settings (1 ms by default),
+ * transitions made are not recorded by default.
+ */
+final class FlightRecorderEvents {
+
+    private static final TransitionCommittedEvent TRANSITION_COMMITTED = new TransitionCommittedEvent();
+    private static final EventHandlerEvent EVENT_HANDLER = new EventHandlerEvent();
+    private static final IgnoredEventEvent IGNORED_EVENT = new IgnoredEventEvent();
+    private static final UnmatchedEventEvent UNMATCHED_EVENT = new UnmatchedEventEvent();
+    private static final LockWaitEvent LOCK_WAIT = new LockWaitEvent();
+
+    private FlightRecorderEvents() { }
+
+    /**
+     * Execute the event handler of a transition.
+     */
+    static void handleEvent(final TransitionTable.Entry entry, final EventHandler<Event> eventHandler, final Event event) throws Exception {
+        if (!EVENT_HANDLER.isEnabled()) {
+            eventHandler.handleEvent(event);
+            return;
+        }
+        EventHandlerEvent handlerEvent = new EventHandlerEvent();
+        handlerEvent.begin();
+        try {
+            eventHandler.handleEvent(event);
+        } finally {
+            handlerEvent.end();
+            if (handlerEvent.shouldCommit()) {
+                handlerEvent.transition = entry.transition.getName();
+                handlerEvent.eventType = event.getClass().getName();
+                handlerEvent.commit();
+            }
+        }
+    }
+
+    /**
+     * Execute the coded event handler of a transition.
+     */
+    static void handleCodedEvent(final TransitionTable.Entry entry, final int eventCode, final long payload) throws Exception {
+        if (!EVENT_HANDLER.isEnabled()) {
+            entry.codedEventHandler.handleEvent(eventCode, payload);
+            return;
+        }
+        EventHandlerEvent handlerEvent = new EventHandlerEvent();
+        handlerEvent.begin();
+        try {
+            entry.codedEventHandler.handleEvent(eventCode, payload);
+        } finally {
+            handlerEvent.end();
+            if (handlerEvent.shouldCommit()) {
+                handlerEvent.transition = entry.transition.getName();
+                handlerEvent.eventType = entry.transition.getEventType().getName();
+                handlerEvent.commit();
+            }
+        }
+    }
+
+    /**
+     * Record a transition made.
+     */
+    static void transitionCommitted(final Transition transition) {
+        if (TRANSITION_COMMITTED.isEnabled()) {
+            TransitionCommittedEvent transitionEvent = new TransitionCommittedEvent();
+            transitionEvent.transition = transition.getName();
+            transitionEvent.sourceState = transition.getSourceState().getName();
+            transitionEvent.targetState = transition.getTargetState().getName();
+            transitionEvent.eventType = transition.getEventType().getName();
+            transitionEvent.commit();
+        }
+    }
+
+    /**
+     * Record an event ignored because the FSM instance is in a final state or because the event is null.
+     */
+    static void ignoredEvent(final State currentState, final Event event) {
+        if (IGNORED_EVENT.isEnabled()) {
+            IgnoredEventEvent ignoredEvent = new IgnoredEventEvent();
+            ignoredEvent.currentState = currentState.getName();
+            ignoredEvent.eventType = event != null ? event.getClass().getName() : null;
+            ignoredEvent.commit();
+        }
+    }
+
+    /**
+     * Record an event for which no transition is defined in the current state.
+     */
+    static void unmatchedEvent(final State currentState, final Event event) {
+        if (UNMATCHED_EVENT.isEnabled()) {
+            UnmatchedEventEvent unmatchedEvent = new UnmatchedEventEvent();
+            unmatchedEvent.currentState = currentState.getName();
+            unmatchedEvent.eventType = event != null ? event.getClass().getName() : null;
+            unmatchedEvent.commit();
+        }
+    }
+
+    /**
+     * Acquire a lock guarding FSM instances. The wait is recorded only if the lock is contended.
+     */
+    static void lock(final Lock lock) {
+        if (lock.tryLock()) {
+            return;
+        }
+        if (!LOCK_WAIT.isEnabled()) {
+            lock.lock();
+            return;
+        }
+        LockWaitEvent lockWaitEvent = new LockWaitEvent();
+        lockWaitEvent.begin();
+        lock.lock();
+        lockWaitEvent.commit();
+    }
+
+    @Name("org.jeasy.states.TransitionCommitted")
+    @Label("Transition Committed")
+    @Description("A FSM instance transited to the target state of a transition")
+    @Category("Easy States")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class TransitionCommittedEvent extends jdk.jfr.Event {
+        @Label("Transition")
+        String transition;
+        @Label("Source State")
+        String sourceState;
+        @Label("Target State")
+        String targetState;
+        @Label("Event Type")
+        String eventType;
+    }
+
+    @Name("org.jeasy.states.EventHandler")
+    @Label("Event Handler")
+    @Description("Execution of the event handler of a transition")
+    @Category("Easy States")
+    @Threshold("1 ms")
+    static final class EventHandlerEvent extends jdk.jfr.Event {
+        @Label("Transition")
+        String transition;
+        @Label("Event Type")
+        String eventType;
+    }
+
+    @Name("org.jeasy.states.IgnoredEvent")
+    @Label("Ignored Event")
+    @Description("An event was ignored because the FSM instance is in a final state or because the event is null")
+    @Category("Easy States")
+    @StackTrace(false)
+    static final class IgnoredEventEvent extends jdk.jfr.Event {
+        @Label("Current State")
+        String currentState;
+        @Label("Event Type")
+        String eventType;
+    }
+
+    @Name("org.jeasy.states.UnmatchedEvent")
+    @Label("Unmatched Event")
+    @Description("No transition is defined for an event in the current state of the FSM instance")
+    @Category("Easy States")
+    @StackTrace(false)
+    static final class UnmatchedEventEvent extends jdk.jfr.Event {
+        @Label("Current State")
+        String currentState;
+        @Label("Event Type")
+        String eventType;
+    }
+
+    @Name("org.jeasy.states.LockWait")
+    @Label("FSM Lock Wait")
+    @Description("Time spent waiting for a lock guarding FSM instances")
+    @Category("Easy States")
+    @Threshold("1 ms")
+    static final class LockWaitEvent extends jdk.jfr.Event {
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creation of the {@link Dispatcher}s of compiled FSM instances (Java 21+ version).
+ *
+ * Each dispatch tree is given as class data to a hidden class defined from {@link SpecializedDispatcher}, which holds
+ * it in a static final field. Hidden classes are unloaded once their compiled instances are no longer reachable.
+ * If the template cannot be read, dispatch trees are held in an instance field and a warning is logged.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+final class Dispatchers {
+
+    private static final Logger LOGGER = Logger.getLogger(Dispatchers.class.getName());
+    private static final byte[] TEMPLATE = readTemplate();
+
+    private Dispatchers() { }
+
+    /**
+     * Create the dispatcher of the given dispatch tree.
+     */
+    static Dispatcher newDispatcher(final MethodHandle tree) {
+        if (TEMPLATE == null) {
+            return new Dispatcher.Bound(tree);
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClassWithClassData(TEMPLATE, tree, true);
+            return (Dispatcher) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to define the dispatcher of a compiled FSM", e);
+        }
+    }
+
+    private static byte[] readTemplate() {
+        try (InputStream input = Dispatchers.class.getResourceAsStream("SpecializedDispatcher.class")) {
+            if (input != null) {
+                return input.readAllBytes();
+            }
+            LOGGER.log(Level.WARNING, "SpecializedDispatcher class file not found, compiled FSM instances are not specialized");
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read the SpecializedDispatcher class file, compiled FSM instances are not specialized", e);
+        }
+        return null;
+    }
+
+}
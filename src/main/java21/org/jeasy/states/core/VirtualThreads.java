@@ -0,0 +1,60 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual threads support (Java 21+ version).
+ *
+ * FSM instances whose event handlers run on virtual threads should use {@link ConcurrencyMode#REENTRANT_LOCK}
+ * so that virtual threads are not pinned to their carrier thread while event handlers block.
+ *
+ * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() { }
+
+    /**
+     * Check if virtual threads are supported by the current Java runtime.
+     * @return true if virtual threads are supported, false otherwise
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Create an executor starting a new virtual thread for each task. Used with
+     * {@link org.jeasy.states.api.FiniteStateMachineDefinition#newAsyncInstance(java.util.concurrent.Executor)},
+     * it processes the mailbox of each FSM instance in its own virtual thread, so that event handlers
+     * can block on I/O without holding a platform thread.
+     * @return a virtual thread per task executor
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+}
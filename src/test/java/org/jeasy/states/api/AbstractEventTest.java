@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.api;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AbstractEventTest {
+
+    @After
+    public void tearDown() {
+        AbstractEvent.setClock(EventClock.system());
+    }
+
+    @Test
+    public void whenClockIsSet_thenEventTimestampShouldBeTheCurrentTimeOfTheClock() {
+        // Given
+        AbstractEvent.setClock(() -> 42L);
+
+        // When
+        TestEvent event = new TestEvent();
+
+        // Then
+        assertThat(event.getTimestamp()).isEqualTo(42L);
+    }
+
+    @Test
+    public void whenClockIsNone_thenEventTimestampShouldBeZero() {
+        // Given
+        AbstractEvent.setClock(EventClock.none());
+
+        // When
+        TestEvent event = new TestEvent();
+
+        // Then
+        assertThat(event.getTimestamp()).isZero();
+    }
+
+    @Test
+    public void whenClockIsCached_thenCurrentTimeShouldBeRefreshed() throws Exception {
+        // Given
+        EventClock clock = EventClock.cached(1);
+        long start = clock.currentTime();
+
+        // When
+        Thread.sleep(50);
+
+        // Then
+        assertThat(clock.currentTime()).isGreaterThan(start);
+        assertThatThrownBy(() -> EventClock.cached(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void whenCachedClockIsRequestedTwiceWithTheSamePeriod_thenTheSameClockShouldBeReturned() {
+        // When
+        EventClock clock = EventClock.cached(5);
+
+        // Then
+        assertThat(EventClock.cached(5)).isSameAs(clock);
+        assertThat(EventClock.cached(6)).isNotSameAs(clock);
+    }
+
+    @Test
+    public void whenCachedClocksOfDifferentPeriodsAreRequested_thenASingleThreadShouldRefreshThem() throws Exception {
+        // Given
+        EventClock clock = EventClock.cached(3);
+        EventClock otherClock = EventClock.cached(7);
+        long start = otherClock.currentTime();
+
+        // When
+        Thread.sleep(50);
+
+        // Then
+        assertThat(clock.currentTime()).isGreaterThan(start);
+        assertThat(otherClock.currentTime()).isGreaterThan(start);
+        assertThat(Thread.getAllStackTraces().keySet())
+                .filteredOn(thread -> thread.getName().equals("easy-states-event-clock"))
+                .hasSize(1);
+    }
+
+    @Test
+    public void whenClockIsChanged_thenEventsShouldBeFormattedByTheClockOfTheirTimestamp() {
+        // Given
+        TestEvent systemEvent = new TestEvent();
+        AbstractEvent.setClock(EventClock.none());
+        TestEvent noneEvent = new TestEvent();
+
+        // When
+        AbstractEvent.setClock(EventClock.monotonic());
+
+        // Then
+        assertThat(systemEvent.toString()).contains("timestamp=" + new Date(systemEvent.getTimestamp()));
+        assertThat(noneEvent.toString()).contains("timestamp=0}");
+    }
+
+    @Test
+    public void whenClockIsNotTheSystemClock_thenToStringShouldPrintTheRawTimestamp() {
+        // Given
+        AbstractEvent.setClock(EventClock.none());
+
+        // When
+        TestEvent event = new TestEvent();
+
+        // Then
+        assertThat(event.toString()).contains("timestamp=0}");
+
+        // Given
+        AbstractEvent.setClock(() -> 42L);
+
+        // When
+        event = new TestEvent();
+
+        // Then
+        assertThat(event.toString()).contains("timestamp=42}");
+    }
+
+    @Test
+    public void whenClockIsLazy_thenClockShouldBeReadOnTheFirstReadOfTheTimestamp() {
+        // Given
+        long[] time = {1L};
+        AbstractEvent.setClock(EventClock.lazy(() -> time[0]));
+
+        // When
+        TestEvent event = new TestEvent();
+        time[0] = 2L;
+
+        // Then
+        assertThat(event.toString()).contains("timestamp=unset}");
+        AbstractEvent.setClock(EventClock.none());
+        assertThat(event.getTimestamp()).isEqualTo(2L);
+        time[0] = 3L;
+        assertThat(event.getTimestamp()).isEqualTo(2L);
+        assertThat(event.toString()).contains("timestamp=2}");
+    }
+
+    @Test
+    public void whenMutableEventIsReset_thenTimestampShouldBeUpdated() {
+        // Given
+        AbstractEvent.setClock(() -> 1L);
+        TestMutableEvent event = new TestMutableEvent();
+        AbstractEvent.setClock(() -> 2L);
+
+        // When
+        MutableEvent reset = event.reset();
+
+        // Then
+        assertThat(reset).isSameAs(event);
+        assertThat(event.getTimestamp()).isEqualTo(2L);
+        assertThat(event.reset(3L).getTimestamp()).isEqualTo(3L);
+    }
+
+    private static class TestEvent extends AbstractEvent { }
+
+    private static class TestMutableEvent extends MutableEvent { }
+
+}
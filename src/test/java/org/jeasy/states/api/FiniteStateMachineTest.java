@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.api;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class FiniteStateMachineTest {
+
+    private State s1, s2, s3;
+    private StubFiniteStateMachine stateMachine;
+
+    @Before
+    public void setUp() {
+        s1 = new State("s1");
+        s2 = new State("s2");
+        s3 = new State("s3");
+        stateMachine = new StubFiniteStateMachine(s1, s3);
+    }
+
+    @Test
+    public void whenBatchOfEventsIsFired_thenEventsShouldBeFiredInOrderUntilAFinalStateIsReached() throws Exception {
+        // Given
+        MoveEvent toS2 = new MoveEvent(s2);
+        MoveEvent toS3 = new MoveEvent(s3);
+        MoveEvent ignored = new MoveEvent(s1);
+
+        // When
+        State state = stateMachine.fireAll(Arrays.asList(toS2, toS3, ignored));
+
+        // Then
+        Assertions.assertThat(state).isEqualTo(s3);
+        Assertions.assertThat(stateMachine.fired).containsExactly(toS2, toS3);
+    }
+
+    @Test
+    public void whenEventOfBatchFails_thenShouldThrowBatchExceptionWithTheIndexOfTheFailingEvent() {
+        // Given
+        MoveEvent toS2 = new MoveEvent(s2);
+        MoveEvent next = new MoveEvent(s3);
+
+        // When
+        Throwable throwable = Assertions.catchThrowable(() -> stateMachine.fireAll(Arrays.asList(toS2, new FailingEvent(), next)));
+
+        // Then
+        Assertions.assertThat(throwable).isInstanceOf(FiniteStateMachineBatchException.class);
+        Assertions.assertThat(((FiniteStateMachineBatchException) throwable).getEventIndex()).isEqualTo(1);
+        Assertions.assertThat(stateMachine.fired).containsExactly(toS2);
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s2);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void whenImplementationDoesNotSupportReset_thenShouldThrowUnsupportedOperationException() {
+        // When
+        stateMachine.reset();
+
+        // Then
+        // expected exception
+    }
+
+    private static class MoveEvent extends AbstractEvent {
+
+        private final State target;
+
+        MoveEvent(final State target) {
+            this.target = target;
+        }
+    }
+
+    private static class FailingEvent extends AbstractEvent { }
+
+    /**
+     * Third-party implementation providing the abstract methods only.
+     */
+    private static class StubFiniteStateMachine implements FiniteStateMachine {
+
+        private final State initialState;
+        private final State finalState;
+        private final List<Event> fired = new ArrayList<>();
+        private State currentState;
+
+        StubFiniteStateMachine(final State initialState, final State finalState) {
+            this.initialState = initialState;
+            this.finalState = finalState;
+            this.currentState = initialState;
+        }
+
+        @Override
+        public State getCurrentState() {
+            return currentState;
+        }
+
+        @Override
+        public State getInitialState() {
+            return initialState;
+        }
+
+        @Override
+        public Set<State> getStates() {
+            return Collections.singleton(initialState);
+        }
+
+        @Override
+        public Set<Transition> getTransitions() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Event getLastEvent() {
+            return null;
+        }
+
+        @Override
+        public Transition getLastTransition() {
+            return null;
+        }
+
+        @Override
+        public Set<State> getFinalStates() {
+            return Collections.singleton(finalState);
+        }
+
+        @Override
+        public State fire(final Event event) throws FiniteStateMachineException {
+            if (event instanceof FailingEvent) {
+                throw new FiniteStateMachineException(null, event, new Exception("Artificial exception for test"));
+            }
+            fired.add(event);
+            currentState = ((MoveEvent) event).target;
+            return currentState;
+        }
+
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.AsyncFiniteStateMachine;
+import org.jeasy.states.api.EventHandler;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class AsyncFiniteStateMachineImplTest {
+
+    private State s1, s2;
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() {
+        s1 = new State("s1");
+        s2 = new State("s2");
+        executorService = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void whenEventIsFired_thenFutureShouldBeCompletedWithTargetState() throws Exception {
+        // Given
+        AsyncFiniteStateMachine stateMachine = newDefinition(event -> { }).newAsyncInstance(executorService);
+
+        // When
+        State state = stateMachine.fireAsync(new MoveEvent(1)).get();
+
+        // Then
+        assertThat(state).isEqualTo(s2);
+        assertThat(stateMachine.getCurrentState()).isEqualTo(s2);
+    }
+
+    @Test
+    public void whenEventIsFiredByItsCode_thenFutureShouldBeCompletedWithTargetState() throws Exception {
+        // Given
+        List<Long> payloads = new ArrayList<>();
+        AsyncFiniteStateMachine stateMachine = new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(s1, s2)), s1)
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(MoveEvent.class)
+                        .codedEventHandler((code, payload) -> payloads.add(payload))
+                        .targetState(s2)
+                        .build())
+                .registerEventCode(1, MoveEvent.class)
+                .buildDefinition()
+                .newAsyncInstance(executorService);
+
+        // When
+        State state = stateMachine.fireAsync(1, 7L).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(state).isEqualTo(s2);
+        assertThat(payloads).containsExactly(7L);
+        try {
+            stateMachine.fireAsync(2).get(5, TimeUnit.SECONDS);
+            fail("An ExecutionException should have been thrown");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    public void whenEventHandlerThrowsException_thenFutureShouldBeCompletedExceptionally() throws Exception {
+        // Given
+        AsyncFiniteStateMachine stateMachine = newDefinition(event -> {
+            throw new Exception("Artificial exception for test");
+        }).newAsyncInstance(executorService);
+
+        // When
+        try {
+            stateMachine.fireAsync(new MoveEvent(1)).get();
+            fail("An ExecutionException should have been thrown");
+        } catch (ExecutionException e) {
+            // Then
+            assertThat(e.getCause()).isInstanceOf(FiniteStateMachineException.class);
+        }
+        assertThat(stateMachine.getCurrentState()).isEqualTo(s1);
+    }
+
+    @Test
+    public void whenEventHandlerThrowsError_thenFutureShouldBeCompletedExceptionallyAndNextEventsProcessed() throws Exception {
+        // Given
+        AtomicInteger invocations = new AtomicInteger();
+        AsyncFiniteStateMachine stateMachine = newDefinition(event -> {
+            if (invocations.incrementAndGet() == 1) {
+                throw new AssertionError("Artificial error for test");
+            }
+        }).newAsyncInstance(executorService);
+
+        // When
+        CompletableFuture<State> failing = stateMachine.fireAsync(new MoveEvent(1));
+        CompletableFuture<State> next = stateMachine.fireAsync(new MoveEvent(2));
+
+        // Then
+        try {
+            failing.get(5, TimeUnit.SECONDS);
+            fail("An ExecutionException should have been thrown");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(AssertionError.class);
+        }
+        assertThat(next.get(5, TimeUnit.SECONDS)).isEqualTo(s2);
+    }
+
+    @Test
+    public void whenManyMachinesShareAnExecutor_thenEventsShouldBeProcessedInOrderAndOneAtATimePerMachine() throws Exception {
+        // Given
+        int machines = 100;
+        int eventsPerMachine = 500;
+        List<AsyncFiniteStateMachine> stateMachines = new ArrayList<>();
+        List<List<Integer>> processed = new ArrayList<>();
+        AtomicInteger concurrentViolations = new AtomicInteger();
+        for (int i = 0; i < machines; i++) {
+            List<Integer> sequence = new ArrayList<>();
+            AtomicInteger running = new AtomicInteger();
+            processed.add(sequence);
+            stateMachines.add(newDefinition(event -> {
+                if (running.incrementAndGet() != 1) {
+                    concurrentViolations.incrementAndGet();
+                }
+                sequence.add(event.sequence);
+                running.decrementAndGet();
+            }).newAsyncInstance(executorService));
+        }
+
+        // When
+        List<CompletableFuture<State>> futures = new ArrayList<>();
+        for (int j = 0; j < eventsPerMachine; j++) {
+            for (AsyncFiniteStateMachine stateMachine : stateMachines) {
+                futures.add(stateMachine.fireAsync(new MoveEvent(j)));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+
+        // Then
+        assertThat(concurrentViolations.get()).isZero();
+        for (int i = 0; i < machines; i++) {
+            List<Integer> sequence = processed.get(i);
+            assertThat(sequence).hasSize(eventsPerMachine);
+            for (int j = 0; j < eventsPerMachine; j++) {
+                assertThat(sequence.get(j)).isEqualTo(j);
+            }
+            assertThat(stateMachines.get(i).getCurrentState()).isEqualTo(eventsPerMachine % 2 == 0 ? s1 : s2);
+        }
+    }
+
+    @Test
+    public void whenExecutorRejectsTheMailboxDrain_thenFutureShouldBeCompletedExceptionally() throws Exception {
+        // Given
+        executorService.shutdown();
+        AsyncFiniteStateMachine stateMachine = newDefinition(event -> { }).newAsyncInstance(executorService);
+
+        // When
+        CompletableFuture<State> future = stateMachine.fireAsync(new MoveEvent(1));
+
+        // Then
+        assertThat(future).isCompletedExceptionally();
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+        }
+    }
+
+    /*
+     * s1 <-> s2 on each MoveEvent
+     */
+    private FiniteStateMachineDefinition newDefinition(EventHandler<MoveEvent> eventHandler) {
+        return new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(s1, s2)), s1)
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(MoveEvent.class)
+                        .eventHandler(eventHandler)
+                        .targetState(s2)
+                        .build())
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s2)
+                        .eventType(MoveEvent.class)
+                        .eventHandler(eventHandler)
+                        .targetState(s1)
+                        .build())
+                .buildDefinition();
+    }
+
+    private static class MoveEvent extends AbstractEvent {
+
+        private final int sequence;
+
+        MoveEvent(int sequence) {
+            this.sequence = sequence;
+        }
+
+    }
+
+}
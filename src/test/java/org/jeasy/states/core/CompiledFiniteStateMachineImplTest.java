@@ -0,0 +1,238 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+import org.jeasy.states.api.TransitionListener;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+
+public class CompiledFiniteStateMachineImplTest {
+
+    private final State s1 = new State("s1");
+    private final State s2 = new State("s2");
+    private final State s3 = new State("s3");
+    private final List<String> handled = new ArrayList<>();
+    private FiniteStateMachineBuilder builder;
+
+    /*
+     * s1 -- MoveEvent --> s2 -- MoveEvent (amount > 10) --> s3 (final)
+     *                      \--- MoveEvent --> s1
+     *                       \-- StayEvent --> s2
+     */
+    @Before
+    public void setUp() {
+        Set<State> states = new HashSet<>(Arrays.asList(s1, s2, s3));
+        builder = new FiniteStateMachineBuilder(states, s1)
+                .registerFinalState(s3)
+                .registerTransition(new TransitionBuilder().name("t1").sourceState(s1).eventType(MoveEvent.class).targetState(s2)
+                        .eventHandler(event -> handled.add("t1 " + event.getName())).build())
+                .registerTransition(new TransitionBuilder().name("t2").sourceState(s2).eventType(MoveEvent.class).targetState(s3)
+                        .guard(MoveEvent.class, event -> event.amount > 10).build())
+                .registerTransition(new TransitionBuilder().name("t3").sourceState(s2).eventType(MoveEvent.class).targetState(s1).build())
+                .registerTransition(new TransitionBuilder().name("t4").sourceState(s2).eventType(StayEvent.class).targetState(s2)
+                        .eventHandler(event -> handled.add("t4 " + event.getName())).build());
+    }
+
+    @Test
+    public void whenEventsAreFired_thenCompiledMachineShouldMakeTheSameTransitionsAsTheBuiltOne() throws Exception {
+        // Given
+        FiniteStateMachine compiled = builder.compile();
+        FiniteStateMachine built = builder.build();
+        List<AbstractEvent> events = Arrays.asList(new StayEvent(), new MoveEvent(0), new StayEvent(), new MoveEvent(1),
+                new FastMoveEvent(), new MoveEvent(20), new MoveEvent(0));
+
+        // When
+        for (AbstractEvent event : events) {
+            assertThat(compiled.fire(event)).isEqualTo(built.fire(event));
+            // Then
+            assertThat(compiled.getLastTransition()).isEqualTo(built.getLastTransition());
+        }
+        assertThat(compiled).isInstanceOf(CompiledFiniteStateMachineImpl.class);
+        assertThat(compiled.getCurrentState()).isEqualTo(s3);
+        assertThat(handled).containsExactly("t1 MoveEvent", "t1 MoveEvent", "t4 StayEvent", "t4 StayEvent",
+                "t1 FastMoveEvent", "t1 FastMoveEvent");
+    }
+
+    @Test
+    public void whenEventHandlerThrowsException_thenStateShouldNotChange() {
+        // Given
+        FiniteStateMachine stateMachine = builder
+                .registerTransition(new TransitionBuilder().name("t5").sourceState(s1).eventType(StayEvent.class).targetState(s3)
+                        .eventHandler(event -> {
+                            throw new IllegalStateException("Artificial exception for test");
+                        }).build())
+                .compile();
+        StayEvent event = new StayEvent();
+
+        // When
+        try {
+            stateMachine.fire(event);
+            fail("A FiniteStateMachineException should have been thrown");
+        } catch (FiniteStateMachineException e) {
+            // Then
+            assertThat(e.getTransition().getName()).isEqualTo("t5");
+            assertThat(e.getEvent()).isSameAs(event);
+        }
+        assertThat(stateMachine.getCurrentState()).isEqualTo(s1);
+        assertThat(stateMachine.getLastTransition()).isNull();
+    }
+
+    @Test
+    public void whenConcurrencyModeIsReentrantLock_thenMachineShouldBeCompiled() throws Exception {
+        // Given
+        FiniteStateMachine stateMachine = builder.concurrencyMode(ConcurrencyMode.REENTRANT_LOCK).compile();
+
+        // When
+        State state = stateMachine.fireAll(Arrays.asList(new MoveEvent(0), new MoveEvent(20), new MoveEvent(0)));
+
+        // Then
+        assertThat(stateMachine).isInstanceOf(CompiledFiniteStateMachineImpl.class);
+        assertThat(state).isEqualTo(s3);
+        assertThat(stateMachine.getLastTransition().getName()).isEqualTo("t2");
+    }
+
+    @Test
+    public void whenEventIsFiredByCode_thenCompiledMachineShouldTransitToTargetState() throws Exception {
+        // Given
+        FiniteStateMachine stateMachine = builder
+                .registerTransition(new TransitionBuilder().name("t5").sourceState(s2).eventType(JumpEvent.class).targetState(s3).build())
+                .registerEventCode(3, JumpEvent.class)
+                .compile();
+
+        // When
+        State unmatched = stateMachine.fire(3);
+        stateMachine.fire(new MoveEvent(0));
+        State state = stateMachine.fire(3);
+
+        // Then
+        assertThat(unmatched).isEqualTo(s1);
+        assertThat(state).isEqualTo(s3);
+        assertThat(stateMachine.getLastTransition().getName()).isEqualTo("t5");
+        assertThat(stateMachine.getLastEvent()).isNull();
+    }
+
+    @Test
+    public void whenTransitionListenerIsRegistered_thenCompiledMachineShouldNotifyIt() throws Exception {
+        // Given
+        List<String> notifications = new ArrayList<>();
+        FiniteStateMachine stateMachine = builder.registerTransitionListener(new TransitionListener() {
+            @Override
+            public void afterTransition(Transition transition, Event event) {
+                notifications.add("after " + transition.getName());
+            }
+
+            @Override
+            public void onUnmatchedEvent(State currentState, Event event) {
+                notifications.add("unmatched " + event.getClass().getSimpleName());
+            }
+        }).compile();
+
+        // When
+        stateMachine.fire(new MoveEvent(0));
+        stateMachine.fire(new JumpEvent());
+        stateMachine.fire(new FastMoveEvent());
+
+        // Then
+        assertThat(stateMachine).isInstanceOf(CompiledFiniteStateMachineImpl.class);
+        assertThat(notifications).containsExactly("after t1", "unmatched JumpEvent", "after t3");
+    }
+
+    @Test
+    public void whenDefinitionHasTheOptimisticConcurrencyMode_thenItShouldNotBeCompiled() {
+        // When / Then
+        assertThatThrownBy(() -> builder.concurrencyMode(ConcurrencyMode.OPTIMISTIC).compile())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("OPTIMISTIC");
+    }
+
+    @Test
+    public void whenDefinitionHasStateTimeouts_thenItShouldNotBeCompiled() {
+        // When / Then
+        assertThatThrownBy(() -> builder.registerStateTimeout(s2, 1, TimeUnit.SECONDS).compile())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("state timeouts");
+    }
+
+    @Test
+    public void whenRunningOnJava21_thenDispatcherShouldBeAHiddenClass() throws Exception {
+        // Given
+        String version = System.getProperty("java.specification.version");
+        Assume.assumeTrue("Hidden class dispatchers are loaded from the Java 21 layer",
+                !version.startsWith("1.") && Integer.parseInt(version) >= 21);
+
+        // When
+        CompiledFiniteStateMachineImpl stateMachine = (CompiledFiniteStateMachineImpl) builder.compile();
+
+        // Then
+        assertThat(Class.class.getMethod("isHidden").invoke(stateMachine.getDispatcher().getClass())).isEqualTo(true);
+        assertThat(stateMachine.fire(new MoveEvent(0))).isEqualTo(s2);
+        assertThat(handled).containsExactly("t1 MoveEvent");
+    }
+
+    private static class MoveEvent extends AbstractEvent {
+
+        private final int amount;
+
+        MoveEvent(int amount) {
+            super("MoveEvent");
+            this.amount = amount;
+        }
+    }
+
+    private static class FastMoveEvent extends MoveEvent {
+
+        FastMoveEvent() {
+            super(0);
+            this.name = "FastMoveEvent";
+        }
+    }
+
+    private static class JumpEvent extends AbstractEvent { }
+
+    private static class StayEvent extends AbstractEvent {
+
+        StayEvent() {
+            super("StayEvent");
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.EnumFiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+
+public class EnumFiniteStateMachineImplTest {
+
+    private enum OrderState { NEW, PAID, SHIPPED, CANCELLED }
+
+    @Test
+    public void whenEventsAreFired_thenShouldTransitBetweenEnumStates() throws Exception {
+        // Given
+        List<String> payments = new ArrayList<>();
+        EnumFiniteStateMachine<OrderState> stateMachine = new EnumFiniteStateMachineBuilder<>(OrderState.class, OrderState.NEW)
+                .registerTransition(OrderState.NEW, PayEvent.class, OrderState.PAID, (PayEvent event) -> payments.add(event.getName()))
+                .registerTransition(OrderState.PAID, ShipEvent.class, OrderState.SHIPPED)
+                .registerTransition(OrderState.NEW, CancelEvent.class, OrderState.CANCELLED)
+                .registerFinalState(OrderState.SHIPPED)
+                .registerFinalState(OrderState.CANCELLED)
+                .build();
+
+        // When
+        OrderState state = stateMachine.fireAll(Arrays.asList(new ShipEvent(), new PayEvent(), new ShipEvent(), new CancelEvent()));
+
+        // Then
+        assertThat(state).isSameAs(OrderState.SHIPPED);
+        assertThat(stateMachine.getLastTransition().getTargetState().getName()).isEqualTo("SHIPPED");
+        assertThat(stateMachine.getFinalStates()).containsExactly(OrderState.SHIPPED, OrderState.CANCELLED);
+        assertThat(payments).containsExactly("PayEvent");
+
+        stateMachine.reset();
+        assertThat(stateMachine.getCurrentState()).isSameAs(OrderState.NEW);
+        assertThat(stateMachine.getLastEvent()).isNull();
+        assertThat(stateMachine.fire(new CancelEvent())).isSameAs(OrderState.CANCELLED);
+    }
+
+    @Test
+    public void whenEventIsFiredByItsCode_thenCodedEventHandlerShouldReceiveThePayload() throws Exception {
+        // Given
+        List<Long> amounts = new ArrayList<>();
+        EnumFiniteStateMachine<OrderState> stateMachine = new EnumFiniteStateMachineBuilder<>(OrderState.class, OrderState.NEW)
+                .registerTransition(OrderState.NEW, PayEvent.class, OrderState.PAID, null, (code, payload) -> amounts.add(payload))
+                .registerTransition(OrderState.PAID, ShipEvent.class, OrderState.SHIPPED)
+                .registerEventCode(1, PayEvent.class)
+                .registerEventCode(2, ShipEvent.class)
+                .build();
+
+        // When
+        OrderState paid = stateMachine.fire(1, 42L);
+        OrderState shipped = stateMachine.fire(2);
+
+        // Then
+        assertThat(paid).isSameAs(OrderState.PAID);
+        assertThat(shipped).isSameAs(OrderState.SHIPPED);
+        assertThat(amounts).containsExactly(42L);
+        assertThat(stateMachine.getLastEvent()).isNull();
+        assertThatThrownBy(() -> stateMachine.fire(3)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void whenEventHandlerThrowsException_thenStateShouldNotChange() {
+        // Given
+        EnumFiniteStateMachine<OrderState> stateMachine = new EnumFiniteStateMachineBuilder<>(OrderState.class, OrderState.NEW)
+                .registerTransition(OrderState.NEW, PayEvent.class, OrderState.PAID, (PayEvent event) -> {
+                    throw new IllegalStateException("Artificial exception for test");
+                })
+                .build();
+
+        // When
+        try {
+            stateMachine.fire(new PayEvent());
+            fail("A FiniteStateMachineException should have been thrown");
+        } catch (FiniteStateMachineException e) {
+            // Then
+            assertThat(e.getCause()).hasMessage("Artificial exception for test");
+        }
+        assertThat(stateMachine.getCurrentState()).isSameAs(OrderState.NEW);
+    }
+
+    @Test
+    public void whenTransitionIsRegisteredTwiceForTheSameStateAndEventType_thenShouldThrowIllegalArgumentException() {
+        EnumFiniteStateMachineBuilder<OrderState> builder = new EnumFiniteStateMachineBuilder<>(OrderState.class, OrderState.NEW)
+                .registerTransition(OrderState.NEW, PayEvent.class, OrderState.PAID);
+
+        assertThatThrownBy(() -> builder.registerTransition(OrderState.NEW, PayEvent.class, OrderState.CANCELLED))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static class PayEvent extends AbstractEvent {
+        PayEvent() {
+            super("PayEvent");
+        }
+    }
+
+    private static class ShipEvent extends AbstractEvent { }
+
+    private static class CancelEvent extends AbstractEvent { }
+
+}
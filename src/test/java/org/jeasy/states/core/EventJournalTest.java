@@ -0,0 +1,355 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class EventJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private State s1, s2, s3;
+    private AtomicInteger handledEvents;
+    private FiniteStateMachineDefinition definition;
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        s1 = new State("s1");
+        s2 = new State("s2");
+        s3 = new State("s3");
+        handledEvents = new AtomicInteger();
+        definition = new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(s1, s2, s3)), s1)
+                .registerTransition(new TransitionBuilder()
+                        .name("t1")
+                        .sourceState(s1)
+                        .eventType(MoveEvent.class)
+                        .eventHandler(event -> handledEvents.incrementAndGet())
+                        .targetState(s2)
+                        .build())
+                .registerTransition(new TransitionBuilder()
+                        .name("t2")
+                        .sourceState(s2)
+                        .eventType(MoveEvent.class)
+                        .eventHandler(event -> handledEvents.incrementAndGet())
+                        .targetState(s1)
+                        .build())
+                .registerTransition(new TransitionBuilder()
+                        .name("t3")
+                        .sourceState(s2)
+                        .eventType(FailingEvent.class)
+                        .eventHandler(event -> { throw new IllegalStateException("boom"); })
+                        .targetState(s3)
+                        .build())
+                .buildDefinition();
+        directory = folder.newFolder().toPath();
+    }
+
+    @Test
+    public void whenJournalIsReplayed_thenStatesShouldBeRebuiltWithoutExecutingEventHandlers() throws Exception {
+        // Given
+        try (EventJournal journal = new EventJournalBuilder(directory, definition).syncEvery(2).build()) {
+            FiniteStateMachine fsm1 = journal.newInstance(1);
+            FiniteStateMachine fsm2 = journal.newInstance(2);
+            fsm1.fire(new MoveEvent());
+            fsm2.fire(new MoveEvent());
+            fsm2.fire(new MoveEvent());
+            assertThatThrownBy(() -> fsm1.fire(new FailingEvent())).isInstanceOf(FiniteStateMachineException.class);
+        }
+        handledEvents.set(0);
+
+        // When
+        Map<Long, State> states;
+        try (EventJournal journal = new EventJournalBuilder(directory, definition).build()) {
+            states = journal.replay();
+        }
+
+        // Then
+        assertThat(handledEvents.get()).isZero();
+        assertThat(states).hasSize(2).containsEntry(1L, s2).containsEntry(2L, s1);
+    }
+
+    @Test
+    public void whenSegmentIsFull_thenANewSegmentShouldBeStarted() throws Exception {
+        // Given
+        EventJournal journal = new EventJournalBuilder(directory, definition).segmentSize(1024).build();
+        FiniteStateMachine fsm = journal.newInstance(7);
+
+        // When
+        for (int i = 0; i < 201; i++) {
+            fsm.fire(new MoveEvent());
+        }
+        journal.close();
+
+        // Then
+        try (Stream<Path> segments = Files.list(directory)) {
+            assertThat(segments.count()).isGreaterThan(1);
+        }
+        FiniteStateMachinePopulation population = new FiniteStateMachinePopulation(definition, 10, 4);
+        try (EventJournal reopened = new EventJournalBuilder(directory, definition).segmentSize(1024).build()) {
+            assertThat(reopened.replay(population)).isEqualTo(201);
+        }
+        assertThat(population.getCurrentState(7)).isEqualTo(s2);
+        assertThat(population.getCurrentState(0)).isEqualTo(s1);
+    }
+
+    @Test
+    public void whenJournalIsReopened_thenNewRecordsShouldBeAppendedAfterExistingOnes() throws Exception {
+        // Given
+        try (EventJournal journal = new EventJournalBuilder(directory, definition).build()) {
+            journal.newInstance(1).fire(new MoveEvent());
+        }
+
+        // When
+        try (EventJournal journal = new EventJournalBuilder(directory, definition).build()) {
+            FiniteStateMachine fsm = journal.newInstance(1, journal.replay().get(1L));
+            fsm.fire(new MoveEvent());
+        }
+
+        // Then
+        try (EventJournal journal = new EventJournalBuilder(directory, definition).build()) {
+            assertThat(journal.replay()).containsEntry(1L, s1);
+        }
+    }
+
+    @Test
+    public void whenJournalIsReopened_thenRecordsShouldBeAppendedToTheLastSegment() throws Exception {
+        // Given
+        try (EventJournal journal = new EventJournalBuilder(directory, definition).segmentSize(4096).build()) {
+            journal.newInstance(1).fire(new MoveEvent());
+        }
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            try (EventJournal journal = new EventJournalBuilder(directory, definition).segmentSize(4096).build()) {
+                journal.newInstance(1, journal.replay().get(1L)).fire(new MoveEvent());
+            }
+        }
+
+        // Then
+        try (Stream<Path> segments = Files.list(directory)) {
+            assertThat(segments.count()).isEqualTo(1);
+        }
+        FiniteStateMachinePopulation population = new FiniteStateMachinePopulation(definition, 2, 4);
+        try (EventJournal journal = new EventJournalBuilder(directory, definition).build()) {
+            // one transition, then a state record and a transition for each reopening in state s2
+            assertThat(journal.replay(population)).isEqualTo(6);
+        }
+        assertThat(population.getCurrentState(1)).isEqualTo(s1);
+    }
+
+    @Test
+    public void whenRecordIsCorrupted_thenReplayShouldStopAtItAndNewRecordsShouldOverwriteIt() throws Exception {
+        // Given
+        try (EventJournal journal = new EventJournalBuilder(directory, definition).segmentSize(4096).build()) {
+            FiniteStateMachine fsm = journal.newInstance(1);
+            for (int i = 0; i < 8; i++) {
+                fsm.fire(new MoveEvent());
+            }
+        }
+        Path segment;
+        try (Stream<Path> segments = Files.list(directory)) {
+            segment = segments.findFirst().orElseThrow(IllegalStateException::new);
+        }
+        byte[] content = Files.readAllBytes(segment);
+        int headerLength = EventJournal.minimumSegmentSize((FiniteStateMachineDefinitionImpl) definition) - EventJournal.RECORD_SIZE;
+        content[headerLength + 3 * EventJournal.RECORD_SIZE + Long.BYTES] ^= 1; // torn fourth record
+        Files.write(segment, content);
+
+        // When
+        FiniteStateMachinePopulation population = new FiniteStateMachinePopulation(definition, 2, 4);
+        try (EventJournal journal = new EventJournalBuilder(directory, definition).segmentSize(4096).build()) {
+            assertThat(journal.replay(population)).isEqualTo(3);
+            journal.newInstance(1, population.getCurrentState(1)).fire(new MoveEvent());
+        }
+
+        // Then
+        try (EventJournal journal = new EventJournalBuilder(directory, definition).build()) {
+            // three valid transitions, then the state record and transition appended after reopening, not the stale records
+            assertThat(journal.replay(population)).isEqualTo(5);
+        }
+        assertThat(population.getCurrentState(1)).isEqualTo(s1);
+    }
+
+    @Test
+    public void whenJournalIsCompacted_thenOlderSegmentsShouldBeReplacedByTheCurrentStates() throws Exception {
+        // Given
+        FiniteStateMachinePopulation population = new FiniteStateMachinePopulation(definition, 10, 4);
+        try (EventJournal journal = new EventJournalBuilder(directory, definition).segmentSize(1024).build()) {
+            for (int machineId = 0; machineId < 10; machineId++) {
+                FiniteStateMachine fsm = journal.newInstance(machineId);
+                for (int i = 0; i <= machineId * 10; i++) {
+                    fsm.fire(new MoveEvent());
+                }
+            }
+            long segmentsBefore;
+            try (Stream<Path> segments = Files.list(directory)) {
+                segmentsBefore = segments.count();
+            }
+
+            // When
+            int instances = journal.compact();
+
+            // Then
+            assertThat(instances).isEqualTo(10);
+            try (Stream<Path> segments = Files.list(directory)) {
+                assertThat(segments.count()).isEqualTo(1).isLessThan(segmentsBefore);
+            }
+            journal.newInstance(1, s2).fire(new MoveEvent());
+        }
+        try (EventJournal journal = new EventJournalBuilder(directory, definition).build()) {
+            assertThat(journal.replay(population)).isEqualTo(12);
+        }
+        for (int machineId = 0; machineId < 10; machineId++) {
+            assertThat(population.getCurrentState(machineId)).isEqualTo(machineId == 1 ? s1 : s2);
+        }
+    }
+
+    @Test
+    public void whenJournalIsClosed_thenEventsShouldNoLongerBeAccepted() throws Exception {
+        // Given
+        EventJournal journal = new EventJournalBuilder(directory, definition).build();
+        FiniteStateMachine fsm = journal.newInstance(1);
+        journal.close();
+
+        // When / Then
+        assertThatThrownBy(() -> fsm.fire(new MoveEvent())).isInstanceOf(FiniteStateMachineException.class);
+        assertThat(fsm.getCurrentState()).isEqualTo(s1);
+    }
+
+    @Test
+    public void whenInstanceIsResetOrStartedInANonInitialState_thenItsStateShouldBeJournaled() throws Exception {
+        // Given
+        try (EventJournal journal = new EventJournalBuilder(directory, definition).build()) {
+            FiniteStateMachine fsm1 = journal.newInstance(1);
+            fsm1.fire(new MoveEvent());
+
+            // When
+            fsm1.reset();
+            journal.newInstance(2, s3);
+        }
+
+        // Then
+        try (EventJournal journal = new EventJournalBuilder(directory, definition).build()) {
+            assertThat(journal.replay()).hasSize(2).containsEntry(1L, s1).containsEntry(2L, s3);
+        }
+    }
+
+    @Test
+    public void whenInstancesFireEventsConcurrently_thenRecordsShouldBeForcedByGroups() throws Exception {
+        // Given
+        int machines = 8;
+        int eventsPerMachine = 100;
+        ExecutorService executorService = Executors.newFixedThreadPool(machines);
+        List<Future<?>> futures = new ArrayList<>();
+        try (EventJournal journal = new EventJournalBuilder(directory, definition)
+                .syncEvery(4)
+                .maxSyncDelay(10, TimeUnit.MILLISECONDS)
+                .build()) {
+
+            // When
+            for (int i = 0; i < machines; i++) {
+                FiniteStateMachine fsm = journal.newInstance(i);
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < eventsPerMachine; j++) {
+                        fsm.fire(new MoveEvent());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        // Then
+        FiniteStateMachinePopulation population = new FiniteStateMachinePopulation(definition, machines, 4);
+        try (EventJournal journal = new EventJournalBuilder(directory, definition).build()) {
+            assertThat(journal.replay(population)).isEqualTo(machines * eventsPerMachine);
+        }
+        population.forEach((state, index) -> assertThat(state).isEqualTo(s1));
+    }
+
+    @Test
+    public void whenEventIsFiredByItsCode_thenTheTransitionShouldBeJournaled() throws Exception {
+        // Given
+        FiniteStateMachineDefinition codedDefinition = new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(s1, s2)), s1)
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(MoveEvent.class)
+                        .targetState(s2)
+                        .build())
+                .registerEventCode(1, MoveEvent.class)
+                .buildDefinition();
+
+        // When
+        try (EventJournal journal = new EventJournalBuilder(directory, codedDefinition).build()) {
+            assertThat(journal.newInstance(1).fire(1)).isEqualTo(s2);
+        }
+
+        // Then
+        try (EventJournal journal = new EventJournalBuilder(directory, codedDefinition).build()) {
+            assertThat(journal.replay()).containsEntry(1L, s2);
+        }
+    }
+
+    @Test
+    public void whenSegmentSizeIsTooSmall_thenTheBuilderShouldRejectIt() {
+        // When / Then
+        assertThatThrownBy(() -> new EventJournalBuilder(directory, definition).segmentSize(16))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static class MoveEvent extends AbstractEvent { }
+    private static class FailingEvent extends AbstractEvent { }
+
+}
@@ -130,6 +130,20 @@ public class FiniteStateMachineBuilderTest {
         assertThat(finiteStateMachine.getFinalStates()).contains(s2, s3);
     }
 
+    @Test
+    public void testDefaultConcurrencyModeIsSynchronizedOnAllJavaVersions() {
+        // given
+        State s1 = new State("s1");
+        Set<State> states = new HashSet<>();
+        states.add(s1);
+
+        // when
+        FiniteStateMachine finiteStateMachine = new FiniteStateMachineBuilder(states, s1).build();
+
+        // then
+        assertThat(finiteStateMachine).isExactlyInstanceOf(FiniteStateMachineImpl.class);
+    }
+
     private static class DummyEvent extends AbstractEvent { }
     private static class AnotherDummyEvent extends AbstractEvent { }
 
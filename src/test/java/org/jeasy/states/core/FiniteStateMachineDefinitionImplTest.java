@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FiniteStateMachineDefinitionImplTest {
+
+    private State s1, s2;
+    private Transition transition;
+    private FiniteStateMachineDefinition definition;
+
+    @Before
+    public void setUp() {
+        s1 = new State("s1");
+        s2 = new State("s2");
+        Set<State> states = new HashSet<>(Arrays.asList(s1, s2));
+        transition = new TransitionBuilder()
+                .sourceState(s1)
+                .targetState(s2)
+                .eventType(MoveEvent.class)
+                .build();
+        definition = new FiniteStateMachineBuilder(states, s1)
+                .registerTransition(transition)
+                .buildDefinition();
+    }
+
+    @Test
+    public void whenInstancesAreCreated_thenTheyShouldShareTheDefinitionButNotTheirState() throws Exception {
+        // Given
+        FiniteStateMachine first = definition.newInstance();
+        FiniteStateMachine second = definition.newInstance();
+
+        // When
+        first.fire(new MoveEvent());
+
+        // Then
+        assertThat(first.getCurrentState()).isEqualTo(s2);
+        assertThat(second.getCurrentState()).isEqualTo(s1);
+        assertThat(first.getTransitions()).isSameAs(second.getTransitions());
+    }
+
+    @Test
+    public void whenInstanceIsCreatedInAGivenState_thenItShouldBeInThatState() {
+        // When
+        FiniteStateMachine finiteStateMachine = definition.newInstance(s2);
+
+        // Then
+        assertThat(finiteStateMachine.getCurrentState()).isEqualTo(s2);
+        assertThat(finiteStateMachine.getInitialState()).isEqualTo(s1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenInstanceIsCreatedInAnUnregisteredState_thenShouldThrowIllegalArgumentException() {
+        // When
+        definition.newInstance(new State("s3"));
+
+        // Then
+        // expected exception
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void definitionShouldBeImmutable() {
+        // When
+        definition.getTransitions().clear();
+
+        // Then
+        // expected exception
+    }
+
+    private static class MoveEvent extends AbstractEvent { }
+
+}
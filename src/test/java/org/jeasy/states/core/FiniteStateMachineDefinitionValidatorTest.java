@@ -25,15 +25,19 @@ package org.jeasy.states.core;
 
 import org.jeasy.states.api.AbstractEvent;
 import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
 import org.jeasy.states.api.State;
 import org.jeasy.states.api.Transition;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class FiniteStateMachineDefinitionValidatorTest {
 
@@ -46,10 +50,12 @@ public class FiniteStateMachineDefinitionValidatorTest {
         State s2 = new State("s2");
         State s3 = new State("s3");
         Set<State> states = new HashSet<>(Arrays.asList(s1, s2));
-        FiniteStateMachine finiteStateMachine = new FiniteStateMachineImpl(states, s3);
+        FiniteStateMachineDefinition finiteStateMachineDefinition = new FiniteStateMachineDefinitionImpl(states, s3,
+                Collections.emptySet(), Collections.emptySet(), ConcurrencyMode.SYNCHRONIZED, Collections.emptyList(), null, Collections.emptyMap(),
+                Collections.emptyMap(), null);
 
         // when
-        validator.validateFiniteStateMachineDefinition(finiteStateMachine);
+        validator.validateFiniteStateMachineDefinition(finiteStateMachineDefinition);
 
         // then
         // expected exception
@@ -62,12 +68,32 @@ public class FiniteStateMachineDefinitionValidatorTest {
         State s2 = new State("s2");
         State s3 = new State("s3");
         Set<State> states = new HashSet<>(Arrays.asList(s1, s2));
-        FiniteStateMachine finiteStateMachine = new FiniteStateMachineBuilder(states, s1)
-                .registerFinalState(s3)
-                .build();
+        // the builder validates definitions itself, so the definition is mocked
+        FiniteStateMachineDefinition finiteStateMachineDefinition = mock(FiniteStateMachineDefinition.class);
+        when(finiteStateMachineDefinition.getStates()).thenReturn(states);
+        when(finiteStateMachineDefinition.getInitialState()).thenReturn(s1);
+        when(finiteStateMachineDefinition.getFinalStates()).thenReturn(Collections.singleton(s3));
+
+        // when
+        validator.validateFiniteStateMachineDefinition(finiteStateMachineDefinition);
+
+        // then
+        // expected exception
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenParentStateDoesNotBelongToMachineStates_thenShouldThrowIllegalStateException() {
+        // given
+        State parent = new State("parent");
+        State s1 = new State("s1", parent);
+        State s2 = new State("s2");
+        Set<State> states = new HashSet<>(Arrays.asList(s1, s2));
+        FiniteStateMachineDefinition finiteStateMachineDefinition = mock(FiniteStateMachineDefinition.class);
+        when(finiteStateMachineDefinition.getStates()).thenReturn(states);
+        when(finiteStateMachineDefinition.getInitialState()).thenReturn(s1);
 
         // when
-        validator.validateFiniteStateMachineDefinition(finiteStateMachine);
+        validator.validateFiniteStateMachineDefinition(finiteStateMachineDefinition);
 
         // then
         // expected exception
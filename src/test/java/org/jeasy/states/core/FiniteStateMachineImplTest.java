@@ -24,18 +24,24 @@
 package org.jeasy.states.core;
 
 import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.CodedEventHandler;
 import org.jeasy.states.api.EventHandler;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineBatchException;
 import org.jeasy.states.api.FiniteStateMachineException;
 import org.jeasy.states.api.State;
 import org.jeasy.states.api.Transition;
+import org.jeasy.states.api.TransitionListener;
 import org.assertj.core.api.Assertions;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -47,7 +53,9 @@ public class FiniteStateMachineImplTest {
     private State s1, s2;
     @Mock
     private EventHandler<MoveEvent> eventHandler;
-    private FiniteStateMachineImpl stateMachine;
+    @Mock
+    private TransitionListener transitionListener;
+    private FiniteStateMachineBuilder stateMachineBuilder;
 
     @Before
     public void setUp() {
@@ -56,7 +64,7 @@ public class FiniteStateMachineImplTest {
         Set<State> states = new HashSet<>();
         states.add(s1);
         states.add(s2);
-        stateMachine = new FiniteStateMachineImpl(states, s1);
+        stateMachineBuilder = new FiniteStateMachineBuilder(states, s1);
     }
 
     @Test
@@ -68,7 +76,7 @@ public class FiniteStateMachineImplTest {
                 .eventType(MoveEvent.class)
                 .eventHandler(eventHandler)
                 .build();
-        stateMachine.registerTransition(transition);
+        FiniteStateMachine stateMachine = stateMachineBuilder.registerTransition(transition).build();
 
         // When
         MoveEvent event = new MoveEvent();
@@ -88,8 +96,10 @@ public class FiniteStateMachineImplTest {
                 .eventType(MoveEvent.class)
                 .eventHandler(eventHandler)
                 .build();
-        stateMachine.registerFinalState(s1);
-        stateMachine.registerTransition(transition);
+        FiniteStateMachine stateMachine = stateMachineBuilder
+                .registerFinalState(s1)
+                .registerTransition(transition)
+                .build();
 
         // When
         stateMachine.fire(new MoveEvent());
@@ -107,7 +117,7 @@ public class FiniteStateMachineImplTest {
                 .eventType(MoveEvent.class)
                 .eventHandler(eventHandler)
                 .build();
-        stateMachine.registerTransition(transition);
+        FiniteStateMachine stateMachine = stateMachineBuilder.registerTransition(transition).build();
 
         // When
         stateMachine.fire(null);
@@ -125,7 +135,7 @@ public class FiniteStateMachineImplTest {
                 .eventType(MoveEvent.class)
                 .eventHandler(eventHandler)
                 .build();
-        stateMachine.registerTransition(transition);
+        FiniteStateMachine stateMachine = stateMachineBuilder.registerTransition(transition).build();
         MoveEvent event = new MoveEvent();
         Exception exception = new Exception("Artificial exception for test");
         doThrow(exception).when(eventHandler).handleEvent(event);
@@ -147,7 +157,7 @@ public class FiniteStateMachineImplTest {
                 .eventType(MoveEvent.class)
                 .eventHandler(eventHandler)
                 .build();
-        stateMachine.registerTransition(transition);
+        FiniteStateMachine stateMachine = stateMachineBuilder.registerTransition(transition).build();
 
         // When
         stateMachine.fire(new StayEvent());
@@ -157,7 +167,366 @@ public class FiniteStateMachineImplTest {
         Mockito.verifyNoInteractions(eventHandler);
     }
 
+    @Test
+    public void whenBatchOfEventsIsFired_thenEventsShouldBeProcessedInOrder() throws Exception {
+        // Given
+        Transition move = new TransitionBuilder()
+                .sourceState(s1)
+                .targetState(s2)
+                .eventType(MoveEvent.class)
+                .eventHandler(eventHandler)
+                .build();
+        Transition stay = new TransitionBuilder()
+                .sourceState(s2)
+                .targetState(s2)
+                .eventType(StayEvent.class)
+                .build();
+        FiniteStateMachine stateMachine = stateMachineBuilder
+                .registerTransition(move)
+                .registerTransition(stay)
+                .build();
+        MoveEvent moveEvent = new MoveEvent();
+        StayEvent stayEvent = new StayEvent();
+
+        // When
+        State state = stateMachine.fireAll(Arrays.asList(moveEvent, null, stayEvent));
+
+        // Then
+        Assertions.assertThat(state).isEqualTo(s2);
+        Assertions.assertThat(stateMachine.getLastEvent()).isSameAs(stayEvent);
+        Assertions.assertThat(stateMachine.getLastTransition()).isSameAs(stay);
+        Mockito.verify(eventHandler).handleEvent(moveEvent);
+    }
+
+    @Test
+    public void whenEventHandlerThrowsExceptionDuringBatch_thenShouldReportTheIndexOfTheFailingEvent() throws Exception {
+        // Given
+        Transition transition = new TransitionBuilder()
+                .sourceState(s1)
+                .targetState(s2)
+                .eventType(MoveEvent.class)
+                .eventHandler(eventHandler)
+                .build();
+        FiniteStateMachine stateMachine = stateMachineBuilder.registerTransition(transition).build();
+        MoveEvent event = new MoveEvent();
+        doThrow(new Exception("Artificial exception for test")).when(eventHandler).handleEvent(event);
+
+        // When
+        try {
+            stateMachine.fireAll(Arrays.asList(new StayEvent(), event, new MoveEvent()));
+            Assertions.fail("A FiniteStateMachineBatchException should have been thrown");
+        } catch (FiniteStateMachineBatchException e) {
+            // Then
+            Assertions.assertThat(e.getEventIndex()).isEqualTo(1);
+            Assertions.assertThat(e.getEvent()).isSameAs(event);
+            Assertions.assertThat(e.getTransition()).isSameAs(transition);
+        }
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s1);
+    }
+
+    @Test
+    public void whenFinalStateIsReachedDuringBatch_thenRemainingEventsShouldBeIgnored() throws Exception {
+        // Given
+        Transition transition = new TransitionBuilder()
+                .sourceState(s1)
+                .targetState(s2)
+                .eventType(MoveEvent.class)
+                .build();
+        Transition back = new TransitionBuilder()
+                .sourceState(s2)
+                .targetState(s1)
+                .eventType(StayEvent.class)
+                .build();
+        FiniteStateMachine stateMachine = stateMachineBuilder
+                .registerFinalState(s2)
+                .registerTransition(transition)
+                .registerTransition(back)
+                .build();
+
+        // When
+        State state = stateMachine.fireAll(Arrays.asList(new MoveEvent(), new StayEvent()));
+
+        // Then
+        Assertions.assertThat(state).isEqualTo(s2);
+        Assertions.assertThat(stateMachine.getLastTransition()).isSameAs(transition);
+    }
+
+    @Test
+    public void whenStateMachineIsReset_thenShouldBeBackToInitialStateWithoutLastEventAndTransition() throws Exception {
+        // Given
+        Transition transition = new TransitionBuilder()
+                .sourceState(s1)
+                .targetState(s2)
+                .eventType(MoveEvent.class)
+                .build();
+        FiniteStateMachine stateMachine = stateMachineBuilder.registerTransition(transition).build();
+        stateMachine.fire(new MoveEvent());
+
+        // When
+        stateMachine.reset();
+
+        // Then
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s1);
+        Assertions.assertThat(stateMachine.getLastEvent()).isNull();
+        Assertions.assertThat(stateMachine.getLastTransition()).isNull();
+    }
+
+    @Test
+    public void whenStateMachineIsResetToAGivenState_thenShouldBeInThatState() {
+        // Given
+        FiniteStateMachine stateMachine = stateMachineBuilder.build();
+
+        // When
+        stateMachine.reset(s2);
+
+        // Then
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenStateMachineIsResetToAnUnregisteredState_thenShouldThrowIllegalArgumentException() {
+        // Given
+        FiniteStateMachine stateMachine = stateMachineBuilder.build();
+
+        // When
+        stateMachine.reset(new State("s3"));
+
+        // Then
+        // expected exception
+    }
+
+    @Test
+    public void whenTransitionsAreGuarded_thenTheFirstTransitionWhoseGuardAcceptsTheEventShouldBeMade() throws Exception {
+        // Given
+        State s3 = new State("s3");
+        Set<State> states = new HashSet<>(Arrays.asList(s1, s2, s3));
+        FiniteStateMachine stateMachine = new FiniteStateMachineBuilder(states, s1)
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(AmountEvent.class)
+                        .targetState(s1)
+                        .build())
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(AmountEvent.class)
+                        .guard(AmountEvent.class, event -> event.amount > 1000)
+                        .targetState(s3)
+                        .build())
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(AmountEvent.class)
+                        .guard(AmountEvent.class, event -> event.amount > 100)
+                        .targetState(s2)
+                        .build())
+                .build();
+
+        // When / Then
+        Assertions.assertThat(stateMachine.fire(new AmountEvent(10))).isEqualTo(s1);
+        Assertions.assertThat(stateMachine.fire(new AmountEvent(500))).isEqualTo(s2);
+        stateMachine.reset();
+        Assertions.assertThat(stateMachine.fire(new AmountEvent(5000))).isEqualTo(s3);
+    }
+
+    @Test
+    public void whenNoGuardAcceptsTheEventAndNoTransitionIsUnguarded_thenShouldNotChangeState() throws Exception {
+        // Given
+        FiniteStateMachine stateMachine = stateMachineBuilder
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(AmountEvent.class)
+                        .guard(AmountEvent.class, event -> event.amount > 100)
+                        .targetState(s2)
+                        .build())
+                .build();
+
+        // When
+        stateMachine.fire(new AmountEvent(10));
+
+        // Then
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s1);
+        Assertions.assertThat(stateMachine.getLastTransition()).isNull();
+    }
+
+    @Test
+    public void whenGuardThrowsAnException_thenShouldThrowFiniteStateMachineException() {
+        // Given
+        FiniteStateMachine stateMachine = stateMachineBuilder
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(AmountEvent.class)
+                        .guard(event -> { throw new IllegalStateException("boom"); })
+                        .targetState(s2)
+                        .build())
+                .build();
+
+        // When / Then
+        Assertions.assertThatThrownBy(() -> stateMachine.fire(new AmountEvent(10)))
+                .isInstanceOf(FiniteStateMachineException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s1);
+    }
+
+    @Test
+    public void whenTransitionIsDefinedForASuperclassOfTheFiredEvent_thenShouldTransitToTargetState() throws Exception {
+        // Given
+        Transition transition = new TransitionBuilder()
+                .sourceState(s1)
+                .targetState(s2)
+                .eventType(MoveEvent.class)
+                .build();
+        FiniteStateMachine stateMachine = stateMachineBuilder.registerTransition(transition).build();
+
+        // When
+        stateMachine.fire(new FastMoveEvent());
+
+        // Then
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s2);
+        Assertions.assertThat(stateMachine.getLastTransition()).isEqualTo(transition);
+    }
+
+    @Test
+    public void whenTransitionIsMade_thenTransitionListenerShouldBeNotifiedBeforeAndAfterEventHandler() throws Exception {
+        // Given
+        Transition transition = new TransitionBuilder()
+                .sourceState(s1)
+                .targetState(s2)
+                .eventType(MoveEvent.class)
+                .eventHandler(eventHandler)
+                .build();
+        FiniteStateMachine stateMachine = stateMachineBuilder
+                .registerTransition(transition)
+                .registerTransitionListener(transitionListener)
+                .build();
+
+        // When
+        MoveEvent event = new MoveEvent();
+        stateMachine.fire(event);
+
+        // Then
+        InOrder inOrder = Mockito.inOrder(transitionListener, eventHandler);
+        inOrder.verify(transitionListener).beforeTransition(transition, event);
+        inOrder.verify(eventHandler).handleEvent(event);
+        inOrder.verify(transitionListener).afterTransition(transition, event);
+    }
+
+    @Test
+    public void whenEventIsNotMatchedOrIgnored_thenTransitionListenerShouldBeNotified() throws Exception {
+        // Given
+        Transition transition = new TransitionBuilder()
+                .sourceState(s1)
+                .targetState(s2)
+                .eventType(MoveEvent.class)
+                .build();
+        FiniteStateMachine stateMachine = stateMachineBuilder
+                .registerTransition(transition)
+                .registerFinalState(s2)
+                .registerTransitionListener(transitionListener)
+                .build();
+        StayEvent stayEvent = new StayEvent();
+        MoveEvent moveEvent = new MoveEvent();
+
+        // When
+        stateMachine.fire(stayEvent);
+        stateMachine.fire(null);
+        stateMachine.fire(moveEvent);
+        stateMachine.fire(moveEvent);
+
+        // Then
+        Mockito.verify(transitionListener).onUnmatchedEvent(s1, stayEvent);
+        Mockito.verify(transitionListener).onIgnoredEvent(s1, null);
+        Mockito.verify(transitionListener).onIgnoredEvent(s2, moveEvent);
+    }
+
+    @Test
+    public void whenEventHandlerThrowsException_thenTransitionListenerShouldBeNotified() throws Exception {
+        // Given
+        Transition transition = new TransitionBuilder()
+                .sourceState(s1)
+                .targetState(s2)
+                .eventType(MoveEvent.class)
+                .eventHandler(eventHandler)
+                .build();
+        FiniteStateMachine stateMachine = stateMachineBuilder
+                .registerTransition(transition)
+                .registerTransitionListener(transitionListener)
+                .build();
+        MoveEvent event = new MoveEvent();
+        Exception exception = new IllegalStateException("boom");
+        doThrow(exception).when(eventHandler).handleEvent(event);
+
+        // When
+        Assertions.assertThatThrownBy(() -> stateMachine.fire(event)).isInstanceOf(FiniteStateMachineException.class);
+
+        // Then
+        Mockito.verify(transitionListener).onError(transition, event, exception);
+        Mockito.verify(transitionListener, Mockito.never()).afterTransition(transition, event);
+    }
+
+    @Test
+    public void whenEventIsFiredByCode_thenShouldTransitToTargetStateAndInvokeCodedEventHandler() throws Exception {
+        // Given
+        CodedEventHandler codedEventHandler = Mockito.mock(CodedEventHandler.class);
+        Transition transition = new TransitionBuilder()
+                .sourceState(s1)
+                .targetState(s2)
+                .eventType(MoveEvent.class)
+                .eventHandler(eventHandler)
+                .codedEventHandler(codedEventHandler)
+                .build();
+        FiniteStateMachine stateMachine = stateMachineBuilder
+                .registerTransition(transition)
+                .registerTransitionListener(transitionListener)
+                .registerEventCode(7, FastMoveEvent.class)
+                .build();
+
+        // When
+        State state = stateMachine.fire(7, 42L);
+
+        // Then
+        Assertions.assertThat(state).isEqualTo(s2);
+        Assertions.assertThat(stateMachine.getLastTransition()).isEqualTo(transition);
+        Assertions.assertThat(stateMachine.getLastEvent()).isNull();
+        Mockito.verify(codedEventHandler).handleEvent(7, 42L);
+        Mockito.verifyNoInteractions(eventHandler);
+        Mockito.verify(transitionListener).afterTransition(transition, null);
+        Assertions.assertThat(stateMachine.fire(7)).isEqualTo(s2);
+        Mockito.verify(transitionListener).onUnmatchedEvent(s2, null);
+    }
+
+    @Test
+    public void whenUnregisteredEventCodeIsFired_thenShouldThrowIllegalArgumentException() {
+        // Given
+        FiniteStateMachine stateMachine = stateMachineBuilder.registerEventCode(0, MoveEvent.class).build();
+
+        // When / Then
+        Assertions.assertThatThrownBy(() -> stateMachine.fire(1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void whenTransitionOfACodedEventTypeHasNoCodedEventHandler_thenShouldThrowIllegalStateException() {
+        // Given
+        stateMachineBuilder
+                .registerTransition(new TransitionBuilder().sourceState(s1).targetState(s2).eventType(MoveEvent.class).eventHandler(eventHandler).build())
+                .registerEventCode(0, MoveEvent.class);
+
+        // When / Then
+        Assertions.assertThatThrownBy(() -> stateMachineBuilder.build())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("must have a coded event handler");
+    }
+
     private static class MoveEvent extends AbstractEvent { }
 
+    private static class FastMoveEvent extends MoveEvent { }
+
     private static class StayEvent extends AbstractEvent { }
+
+    private static class AmountEvent extends AbstractEvent {
+
+        private final int amount;
+
+        AmountEvent(int amount) {
+            this.amount = amount;
+        }
+    }
 }
@@ -0,0 +1,177 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.State;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FiniteStateMachineMetricsTest {
+
+    private State s1, s2, s3;
+    private FiniteStateMachineDefinition definition;
+    private FiniteStateMachineMetrics metrics;
+
+    @Before
+    public void setUp() {
+        s1 = new State("s1");
+        s2 = new State("s2");
+        s3 = new State("s3");
+        definition = new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(s1, s2, s3)), s1)
+                .registerTransition(new TransitionBuilder()
+                        .name("move")
+                        .sourceState(s1)
+                        .eventType(MoveEvent.class)
+                        .eventHandler(event -> Thread.sleep(1))
+                        .targetState(s2)
+                        .build())
+                .registerTransition(new TransitionBuilder()
+                        .name("stop")
+                        .sourceState(s2)
+                        .eventType(StopEvent.class)
+                        .targetState(s3)
+                        .build())
+                .registerFinalState(s3)
+                .enableMetrics("test")
+                .buildDefinition();
+        metrics = FiniteStateMachineMetrics.of(definition);
+    }
+
+    @After
+    public void tearDown() {
+        metrics.unregister();
+    }
+
+    @Test
+    public void whenEventsAreFired_thenMetricsShouldBeRecorded() throws Exception {
+        // Given
+        FiniteStateMachine stateMachine = definition.newInstance();
+
+        // When
+        stateMachine.fire(new StopEvent());
+        stateMachine.fire(new MoveEvent());
+        stateMachine.fire(new StopEvent());
+        stateMachine.fire(new MoveEvent());
+
+        // Then
+        assertThat(metrics.getTransitions()).isEqualTo(2);
+        assertThat(metrics.getUnmatchedEvents()).isEqualTo(1);
+        assertThat(metrics.getIgnoredEvents()).isEqualTo(1);
+        assertThat(metrics.getErrors()).isZero();
+        List<TransitionMetrics> transitionMetrics = metrics.getTransitionMetrics();
+        assertThat(transitionMetrics).hasSize(2);
+        TransitionMetrics move = transitionMetrics.get(0);
+        assertThat(move.getName()).isEqualTo("move");
+        assertThat(move.getCount()).isEqualTo(1);
+        assertThat(move.getHandlerP50()).isGreaterThanOrEqualTo(1_000_000L);
+        assertThat(move.getHandlerMax()).isGreaterThanOrEqualTo(move.getHandlerP999());
+        assertThat(transitionMetrics.get(1).getHandlerP99()).isZero();
+    }
+
+    @Test
+    public void whenMetricsAreEnabled_thenTheyShouldBeRegisteredInThePlatformMBeanServer() throws Exception {
+        // Given
+        definition.newInstance().fire(new MoveEvent());
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        // When
+        Object transitions = server.getAttribute(metrics.getObjectName(), "Transitions");
+        CompositeData[] transitionMetrics = (CompositeData[]) server.getAttribute(metrics.getObjectName(), "TransitionMetrics");
+
+        // Then
+        assertThat(transitions).isEqualTo(1L);
+        assertThat(transitionMetrics[0].get("name")).isEqualTo("move");
+        assertThat(transitionMetrics[0].get("count")).isEqualTo(1L);
+    }
+
+    @Test
+    public void whenMetricsNameIsAlreadyRegistered_thenBuildingTheDefinitionShouldFail() {
+        assertThatThrownBy(() -> new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(s1, s2, s3)), s1)
+                .enableMetrics("test")
+                .buildDefinition())
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void whenDefinitionIsBuiltTwice_thenMetricsOfTheLastDefinitionShouldBeRegistered() throws Exception {
+        // Given
+        FiniteStateMachineBuilder builder = new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(s1, s2)), s1)
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(MoveEvent.class)
+                        .targetState(s2)
+                        .build())
+                .enableMetrics("built-twice");
+        FiniteStateMachineDefinition first = builder.buildDefinition();
+
+        // When
+        FiniteStateMachineDefinition second = builder.buildDefinition();
+        second.newInstance().fire(new MoveEvent());
+
+        // Then
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = FiniteStateMachineMetrics.of(second).getObjectName();
+        assertThat(server.getAttribute(objectName, "Transitions")).isEqualTo(1L);
+        first.close();
+        assertThat(server.isRegistered(objectName)).isTrue();
+        second.close();
+        assertThat(server.isRegistered(objectName)).isFalse();
+    }
+
+    @Test
+    public void whenHandlerDurationsAreRecorded_thenPercentilesShouldBeBucketUpperBounds() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram(1);
+
+        // When
+        for (long nanos = 1; nanos <= 1000; nanos++) {
+            histogram.record(0, nanos);
+        }
+
+        // Then
+        assertThat(histogram.percentile(0, 50)).isBetween(500L, 625L);
+        assertThat(histogram.percentile(0, 99)).isBetween(990L, 1023L);
+        assertThat(histogram.max(0)).isBetween(1000L, 1023L);
+        assertThat(LatencyHistogram.upperBound(LatencyHistogram.bucket(Long.MAX_VALUE))).isEqualTo(Long.MAX_VALUE);
+    }
+
+    private static class MoveEvent extends AbstractEvent { }
+    private static class StopEvent extends AbstractEvent { }
+
+}
@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FiniteStateMachinePopulationTest {
+
+    private State s1, s2, s3;
+    private FiniteStateMachineDefinition definition;
+    private FiniteStateMachinePopulation population;
+
+    @Before
+    public void setUp() {
+        s1 = new State("s1");
+        s2 = new State("s2");
+        s3 = new State("s3");
+        definition = new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(s1, s2, s3)), s1)
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(MoveEvent.class)
+                        .targetState(s2)
+                        .build())
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s2)
+                        .eventType(MoveEvent.class)
+                        .targetState(s1)
+                        .build())
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s2)
+                        .eventType(FailingEvent.class)
+                        .eventHandler(event -> { throw new IllegalStateException("boom"); })
+                        .targetState(s3)
+                        .build())
+                .registerFinalState(s3)
+                .buildDefinition();
+        population = new FiniteStateMachinePopulation(definition, 10, 4);
+    }
+
+    @Test
+    public void whenPopulationIsCreated_thenAllEntitiesShouldBeInTheInitialState() {
+        // When
+        List<State> states = new ArrayList<>();
+        population.forEach((state, index) -> states.add(state));
+
+        // Then
+        assertThat(population.size()).isEqualTo(10);
+        assertThat(states).hasSize(10).containsOnly(s1);
+    }
+
+    @Test
+    public void whenPopulationSpansSeveralChunks_thenForEachShouldVisitEachEntityInIndexOrder() throws Exception {
+        // Given
+        int size = 2 * FiniteStateMachinePopulation.CHUNK_SIZE + 3;
+        FiniteStateMachinePopulation largePopulation = new FiniteStateMachinePopulation(definition, size, 4);
+        for (int index = 0; index < size; index += 7) {
+            largePopulation.fire(index, new MoveEvent());
+        }
+
+        // When
+        List<Integer> indexes = new ArrayList<>();
+        List<State> states = new ArrayList<>();
+        largePopulation.forEach((state, index) -> {
+            indexes.add(index);
+            states.add(state);
+        });
+
+        // Then
+        assertThat(indexes).hasSize(size);
+        for (int index = 0; index < size; index++) {
+            assertThat(indexes.get(index)).isEqualTo(index);
+            assertThat(states.get(index)).isEqualTo(index % 7 == 0 ? s2 : s1);
+        }
+    }
+
+    @Test
+    public void whenEventIsFiredForAnEntity_thenOnlyThisEntityShouldTransit() throws Exception {
+        // When
+        State state = population.fire(3, new MoveEvent());
+
+        // Then
+        assertThat(state).isEqualTo(s2);
+        assertThat(population.getCurrentState(3)).isEqualTo(s2);
+        assertThat(population.getCurrentState(2)).isEqualTo(s1);
+        assertThat(population.getCurrentState(4)).isEqualTo(s1);
+    }
+
+    @Test
+    public void whenEventHandlerThrowsException_thenEntityStateShouldBeUnchanged() throws Exception {
+        // Given
+        population.fire(0, new MoveEvent());
+
+        // When / Then
+        assertThatThrownBy(() -> population.fire(0, new FailingEvent())).isInstanceOf(FiniteStateMachineException.class);
+        assertThat(population.getCurrentState(0)).isEqualTo(s2);
+    }
+
+    @Test
+    public void whenEntityIsReset_thenItShouldBeInTheGivenState() {
+        // When
+        population.reset(5, s3);
+
+        // Then
+        assertThat(population.getCurrentState(5)).isEqualTo(s3);
+
+        // When
+        population.reset(5);
+
+        // Then
+        assertThat(population.getCurrentState(5)).isEqualTo(s1);
+    }
+
+    @Test
+    public void whenEntityIndexIsOutOfBounds_thenAnExceptionShouldBeThrown() {
+        assertThatThrownBy(() -> population.fire(10, new MoveEvent())).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> population.getCurrentState(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    public void whenStateCountExceedsByteRange_thenOrdinalsShouldBeWidened() {
+        // When
+        OrdinalArray ordinals = OrdinalArray.of(300, 1);
+        ordinals.set(0, 299);
+
+        // Then
+        assertThat(ordinals.width()).isEqualTo(Short.BYTES);
+        assertThat(ordinals.get(0)).isEqualTo(299);
+        assertThat(OrdinalArray.of(256, 1).width()).isEqualTo(Byte.BYTES);
+        assertThat(OrdinalArray.of(1 << 17, 1).width()).isEqualTo(Integer.BYTES);
+    }
+
+    @Test
+    public void whenEventsAreFiredConcurrently_thenNoTransitionShouldBeLost() throws Exception {
+        // Given
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // When
+        for (int thread = 0; thread < 4; thread++) {
+            futures.add(executorService.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    for (int index = 0; index < population.size(); index++) {
+                        population.fire(index, new MoveEvent());
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        // Then
+        population.forEach((state, index) -> assertThat(state).isEqualTo(s1));
+    }
+
+    private static class MoveEvent extends AbstractEvent { }
+    private static class FailingEvent extends AbstractEvent { }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.State;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FiniteStateMachineRegistryTest {
+
+    private State s1, s2;
+    private FiniteStateMachineRegistry<String> registry;
+
+    @Before
+    public void setUp() {
+        s1 = new State("s1");
+        s2 = new State("s2");
+        FiniteStateMachineDefinition definition = new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(s1, s2)), s1)
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(MoveEvent.class)
+                        .targetState(s2)
+                        .build())
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s2)
+                        .eventType(MoveEvent.class)
+                        .targetState(s1)
+                        .build())
+                .buildDefinition();
+        registry = new FiniteStateMachineRegistry<>(definition, 4);
+    }
+
+    @Test
+    public void whenEventIsFiredForAnUnknownEntity_thenItsStateMachineShouldBeCreatedInTheInitialState() throws Exception {
+        // When
+        State state = registry.fire("order-1", new MoveEvent());
+
+        // Then
+        assertThat(state).isEqualTo(s2);
+        assertThat(registry.contains("order-1")).isTrue();
+        assertThat(registry.getCurrentState("order-1")).isEqualTo(s2);
+        assertThat(registry.getLastTransition("order-1").getTargetState()).isEqualTo(s2);
+    }
+
+    @Test
+    public void whenEventsAreFiredForDifferentEntities_thenEachEntityShouldHaveItsOwnState() throws Exception {
+        // When
+        registry.fire("order-1", new MoveEvent());
+        registry.fireAll("order-2", Arrays.asList(new MoveEvent(), new MoveEvent()));
+
+        // Then
+        assertThat(registry.getCurrentState("order-1")).isEqualTo(s2);
+        assertThat(registry.getCurrentState("order-2")).isEqualTo(s1);
+        assertThat(registry.getCurrentState("order-3")).isNull();
+        assertThat(registry.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void whenEntityIsRegisteredInAGivenState_thenEventsShouldBeFiredFromThatState() throws Exception {
+        // Given
+        registry.register("order-1", s2);
+
+        // When
+        State state = registry.fire("order-1", new MoveEvent());
+
+        // Then
+        assertThat(state).isEqualTo(s1);
+    }
+
+    @Test
+    public void whenEntityIsRemoved_thenItsStateMachineShouldNotBeRegisteredAnymore() throws Exception {
+        // Given
+        registry.fire("order-1", new MoveEvent());
+
+        // When
+        State state = registry.remove("order-1");
+
+        // Then
+        assertThat(state).isEqualTo(s2);
+        assertThat(registry.contains("order-1")).isFalse();
+        assertThat(registry.remove("order-1")).isNull();
+    }
+
+    @Test
+    public void forEachShouldVisitAllEntities() throws Exception {
+        // Given
+        registry.fire("order-1", new MoveEvent());
+        registry.register("order-2", s1);
+
+        // When
+        Map<String, State> states = new HashMap<>();
+        registry.forEach(states::put);
+
+        // Then
+        assertThat(states).containsEntry("order-1", s2).containsEntry("order-2", s1).hasSize(2);
+    }
+
+    @Test
+    public void whenEventsAreFiredConcurrentlyForManyEntities_thenNoTransitionShouldBeLost() throws Exception {
+        // Given
+        int threads = 4;
+        int entities = 1000;
+        int eventsPerEntity = 11;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < threads; i++) {
+            futures.add(executorService.submit(() -> {
+                for (int j = 0; j < eventsPerEntity; j++) {
+                    for (int k = 0; k < entities; k++) {
+                        registry.fire("order-" + k, new MoveEvent());
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        // Then
+        assertThat(registry.size()).isEqualTo(entities);
+        registry.forEach((key, state) -> assertThat(state).isEqualTo(s1)); // 4 * 11 transitions per entity
+    }
+
+    private static class MoveEvent extends AbstractEvent { }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.annotation.OnTransition;
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+
+public class MethodHandleEventHandlerTest {
+
+    private final State locked = new State("locked");
+    private final State unlocked = new State("unlocked");
+    private final Set<State> states = new HashSet<>(Arrays.asList(locked, unlocked));
+
+    @Test
+    public void whenEventHandlersAreRegistered_thenAnnotatedMethodsShouldHandleEvents() throws Exception {
+        // Given
+        TurnstileHandlers handlers = new TurnstileHandlers();
+        FiniteStateMachine stateMachine = new FiniteStateMachineBuilder(states, locked)
+                .registerEventHandlers(handlers)
+                .build();
+        CoinEvent coinEvent = new CoinEvent();
+
+        // When
+        stateMachine.fire(new PushEvent());
+        stateMachine.fire(coinEvent);
+        stateMachine.fire(new PushEvent());
+
+        // Then
+        assertThat(stateMachine.getCurrentState()).isEqualTo(locked);
+        assertThat(stateMachine.getTransitions()).extracting("name").containsExactly("push", "lock", "unlock");
+        assertThat(handlers.calls).containsExactly("unlock " + coinEvent.getName(), "lock");
+    }
+
+    @Test
+    public void whenEventHandlerMethodThrowsException_thenExceptionShouldBeWrapped() throws Exception {
+        // Given
+        FiniteStateMachine stateMachine = new FiniteStateMachineBuilder(states, locked)
+                .registerEventHandlers(new FailingHandlers())
+                .build();
+
+        // When
+        try {
+            stateMachine.fire(new CoinEvent());
+            fail("A FiniteStateMachineException should have been thrown");
+        } catch (FiniteStateMachineException e) {
+            // Then
+            assertThat(e.getCause()).isInstanceOf(Exception.class).hasMessage("Artificial exception for test");
+        }
+        assertThat(stateMachine.getCurrentState()).isEqualTo(locked);
+    }
+
+    @Test
+    public void whenEventTypeIsNotAssignableToTheMethodParameter_thenShouldThrowIllegalArgumentException() {
+        assertThatThrownBy(() -> new FiniteStateMachineBuilder(states, locked).registerEventHandlers(new InvalidHandlers()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("is not assignable to the parameter of event handler method");
+    }
+
+    @OnTransition(name = "push", from = "locked", event = PushEvent.class, to = "locked")
+    private static class TurnstileHandlers {
+
+        private final List<String> calls = new ArrayList<>();
+
+        @OnTransition(name = "unlock", from = "locked", event = CoinEvent.class, to = "unlocked")
+        private void unlock(Event event) {
+            calls.add("unlock " + event.getName());
+        }
+
+        @OnTransition(name = "lock", from = "unlocked", event = PushEvent.class, to = "locked")
+        void lock() {
+            calls.add("lock");
+        }
+    }
+
+    private static class FailingHandlers {
+
+        @OnTransition(from = "locked", event = CoinEvent.class, to = "unlocked")
+        public void unlock(CoinEvent event) throws Exception {
+            throw new Exception("Artificial exception for test");
+        }
+    }
+
+    private static class InvalidHandlers {
+
+        @OnTransition(from = "locked", event = CoinEvent.class, to = "unlocked")
+        public void unlock(PushEvent event) {
+        }
+    }
+
+    private static class CoinEvent extends AbstractEvent { }
+
+    private static class PushEvent extends AbstractEvent { }
+
+}
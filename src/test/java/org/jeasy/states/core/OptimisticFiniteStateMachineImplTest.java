@@ -0,0 +1,334 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.EventHandler;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineBatchException;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.Transition;
+import org.jeasy.states.api.TransitionListener;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class OptimisticFiniteStateMachineImplTest {
+
+    private static final int STATES = 7;
+
+    @Test
+    public void whenEventIsFired_thenShouldTransitToTargetStateAndInvokeEventHandler() throws Exception {
+        // Given
+        AtomicInteger invocations = new AtomicInteger();
+        FiniteStateMachine stateMachine = newCyclicStateMachine(event -> invocations.incrementAndGet());
+
+        // When
+        State state = stateMachine.fire(new MoveEvent());
+
+        // Then
+        assertThat(state.getName()).isEqualTo("s1");
+        assertThat(stateMachine.getCurrentState().getName()).isEqualTo("s1");
+        assertThat(stateMachine.getLastTransition().getName()).isEqualTo("t0");
+        assertThat(invocations.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void whenEventHandlerThrowsException_thenStateShouldNotChange() throws Exception {
+        // Given
+        FiniteStateMachine stateMachine = newCyclicStateMachine(event -> {
+            throw new Exception("Artificial exception for test");
+        });
+
+        // When
+        try {
+            stateMachine.fire(new MoveEvent());
+            fail("A FiniteStateMachineException should have been thrown");
+        } catch (FiniteStateMachineException e) {
+            // Then
+            assertThat(e.getTransition().getName()).isEqualTo("t0");
+        }
+        assertThat(stateMachine.getCurrentState().getName()).isEqualTo("s0");
+        assertThat(stateMachine.getLastTransition()).isNull();
+
+        // the machine should not remain claimed by the failed handler
+        stateMachine.reset(new State("s3"));
+        assertThat(stateMachine.getCurrentState().getName()).isEqualTo("s3");
+    }
+
+    @Test
+    public void whenEventIsFiredFromEventHandlerOfTheSameMachine_thenShouldThrowIllegalStateException() throws Exception {
+        // Given
+        FiniteStateMachine[] stateMachine = new FiniteStateMachine[1];
+        stateMachine[0] = newCyclicStateMachine(event -> stateMachine[0].fire(new MoveEvent()));
+
+        // When
+        try {
+            stateMachine[0].fire(new MoveEvent());
+            fail("A FiniteStateMachineException should have been thrown");
+        } catch (FiniteStateMachineException e) {
+            // Then
+            assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Test
+    public void whenBatchOfEventsIsFired_thenEventsShouldBeProcessedUnderASingleClaim() throws Exception {
+        // Given
+        AtomicInteger invocations = new AtomicInteger();
+        FiniteStateMachine stateMachine = newCyclicStateMachine(event -> invocations.incrementAndGet());
+
+        // When
+        State state = stateMachine.fireAll(Arrays.asList(new MoveEvent(), new MoveEvent(), new MoveEvent()));
+
+        // Then
+        assertThat(state.getName()).isEqualTo("s3");
+        assertThat(stateMachine.getLastTransition().getName()).isEqualTo("t2");
+        assertThat(invocations.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void whenEventHandlerThrowsExceptionDuringBatch_thenPreviousEventsShouldBeCommitted() throws Exception {
+        // Given
+        AtomicInteger invocations = new AtomicInteger();
+        FiniteStateMachine stateMachine = newCyclicStateMachine(event -> {
+            if (invocations.incrementAndGet() == 2) {
+                throw new Exception("Artificial exception for test");
+            }
+        });
+
+        // When
+        try {
+            stateMachine.fireAll(Arrays.asList(new MoveEvent(), new MoveEvent(), new MoveEvent()));
+            fail("A FiniteStateMachineBatchException should have been thrown");
+        } catch (FiniteStateMachineBatchException e) {
+            // Then
+            assertThat(e.getEventIndex()).isEqualTo(1);
+        }
+        assertThat(stateMachine.getCurrentState().getName()).isEqualTo("s1");
+        assertThat(stateMachine.fire(new MoveEvent()).getName()).isEqualTo("s2");
+    }
+
+    @Test
+    public void whenEventsAreFiredConcurrently_thenNoTransitionShouldBeLost() throws Exception {
+        checkConcurrentFire(null);
+    }
+
+    @Test
+    public void whenEventsWithHandlerAreFiredConcurrently_thenEachHandlerShouldBeInvokedOnceAndInIsolation() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger invocations = new AtomicInteger();
+        checkConcurrentFire(event -> {
+            assertThat(running.incrementAndGet()).isEqualTo(1);
+            invocations.incrementAndGet();
+            running.decrementAndGet();
+        });
+        assertThat(invocations.get()).isEqualTo(4 * 5000);
+    }
+
+    @Test
+    public void whenEventHandlerBlocks_thenThreadsFiringEventsShouldParkInsteadOfSpinning() throws Exception {
+        // Given
+        CountDownLatch handling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FiniteStateMachine stateMachine = newCyclicStateMachine(event -> {
+            handling.countDown();
+            release.await();
+        });
+        Thread handler = new Thread(() -> fireQuietly(stateMachine));
+        handler.start();
+        handling.await();
+
+        // When
+        Thread waiter = new Thread(() -> fireQuietly(stateMachine));
+        waiter.start();
+
+        // Then
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (waiter.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(waiter.getState()).isEqualTo(Thread.State.WAITING);
+        release.countDown();
+        handler.join();
+        waiter.join();
+        assertThat(stateMachine.getCurrentState().getName()).isEqualTo("s2");
+    }
+
+    private static void fireQuietly(FiniteStateMachine stateMachine) {
+        try {
+            stateMachine.fire(new MoveEvent());
+        } catch (FiniteStateMachineException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void checkConcurrentFire(EventHandler<MoveEvent> eventHandler) throws Exception {
+        // Given
+        int threads = 4;
+        int eventsPerThread = 5000;
+        FiniteStateMachine stateMachine = newCyclicStateMachine(eventHandler);
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < threads; i++) {
+            futures.add(executorService.submit(() -> {
+                start.await();
+                for (int j = 0; j < eventsPerThread; j++) {
+                    stateMachine.fire(new MoveEvent());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        // Then
+        int expectedState = (threads * eventsPerThread) % STATES;
+        assertThat(stateMachine.getCurrentState().getName()).isEqualTo("s" + expectedState);
+    }
+
+    @Test
+    public void whenTransitionListenerIsRegistered_thenItShouldBeNotifiedOfTransitionsWithoutEventHandler() throws Exception {
+        // Given
+        List<String> notifications = new ArrayList<>();
+        FiniteStateMachine stateMachine = newCyclicStateMachine(null, new TransitionListener() {
+            @Override
+            public void beforeTransition(Transition transition, Event event) {
+                notifications.add("before " + transition.getName());
+            }
+
+            @Override
+            public void afterTransition(Transition transition, Event event) {
+                notifications.add("after " + transition.getName());
+            }
+        });
+
+        // When
+        stateMachine.fire(new MoveEvent());
+        stateMachine.fireAll(Arrays.asList(new MoveEvent(), new MoveEvent()));
+
+        // Then
+        assertThat(notifications).containsExactly("before t0", "after t0", "before t1", "after t1", "before t2", "after t2");
+    }
+
+    @Test
+    public void whenEventsAreFiredByCodeConcurrently_thenNoTransitionShouldBeLost() throws Exception {
+        // Given
+        Set<State> states = new HashSet<>();
+        for (int i = 0; i < STATES; i++) {
+            states.add(new State("s" + i));
+        }
+        FiniteStateMachineBuilder builder = new FiniteStateMachineBuilder(states, new State("s0"))
+                .concurrencyMode(ConcurrencyMode.OPTIMISTIC)
+                .registerEventCode(1, MoveEvent.class);
+        AtomicInteger payloads = new AtomicInteger();
+        for (int i = 0; i < STATES; i++) {
+            builder.registerTransition(new TransitionBuilder()
+                    .sourceState(new State("s" + i))
+                    .eventType(MoveEvent.class)
+                    .targetState(new State("s" + ((i + 1) % STATES)))
+                    .codedEventHandler((eventCode, payload) -> payloads.addAndGet((int) payload))
+                    .build());
+        }
+        FiniteStateMachine stateMachine = builder.build();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            futures.add(executorService.submit(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    stateMachine.fire(1, 2L);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        // Then
+        assertThat(stateMachine.getCurrentState().getName()).isEqualTo("s" + (4000 % STATES));
+        assertThat(payloads.get()).isEqualTo(8000);
+    }
+
+    private FiniteStateMachine newCyclicStateMachine(EventHandler<MoveEvent> eventHandler) {
+        return newCyclicStateMachine(eventHandler, null);
+    }
+
+    /*
+     * s0 -> s1 -> ... -> s6 -> s0 on each MoveEvent
+     */
+    private FiniteStateMachine newCyclicStateMachine(EventHandler<MoveEvent> eventHandler, TransitionListener transitionListener) {
+        Set<State> states = new HashSet<>();
+        for (int i = 0; i < STATES; i++) {
+            states.add(new State("s" + i));
+        }
+        FiniteStateMachineBuilder builder = new FiniteStateMachineBuilder(states, new State("s0"))
+                .concurrencyMode(ConcurrencyMode.OPTIMISTIC);
+        for (int i = 0; i < STATES; i++) {
+            TransitionBuilder transitionBuilder = new TransitionBuilder()
+                    .name("t" + i)
+                    .sourceState(new State("s" + i))
+                    .eventType(MoveEvent.class)
+                    .targetState(new State("s" + ((i + 1) % STATES)));
+            if (eventHandler != null) {
+                transitionBuilder.eventHandler(eventHandler);
+            }
+            Transition transition = transitionBuilder.build();
+            builder.registerTransition(transition);
+        }
+        if (transitionListener != null) {
+            builder.registerTransitionListener(transitionListener);
+        }
+        FiniteStateMachine finiteStateMachine = builder.build();
+        assertThat(finiteStateMachine).isInstanceOf(OptimisticFiniteStateMachineImpl.class);
+        return finiteStateMachine;
+    }
+
+    private static class MoveEvent extends AbstractEvent { }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.EventHandler;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.FiniteStateMachineException;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.TransitionListener;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class OrthogonalFiniteStateMachineTest {
+
+    private State on, off, idle, playing;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        on = new State("on");
+        off = new State("off");
+        idle = new State("idle");
+        playing = new State("playing");
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void whenEventIsFired_thenItShouldBeDeliveredToRegionsDefiningATransition() throws Exception {
+        // Given
+        OrthogonalFiniteStateMachine stateMachine = new OrthogonalFiniteStateMachine(Arrays.asList(
+                power(null), player(null)));
+
+        // When
+        Assertions.assertThat(stateMachine.getCurrentState()).containsExactly(off, idle);
+        Assertions.assertThat(stateMachine.fire(new SwitchEvent())).containsExactly(on, idle);
+        Assertions.assertThat(stateMachine.fire(new PlayEvent())).containsExactly(on, playing);
+        Assertions.assertThat(stateMachine.fire(new ToggleEvent())).containsExactly(off, idle);
+
+        // Then
+        stateMachine.reset();
+        Assertions.assertThat(stateMachine.getCurrentState()).containsExactly(off, idle);
+    }
+
+    @Test
+    public void whenExecutorIsGiven_thenEventHandlersOfRegionsShouldRunInParallel() throws Exception {
+        // Given
+        CountDownLatch latch = new CountDownLatch(2);
+        EventHandler<ToggleEvent> handler = event -> {
+            latch.countDown();
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Event handlers did not run in parallel");
+            }
+        };
+        OrthogonalFiniteStateMachine stateMachine = new OrthogonalFiniteStateMachine(Arrays.asList(
+                power(handler), player(handler)), executor);
+
+        // When
+        Assertions.assertThat(stateMachine.fire(new ToggleEvent())).containsExactly(on, playing);
+
+        // Then
+        Assertions.assertThat(latch.getCount()).isZero();
+    }
+
+    @Test
+    public void whenEventHandlerOfARegionThrowsException_thenOtherRegionsShouldMakeTheirTransition() {
+        // Given
+        EventHandler<ToggleEvent> handler = event -> {
+            throw new Exception("Artificial exception for test");
+        };
+        OrthogonalFiniteStateMachine stateMachine = new OrthogonalFiniteStateMachine(Arrays.asList(
+                power(handler), player(null)), executor);
+
+        // When
+        Throwable throwable = Assertions.catchThrowable(() -> stateMachine.fire(new ToggleEvent()));
+
+        // Then
+        Assertions.assertThat(throwable).isInstanceOf(FiniteStateMachineException.class);
+        Assertions.assertThat(stateMachine.getCurrentState()).containsExactly(off, playing);
+    }
+
+    @Test
+    public void whenExecutorRejectsARegion_thenItShouldBeFiredInTheCallingThread() throws Exception {
+        // Given
+        Executor rejectingExecutor = command -> {
+            throw new RejectedExecutionException();
+        };
+        OrthogonalFiniteStateMachine stateMachine = new OrthogonalFiniteStateMachine(Arrays.asList(
+                power(null), player(null)), rejectingExecutor);
+
+        // When
+        List<State> states = stateMachine.fire(new ToggleEvent());
+
+        // Then
+        Assertions.assertThat(states).containsExactly(on, playing);
+    }
+
+    @Test
+    public void whenRegionDoesNotDefineATransitionForAnEvent_thenItsListenerShouldBeNotified() throws Exception {
+        // Given
+        TransitionListener listener = Mockito.mock(TransitionListener.class);
+        FiniteStateMachineDefinition playOnly = new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(idle, playing)), idle)
+                .registerTransition(new TransitionBuilder().sourceState(idle).eventType(PlayEvent.class).targetState(playing).build())
+                .registerTransitionListener(listener)
+                .buildDefinition();
+        OrthogonalFiniteStateMachine stateMachine = new OrthogonalFiniteStateMachine(Arrays.asList(
+                power(null), player(null), playOnly), executor);
+        ToggleEvent event = new ToggleEvent();
+
+        // When
+        List<State> states = stateMachine.fire(event);
+
+        // Then
+        Assertions.assertThat(states).containsExactly(on, playing, idle);
+        Mockito.verify(listener).onUnmatchedEvent(idle, event);
+    }
+
+    private FiniteStateMachineDefinition power(final EventHandler<ToggleEvent> toggleHandler) {
+        return new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(on, off)), off)
+                .registerTransition(new TransitionBuilder().sourceState(off).eventType(SwitchEvent.class).targetState(on).build())
+                .registerTransition(new TransitionBuilder().sourceState(off).eventType(ToggleEvent.class).eventHandler(toggleHandler).targetState(on).build())
+                .registerTransition(new TransitionBuilder().sourceState(on).eventType(ToggleEvent.class).targetState(off).build())
+                .buildDefinition();
+    }
+
+    private FiniteStateMachineDefinition player(final EventHandler<ToggleEvent> toggleHandler) {
+        return new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(idle, playing)), idle)
+                .registerTransition(new TransitionBuilder().sourceState(idle).eventType(PlayEvent.class).targetState(playing).build())
+                .registerTransition(new TransitionBuilder().sourceState(idle).eventType(ToggleEvent.class).eventHandler(toggleHandler).targetState(playing).build())
+                .registerTransition(new TransitionBuilder().sourceState(playing).eventType(ToggleEvent.class).targetState(idle).build())
+                .buildDefinition();
+    }
+
+    private static class SwitchEvent extends AbstractEvent { }
+    private static class PlayEvent extends AbstractEvent { }
+    private static class ToggleEvent extends AbstractEvent { }
+
+}
@@ -0,0 +1,272 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.State;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PopulationSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private State s1, s2, s3;
+    private FiniteStateMachineDefinition definition;
+
+    @Before
+    public void setUp() {
+        s1 = new State("s1");
+        s2 = new State("s2");
+        s3 = new State("s3");
+        definition = new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(s1, s2, s3)), s1)
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(MoveEvent.class)
+                        .targetState(s2)
+                        .build())
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s2)
+                        .eventType(MoveEvent.class)
+                        .targetState(s3)
+                        .build())
+                .buildDefinition();
+    }
+
+    @Test
+    public void whenFullSnapshotIsRestored_thenAllEntitiesShouldBeInTheirSnapshotState() throws Exception {
+        // Given
+        FiniteStateMachinePopulation population = new FiniteStateMachinePopulation(definition, 100, 4);
+        population.fire(1, new MoveEvent());
+        population.fire(2, new MoveEvent());
+        population.fire(2, new MoveEvent());
+        Path file = folder.newFile().toPath();
+        population.snapshot(file);
+
+        // When
+        FiniteStateMachinePopulation restored = new FiniteStateMachinePopulation(definition, 100, 4);
+        int entries = restored.restore(file);
+
+        // Then
+        assertThat(entries).isEqualTo(100);
+        assertThat(restored.getCurrentState(0)).isEqualTo(s1);
+        assertThat(restored.getCurrentState(1)).isEqualTo(s2);
+        assertThat(restored.getCurrentState(2)).isEqualTo(s3);
+        assertThat(restored.getCurrentState(99)).isEqualTo(s1);
+    }
+
+    @Test
+    public void whenIncrementalSnapshotIsTaken_thenOnlyChangedEntitiesShouldBeWritten() throws Exception {
+        // Given
+        FiniteStateMachinePopulation population = new FiniteStateMachinePopulation(definition, 1000, 4);
+        Path full = folder.newFile().toPath();
+        Path incremental = folder.newFile().toPath();
+        population.fire(1, new MoveEvent());
+        population.snapshot(full);
+        population.fire(1, new MoveEvent());
+        population.fire(500, new MoveEvent());
+        population.reset(999, s3);
+
+        // When
+        int changes = population.incrementalSnapshot(incremental);
+
+        // Then
+        assertThat(changes).isEqualTo(3);
+        assertThat(Files.size(incremental)).isLessThan(Files.size(full));
+        assertThat(population.incrementalSnapshot(folder.newFile().toPath())).isZero();
+
+        FiniteStateMachinePopulation restored = new FiniteStateMachinePopulation(definition, 1000, 4);
+        restored.restore(full);
+        assertThat(restored.restore(incremental)).isEqualTo(3);
+        for (int index = 0; index < 1000; index++) {
+            assertThat(restored.getCurrentState(index)).isEqualTo(population.getCurrentState(index));
+        }
+    }
+
+    @Test
+    public void whenIncrementalSnapshotCannotBeWritten_thenChangedEntitiesShouldBePartOfTheNextOne() throws Exception {
+        // Given
+        FiniteStateMachinePopulation population = new FiniteStateMachinePopulation(definition, 100, 4);
+        Path base = folder.newFile().toPath();
+        population.snapshot(base);
+        population.fire(7, new MoveEvent());
+        population.fire(70, new MoveEvent());
+        Path directory = folder.newFolder().toPath();
+        Files.createFile(directory.resolve("entry"));
+
+        // When
+        assertThatThrownBy(() -> population.incrementalSnapshot(directory)).isInstanceOf(IOException.class);
+        Path incremental = folder.newFile().toPath();
+        int written = population.incrementalSnapshot(incremental);
+
+        // Then
+        assertThat(written).isEqualTo(2);
+        assertThat(directory.getParent()).isDirectoryNotContaining("glob:**/" + directory.getFileName() + "*.tmp");
+        FiniteStateMachinePopulation restored = new FiniteStateMachinePopulation(definition, 100, 4);
+        restored.restore(base);
+        restored.restore(incremental);
+        assertThat(restored.getCurrentState(7)).isEqualTo(s2);
+        assertThat(restored.getCurrentState(70)).isEqualTo(s2);
+        assertThat(restored.getCurrentState(8)).isEqualTo(s1);
+    }
+
+    @Test
+    public void whenSnapshotOfAnotherPopulationSizeIsRestored_thenAnExceptionShouldBeThrown() throws Exception {
+        // Given
+        Path file = folder.newFile().toPath();
+        new FiniteStateMachinePopulation(definition, 10, 4).snapshot(file);
+
+        // When / Then
+        assertThatThrownBy(() -> new FiniteStateMachinePopulation(definition, 20, 4).restore(file))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void whenFileIsNotASnapshot_thenAnExceptionShouldBeThrown() throws Exception {
+        // Given
+        Path file = folder.newFile().toPath();
+        Files.write(file, "not a snapshot".getBytes());
+
+        // When / Then
+        assertThatThrownBy(() -> new FiniteStateMachinePopulation(definition, 10, 4).restore(file))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void whenSnapshotIsTruncated_thenPopulationShouldBeLeftUnchanged() throws Exception {
+        // Given
+        FiniteStateMachinePopulation population = new FiniteStateMachinePopulation(definition, 100, 4);
+        for (int index = 0; index < 100; index++) {
+            population.fire(index, new MoveEvent());
+        }
+        Path file = folder.newFile().toPath();
+        population.snapshot(file);
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 10));
+        FiniteStateMachinePopulation restored = new FiniteStateMachinePopulation(definition, 100, 4);
+
+        // When / Then
+        assertThatThrownBy(() -> restored.restore(file)).isInstanceOf(IOException.class);
+        for (int index = 0; index < 100; index++) {
+            assertThat(restored.getCurrentState(index)).isEqualTo(s1);
+        }
+    }
+
+    @Test
+    public void whenSnapshotContainsAnInvalidEntityIndex_thenAnIOExceptionShouldBeThrown() throws Exception {
+        // Given
+        Path file = folder.newFile().toPath();
+        Files.write(file, incrementalSnapshot(new String[]{"s1", "s2", "s3"}, 1, 2, 42, 2));
+        FiniteStateMachinePopulation population = new FiniteStateMachinePopulation(definition, 10, 4);
+
+        // When / Then
+        assertThatThrownBy(() -> population.restore(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("index 42");
+        assertThat(population.getCurrentState(1)).isEqualTo(s1);
+    }
+
+    @Test
+    public void whenSnapshotContainsAnInvalidState_thenAnIOExceptionShouldBeThrown() throws Exception {
+        // Given
+        Path file = folder.newFile().toPath();
+        Files.write(file, incrementalSnapshot(new String[]{"s1", "s2", "s3"}, 1, 7));
+
+        // When / Then
+        assertThatThrownBy(() -> new FiniteStateMachinePopulation(definition, 10, 4).restore(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("state 7");
+    }
+
+    @Test
+    public void whenSnapshotContainsAnUnknownState_thenAnIOExceptionShouldBeThrown() throws Exception {
+        // Given
+        Path file = folder.newFile().toPath();
+        Files.write(file, incrementalSnapshot(new String[]{"s1", "s4"}, 1, 1));
+
+        // When / Then
+        assertThatThrownBy(() -> new FiniteStateMachinePopulation(definition, 10, 4).restore(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("'s4'");
+    }
+
+    @Test
+    public void whenSnapshotContainsAnInvalidDictionarySize_thenAnIOExceptionShouldBeThrown() throws Exception {
+        // Given
+        Path file = folder.newFile().toPath();
+        byte[] content = incrementalSnapshot(new String[0]);
+        ByteBuffer.wrap(content).putInt(10, -1);
+        Files.write(file, content);
+
+        // When / Then
+        assertThatThrownBy(() -> new FiniteStateMachinePopulation(definition, 10, 4).restore(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("dictionary size");
+    }
+
+    /*
+     * Encode an incremental snapshot of a population of 10 entities, entries being given as pairs of index and state
+     */
+    private static byte[] incrementalSnapshot(final String[] states, final int... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(PopulationSnapshot.MAGIC);
+            output.writeByte(PopulationSnapshot.VERSION);
+            output.writeByte(PopulationSnapshot.INCREMENTAL);
+            output.writeInt(10);
+            output.writeInt(states.length);
+            for (String state : states) {
+                byte[] name = state.getBytes(StandardCharsets.UTF_8);
+                output.writeInt(name.length);
+                output.write(name);
+            }
+            output.writeInt(entries.length / 2);
+            for (int i = 0; i < entries.length; i += 2) {
+                output.writeInt(entries[i]);
+                output.writeByte(entries[i + 1]);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static class MoveEvent extends AbstractEvent { }
+
+}
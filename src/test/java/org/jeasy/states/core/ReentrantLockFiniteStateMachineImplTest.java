@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.State;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReentrantLockFiniteStateMachineImplTest {
+
+    private State s1 = new State("s1");
+    private State s2 = new State("s2");
+
+    @Test
+    public void whenEventsAreFiredConcurrently_thenHandlersShouldRunOneAtATimeAndNoTransitionShouldBeLost() throws Exception {
+        // Given
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger violations = new AtomicInteger();
+        FiniteStateMachine stateMachine = new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(s1, s2)), s1)
+                .concurrencyMode(ConcurrencyMode.REENTRANT_LOCK)
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(MoveEvent.class)
+                        .eventHandler(event -> {
+                            if (running.incrementAndGet() != 1) {
+                                violations.incrementAndGet();
+                            }
+                            running.decrementAndGet();
+                        })
+                        .targetState(s2)
+                        .build())
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s2)
+                        .eventType(MoveEvent.class)
+                        .targetState(s1)
+                        .build())
+                .build();
+        assertThat(stateMachine).isInstanceOf(ReentrantLockFiniteStateMachineImpl.class);
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            futures.add(executorService.submit(() -> {
+                for (int j = 0; j < 2501; j++) {
+                    stateMachine.fire(new MoveEvent());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        // Then
+        assertThat(violations.get()).isZero();
+        assertThat(stateMachine.getCurrentState()).isEqualTo(s1); // 4 * 2501 transitions
+    }
+
+    @Test
+    public void whenStateMachineIsReset_thenShouldBeInTheGivenState() {
+        // Given
+        FiniteStateMachine stateMachine = new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(s1, s2)), s1)
+                .concurrencyMode(ConcurrencyMode.REENTRANT_LOCK)
+                .build();
+
+        // When
+        stateMachine.reset(s2);
+
+        // Then
+        assertThat(stateMachine.getCurrentState()).isEqualTo(s2);
+    }
+
+    private static class MoveEvent extends AbstractEvent { }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.AsyncFiniteStateMachine;
+import org.jeasy.states.api.EventHandler;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.StateTimeoutEvent;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TimingWheelTest {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private State s1, s2, s3;
+    private AtomicLong nanoTime;
+    private TimingWheel timingWheel;
+    @Mock
+    private EventHandler<StateTimeoutEvent> eventHandler;
+    private FiniteStateMachineBuilder stateMachineBuilder;
+
+    @Before
+    public void setUp() {
+        s1 = new State("s1");
+        s2 = new State("s2");
+        s3 = new State("s3");
+        Set<State> states = new HashSet<>();
+        states.add(s1);
+        states.add(s2);
+        states.add(s3);
+        nanoTime = new AtomicLong();
+        timingWheel = new TimingWheel(TICK, 4, nanoTime::get, Runnable::run);
+        stateMachineBuilder = new FiniteStateMachineBuilder(states, s1)
+                .timingWheel(timingWheel)
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(StateTimeoutEvent.class)
+                        .eventHandler(eventHandler)
+                        .targetState(s2)
+                        .build())
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(MoveEvent.class)
+                        .targetState(s3)
+                        .build());
+    }
+
+    @Test
+    public void whenStateTimeoutExpires_thenShouldFireStateTimeoutEvent() throws Exception {
+        // Given
+        FiniteStateMachine stateMachine = stateMachineBuilder.registerStateTimeout(s1, 50, TimeUnit.MILLISECONDS).build();
+
+        // When
+        advance(4);
+
+        // Then
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s1);
+        Assertions.assertThat(timingWheel.size()).isEqualTo(1);
+
+        // When
+        int expired = advance(1);
+
+        // Then
+        Assertions.assertThat(expired).isEqualTo(1);
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s2);
+        Assertions.assertThat(timingWheel.size()).isZero();
+        ArgumentCaptor<StateTimeoutEvent> event = ArgumentCaptor.forClass(StateTimeoutEvent.class);
+        Mockito.verify(eventHandler).handleEvent(event.capture());
+        Assertions.assertThat(event.getValue().getState()).isEqualTo(s1);
+        Assertions.assertThat(event.getValue().getTimeout(TimeUnit.MILLISECONDS)).isEqualTo(50);
+    }
+
+    @Test
+    public void whenStateIsLeft_thenStateTimeoutShouldBeCancelled() throws Exception {
+        // Given
+        FiniteStateMachine stateMachine = stateMachineBuilder.registerStateTimeout(s1, 50, TimeUnit.MILLISECONDS).build();
+
+        // When
+        stateMachine.fire(new MoveEvent());
+        int expired = advance(10);
+
+        // Then
+        Assertions.assertThat(expired).isZero();
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s3);
+        Assertions.assertThat(timingWheel.size()).isZero();
+        Mockito.verifyNoInteractions(eventHandler);
+    }
+
+    @Test
+    public void whenStateMachineIsReset_thenStateTimeoutShouldBeRearmed() throws Exception {
+        // Given
+        FiniteStateMachine stateMachine = stateMachineBuilder.registerStateTimeout(s1, 50, TimeUnit.MILLISECONDS).build();
+        advance(3);
+
+        // When
+        stateMachine.reset(s1);
+        int expired = advance(3);
+
+        // Then
+        Assertions.assertThat(expired).isZero();
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s1);
+        Assertions.assertThat(timingWheel.size()).isEqualTo(1);
+
+        // When
+        expired = advance(2);
+
+        // Then
+        Assertions.assertThat(expired).isEqualTo(1);
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s2);
+    }
+
+    @Test
+    public void whenStateTimeoutExceedsFirstWheel_thenItShouldCascadeToExpireOnTime() throws Exception {
+        // Given: 4 buckets per wheel, the timeout of 100 ticks is armed in the fourth wheel
+        FiniteStateMachine stateMachine = stateMachineBuilder.registerStateTimeout(s1, 1, TimeUnit.SECONDS).build();
+        FiniteStateMachine otherStateMachine = stateMachineBuilder.build();
+        advance(7);
+        FiniteStateMachine lateStateMachine = stateMachineBuilder.build();
+
+        // When
+        int expired = advance(92);
+
+        // Then
+        Assertions.assertThat(expired).isZero();
+        Assertions.assertThat(timingWheel.size()).isEqualTo(3);
+
+        // When
+        expired = advance(1);
+
+        // Then
+        Assertions.assertThat(expired).isEqualTo(2);
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s2);
+        Assertions.assertThat(otherStateMachine.getCurrentState()).isEqualTo(s2);
+        Assertions.assertThat(lateStateMachine.getCurrentState()).isEqualTo(s1);
+
+        // When
+        expired = advance(6) + advance(1);
+
+        // Then
+        Assertions.assertThat(expired).isEqualTo(1);
+        Assertions.assertThat(lateStateMachine.getCurrentState()).isEqualTo(s2);
+        Assertions.assertThat(timingWheel.size()).isZero();
+    }
+
+    @Test
+    public void whenStateTimeoutExpires_thenItShouldBeHandedToTheExecutorOfTheWheel() throws Exception {
+        // Given
+        List<Runnable> expiries = new ArrayList<>();
+        timingWheel = new TimingWheel(TICK, 4, nanoTime::get, expiries::add);
+        FiniteStateMachine stateMachine = stateMachineBuilder.timingWheel(timingWheel)
+                .registerStateTimeout(s1, 50, TimeUnit.MILLISECONDS).build();
+
+        // When
+        int expired = advance(5);
+
+        // Then
+        Assertions.assertThat(expired).isEqualTo(1);
+        Assertions.assertThat(expiries).hasSize(1);
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s1);
+
+        // When
+        expiries.get(0).run();
+
+        // Then
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s2);
+    }
+
+    @Test
+    public void whenStateTimeoutOfAsyncInstanceExpires_thenItShouldBeQueuedInItsMailbox() throws Exception {
+        // Given
+        List<Runnable> expiries = new ArrayList<>();
+        List<Runnable> drainTasks = new ArrayList<>();
+        timingWheel = new TimingWheel(TICK, 4, nanoTime::get, expiries::add);
+        AsyncFiniteStateMachine stateMachine = stateMachineBuilder.timingWheel(timingWheel)
+                .registerStateTimeout(s1, 50, TimeUnit.MILLISECONDS)
+                .buildDefinition()
+                .newAsyncInstance(drainTasks::add);
+
+        // When
+        int expired = advance(5);
+
+        // Then
+        Assertions.assertThat(expired).isEqualTo(1);
+        Assertions.assertThat(expiries).isEmpty();
+        Assertions.assertThat(drainTasks).hasSize(1);
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s1);
+
+        // When
+        drainTasks.get(0).run();
+
+        // Then
+        Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(s2);
+        Mockito.verify(eventHandler).handleEvent(Mockito.any(StateTimeoutEvent.class));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenNoTimingWheelIsSet_thenShouldThrowIllegalStateException() {
+        new FiniteStateMachineBuilder(stateMachineBuilderStates(), s1)
+                .registerStateTimeout(s1, 50, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenStateTimeoutIsDeclaredForUnknownState_thenShouldThrowIllegalArgumentException() {
+        stateMachineBuilder.registerStateTimeout(new State("unknown"), 50, TimeUnit.MILLISECONDS);
+    }
+
+    private Set<State> stateMachineBuilderStates() {
+        Set<State> states = new HashSet<>();
+        states.add(s1);
+        return states;
+    }
+
+    private int advance(final int ticks) {
+        nanoTime.addAndGet(ticks * TICK);
+        return timingWheel.advance();
+    }
+
+    private static class MoveEvent extends AbstractEvent { }
+
+}
@@ -53,7 +53,7 @@ public class TransitionDefinitionValidatorTest {
                 .build();
 
         // when
-        transitionDefinitionValidator.validateTransitionDefinition(transition, finiteStateMachine);
+        transitionDefinitionValidator.validateTransitionDefinition(transition, finiteStateMachine.getStates());
 
         // then
         // expected exception
@@ -77,7 +77,7 @@ public class TransitionDefinitionValidatorTest {
                 .build();
 
         // when
-        transitionDefinitionValidator.validateTransitionDefinition(transition, finiteStateMachine);
+        transitionDefinitionValidator.validateTransitionDefinition(transition, finiteStateMachine.getStates());
 
         // then
         // expected exception
@@ -99,7 +99,7 @@ public class TransitionDefinitionValidatorTest {
                 .build();
 
         // when
-        transitionDefinitionValidator.validateTransitionDefinition(transition, finiteStateMachine);
+        transitionDefinitionValidator.validateTransitionDefinition(transition, finiteStateMachine.getStates());
 
         // then
         // expected exception
@@ -123,7 +123,7 @@ public class TransitionDefinitionValidatorTest {
                 .build();
 
         // when
-        transitionDefinitionValidator.validateTransitionDefinition(transition, finiteStateMachine);
+        transitionDefinitionValidator.validateTransitionDefinition(transition, finiteStateMachine.getStates());
 
         // then
         // expected exception
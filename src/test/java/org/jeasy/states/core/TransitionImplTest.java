@@ -86,6 +86,42 @@ public class TransitionImplTest {
         Assertions.assertThat(equals).isFalse();
     }
 
+    @Test
+    public void whenTwoTransitionsHaveTheSameSourceStateAndTheSameTriggeringEventButDifferentGuards_thenTheyShouldNotBeEqual() {
+        // Given
+        Transition t1 = new TransitionBuilder().sourceState(s1).eventType(DummyEvent.class).guard(event -> true).build();
+        Transition t2 = new TransitionBuilder().sourceState(s1).eventType(DummyEvent.class).build();
+
+        // When
+        boolean equals = t1.equals(t2);
+
+        // Then
+        Assertions.assertThat(equals).isFalse();
+    }
+
+    @Test
+    public void whenGuardIsDeclaredForASupertypeOfTheTriggeringEvent_thenItShouldBeAppliedToTheEvent() {
+        // Given
+        Transition transition = new TransitionBuilder().sourceState(s1).eventType(DummyEvent.class)
+                .guard(AbstractEvent.class, event -> event.getTimestamp() >= 0).build();
+
+        // When
+        boolean accepted = transition.getGuard().test(new DummyEvent());
+
+        // Then
+        Assertions.assertThat(accepted).isTrue();
+    }
+
+    @Test
+    public void whenGuardIsDeclaredForAnotherTypeThanTheTriggeringEvent_thenTheTransitionShouldBeRejectedAtBuildTime() {
+        // Given
+        TransitionBuilder builder = new TransitionBuilder().sourceState(s1).eventType(DummyEvent.class)
+                .guard(AnotherDummyEvent.class, event -> true);
+
+        // When / Then
+        Assertions.assertThatThrownBy(builder::build).isInstanceOf(IllegalArgumentException.class);
+    }
+
     private static class DummyEvent extends AbstractEvent { }
     private static class AnotherDummyEvent extends AbstractEvent { }
 
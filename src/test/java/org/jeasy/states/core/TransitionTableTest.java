@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.Event;
+import org.jeasy.states.api.State;
+import org.jeasy.states.api.Transition;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransitionTableTest {
+
+    private State s1 = new State("s1");
+    private State s2 = new State("s2");
+    private State s3 = new State("s3");
+    private Set<State> states = new HashSet<>(Arrays.asList(s1, s2, s3));
+
+    @Test
+    public void whenTransitionIsDefinedForStateAndEventType_thenItShouldBeFound() {
+        // Given
+        Transition t1 = new TransitionBuilder().sourceState(s1).targetState(s2).eventType(DummyEvent.class).build();
+        Transition t2 = new TransitionBuilder().sourceState(s2).targetState(s3).eventType(DummyEvent.class).build();
+        Transition t3 = new TransitionBuilder().sourceState(s1).targetState(s3).eventType(AnotherDummyEvent.class).build();
+
+        // When
+        TransitionTable table = new TransitionTable(states, Collections.singleton(s3), new HashSet<>(Arrays.asList(t1, t2, t3)));
+
+        // Then
+        TransitionTable.Entry entry = table.getEntry(table.getOrdinal(s1), DummyEvent.class);
+        assertThat(entry.transition).isSameAs(t1);
+        assertThat(table.getState(entry.target)).isEqualTo(s2);
+        assertThat(table.getEntry(table.getOrdinal(s2), DummyEvent.class).transition).isSameAs(t2);
+        assertThat(table.getEntry(table.getOrdinal(s1), AnotherDummyEvent.class).transition).isSameAs(t3);
+        assertThat(table.getEntry(table.getOrdinal(s2), AnotherDummyEvent.class)).isNull();
+        assertThat(table.isFinalState(table.getOrdinal(s3))).isTrue();
+        assertThat(table.isFinalState(table.getOrdinal(s1))).isFalse();
+        assertThat(table.getTransitionCount()).isEqualTo(3);
+        assertThat(table.getTransitionEntry(entry.ordinal)).isSameAs(entry);
+    }
+
+    @Test
+    public void whenStateIsNotRegistered_thenItShouldHaveNoTransitions() {
+        // Given
+        State unknown = new State("unknown");
+        Transition transition = new TransitionBuilder().sourceState(unknown).targetState(s1).eventType(DummyEvent.class).build();
+
+        // When
+        TransitionTable table = new TransitionTable(states, Collections.emptySet(), Collections.singleton(transition));
+
+        // Then
+        assertThat(table.getOrdinal(unknown)).isEqualTo(TransitionTable.UNKNOWN_STATE);
+        assertThat(table.getEntry(TransitionTable.UNKNOWN_STATE, DummyEvent.class)).isNull();
+        assertThat(table.isFinalState(TransitionTable.UNKNOWN_STATE)).isFalse();
+    }
+
+    @Test
+    public void whenTransitionIsDefinedForASupertypeOfTheEvent_thenTheMostSpecificTransitionShouldBeFound() {
+        // Given
+        Transition t1 = new TransitionBuilder().sourceState(s1).targetState(s2).eventType(DummyEvent.class).build();
+        Transition t2 = new TransitionBuilder().sourceState(s1).targetState(s3).eventType(SpecificDummyEvent.class).build();
+        Transition t3 = new TransitionBuilder().sourceState(s2).targetState(s3).eventType(Urgent.class).build();
+
+        // When
+        TransitionTable table = new TransitionTable(states, Collections.emptySet(), new HashSet<>(Arrays.asList(t1, t2, t3)));
+
+        // Then
+        assertThat(table.getEntry(table.getOrdinal(s1), SpecificDummyEvent.class).transition).isSameAs(t2);
+        assertThat(table.getEntry(table.getOrdinal(s1), UrgentDummyEvent.class).transition).isSameAs(t1);
+        assertThat(table.getEntry(table.getOrdinal(s2), UrgentDummyEvent.class).transition).isSameAs(t3);
+        assertThat(table.getEntry(table.getOrdinal(s2), SpecificDummyEvent.class)).isNull();
+        assertThat(table.getEntry(table.getOrdinal(s1), AnotherDummyEvent.class)).isNull();
+    }
+
+    @Test
+    public void whenTransitionIsDefinedForAParentState_thenItShouldBeInheritedByNestedStates() {
+        // Given
+        State parent = new State("parent");
+        State child = new State("child", parent);
+        State grandChild = new State("grandChild", child);
+        Set<State> states = new HashSet<>(Arrays.asList(parent, child, grandChild, s1));
+        Transition cancel = new TransitionBuilder().sourceState(parent).targetState(s1).eventType(DummyEvent.class).build();
+        Transition other = new TransitionBuilder().sourceState(parent).targetState(s1).eventType(AnotherDummyEvent.class).build();
+        Transition specific = new TransitionBuilder().sourceState(child).targetState(parent).eventType(SpecificDummyEvent.class).build();
+        Transition overridden = new TransitionBuilder().sourceState(grandChild).targetState(child).eventType(AnotherDummyEvent.class).build();
+
+        // When
+        TransitionTable table = new TransitionTable(states, Collections.emptySet(), new HashSet<>(Arrays.asList(cancel, other, specific, overridden)));
+
+        // Then
+        assertThat(table.getEntry(table.getOrdinal(child), DummyEvent.class).transition).isSameAs(cancel);
+        assertThat(table.getEntry(table.getOrdinal(child), SpecificDummyEvent.class).transition).isSameAs(specific);
+        assertThat(table.getEntry(table.getOrdinal(child), AnotherDummyEvent.class).transition).isSameAs(other);
+        assertThat(table.getEntry(table.getOrdinal(grandChild), UrgentDummyEvent.class).transition).isSameAs(cancel);
+        assertThat(table.getEntry(table.getOrdinal(grandChild), SpecificDummyEvent.class).transition).isSameAs(specific);
+        assertThat(table.getEntry(table.getOrdinal(grandChild), AnotherDummyEvent.class).transition).isSameAs(overridden);
+        assertThat(table.getEntry(table.getOrdinal(parent), SpecificDummyEvent.class).transition).isSameAs(cancel);
+        assertThat(table.getEntry(table.getOrdinal(s1), DummyEvent.class)).isNull();
+        assertThat(table.getTransitionCount()).isEqualTo(4);
+        assertThat(table.getDeclaredEntries(table.getOrdinal(child))).containsOnlyKeys(DummyEvent.class, AnotherDummyEvent.class, SpecificDummyEvent.class);
+    }
+
+    @Test
+    public void whenNestedStateHandlesASupertypeOfTheEvent_thenTransitionsOfParentStateShouldNotBeInherited() {
+        // Given
+        State parent = new State("parent");
+        State child = new State("child", parent);
+        Set<State> states = new HashSet<>(Arrays.asList(parent, child, s1));
+        Transition specific = new TransitionBuilder().sourceState(parent).targetState(s1).eventType(SpecificDummyEvent.class).build();
+        Transition general = new TransitionBuilder().sourceState(child).targetState(parent).eventType(DummyEvent.class).build();
+
+        // When
+        TransitionTable table = new TransitionTable(states, Collections.emptySet(), new HashSet<>(Arrays.asList(specific, general)));
+
+        // Then
+        assertThat(table.getEntry(table.getOrdinal(child), SpecificDummyEvent.class).transition).isSameAs(general);
+        assertThat(table.getEntry(table.getOrdinal(parent), SpecificDummyEvent.class).transition).isSameAs(specific);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenParentStatesAreNestedInACycle_thenShouldThrowIllegalStateException() {
+        // Given
+        State a = new State("a", new State("b"));
+        State b = new State("b", new State("a"));
+
+        // When
+        new TransitionTable(new HashSet<>(Arrays.asList(a, b)), Collections.emptySet(), Collections.emptySet());
+
+        // Then
+        // expected exception
+    }
+
+    private static class DummyEvent extends AbstractEvent { }
+    private static class AnotherDummyEvent extends AbstractEvent { }
+    private static class SpecificDummyEvent extends DummyEvent { }
+    private interface Urgent extends Event { }
+    private static class UrgentDummyEvent extends DummyEvent implements Urgent { }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VirtualThreadsTest {
+
+    /*
+     * Tests run against compiled classes, not the multi-release jar: the Java 8 version of VirtualThreads is used
+     * unless the versioned class is loaded explicitly.
+     */
+
+    @Test
+    public void virtualThreadsShouldNotBeSupportedByTheJava8Layer() {
+        assertThat(VirtualThreads.isSupported()).isFalse();
+    }
+
+    @Test
+    public void whenVirtualThreadsAreNotSupported_thenExecutorShouldUsePlatformThreads() throws Exception {
+        // Given
+        ExecutorService executorService = VirtualThreads.newVirtualThreadPerTaskExecutor();
+
+        // When
+        Future<String> threadName = executorService.submit(() -> Thread.currentThread().getName());
+
+        // Then
+        assertThat(threadName.get(5, TimeUnit.SECONDS)).isNotEmpty();
+        executorService.shutdown();
+    }
+
+    @Test
+    public void virtualThreadsShouldBeSupportedByTheJava21Layer() throws Exception {
+        // Given
+        File classes = new File(VirtualThreads.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        File java21Layer = new File(classes, "META-INF/versions/21");
+        Assume.assumeTrue("The Java 21 layer is only compiled and loadable on JDK 21+",
+                javaVersion() >= 21 && new File(java21Layer, "org/jeasy/states/core/VirtualThreads.class").exists());
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{java21Layer.toURI().toURL(), classes.toURI().toURL()},
+                ClassLoader.getSystemClassLoader().getParent())) {
+            Class<?> virtualThreads = classLoader.loadClass(VirtualThreads.class.getName());
+
+            // When
+            boolean supported = (Boolean) virtualThreads.getMethod("isSupported").invoke(null);
+            ExecutorService executorService = (ExecutorService) virtualThreads.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            Future<Object> virtual = executorService.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()));
+
+            // Then
+            assertThat(supported).isTrue();
+            assertThat(virtual.get(5, TimeUnit.SECONDS)).isEqualTo(true);
+            executorService.shutdown();
+        }
+    }
+
+    private static int javaVersion() {
+        String version = System.getProperty("java.specification.version");
+        return version.startsWith("1.") ? Integer.parseInt(version.substring(2)) : Integer.parseInt(version);
+    }
+
+}
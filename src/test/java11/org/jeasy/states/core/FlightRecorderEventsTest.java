@@ -0,0 +1,231 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.states.core;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.jeasy.states.api.AbstractEvent;
+import org.jeasy.states.api.FiniteStateMachine;
+import org.jeasy.states.api.FiniteStateMachineDefinition;
+import org.jeasy.states.api.State;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FlightRecorderEventsTest {
+
+    private static final String TRANSITION_COMMITTED = "org.jeasy.states.TransitionCommitted";
+    private static final String EVENT_HANDLER = "org.jeasy.states.EventHandler";
+    private static final String LOCK_WAIT = "org.jeasy.states.LockWait";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final State s1 = new State("s1");
+    private final State s2 = new State("s2");
+    private final CountDownLatch handlerStarted = new CountDownLatch(1);
+    private final CountDownLatch handlerReleased = new CountDownLatch(1);
+
+    @Test
+    public void whenTransitionsAreMadeInSynchronizedMode_thenTransitionAndHandlerEventsShouldBeRecorded() throws Exception {
+        // Given
+        FiniteStateMachine stateMachine = definition(ConcurrencyMode.SYNCHRONIZED).newInstance();
+        handlerReleased.countDown();
+
+        // When
+        List<String> events = record(() -> {
+            stateMachine.fire(new HandledEvent());
+            stateMachine.fire(new UnhandledEvent());
+        });
+
+        // Then
+        assertThat(events).containsOnly(TRANSITION_COMMITTED, EVENT_HANDLER);
+        assertThat(count(events, TRANSITION_COMMITTED)).isEqualTo(2);
+        assertThat(count(events, EVENT_HANDLER)).isEqualTo(1);
+    }
+
+    @Test
+    public void whenTransitionsAreMadeInOptimisticMode_thenTransitionAndHandlerEventsShouldBeRecorded() throws Exception {
+        // Given
+        FiniteStateMachine stateMachine = definition(ConcurrencyMode.OPTIMISTIC).newInstance();
+        handlerReleased.countDown();
+
+        // When
+        List<String> events = record(() -> {
+            stateMachine.fire(new HandledEvent());
+            stateMachine.fire(new UnhandledEvent()); // lock-free transition
+            stateMachine.fireAll(Arrays.asList(new HandledEvent(), new UnhandledEvent()));
+        });
+
+        // Then
+        assertThat(count(events, TRANSITION_COMMITTED)).isEqualTo(4);
+        assertThat(count(events, EVENT_HANDLER)).isEqualTo(2);
+    }
+
+    @Test
+    public void whenLockIsContendedInReentrantLockMode_thenLockWaitShouldBeRecorded() throws Exception {
+        // Given
+        FiniteStateMachine stateMachine = definition(ConcurrencyMode.REENTRANT_LOCK).newInstance();
+
+        // When
+        List<String> events = record(() -> {
+            Thread owner = new Thread(() -> fireQuietly(stateMachine));
+            owner.start();
+            handlerStarted.await();
+            Thread waiter = new Thread(() -> fireQuietly(stateMachine));
+            waiter.start();
+            awaitBlocked(waiter);
+            handlerReleased.countDown();
+            owner.join();
+            waiter.join();
+            stateMachine.fire(new UnhandledEvent());
+        });
+
+        // Then
+        assertThat(count(events, TRANSITION_COMMITTED)).isEqualTo(2);
+        assertThat(count(events, EVENT_HANDLER)).isEqualTo(1);
+        assertThat(count(events, LOCK_WAIT)).isEqualTo(1);
+    }
+
+    @Test
+    public void whenLockIsContendedInPopulation_thenLockWaitShouldBeRecorded() throws Exception {
+        // Given
+        FiniteStateMachinePopulation population = new FiniteStateMachinePopulation(definition(ConcurrencyMode.SYNCHRONIZED), 1);
+
+        // When
+        List<String> events = record(() -> {
+            Thread owner = new Thread(() -> fireQuietly(population));
+            owner.start();
+            handlerStarted.await();
+            Thread waiter = new Thread(() -> fireQuietly(population));
+            waiter.start();
+            awaitBlocked(waiter);
+            handlerReleased.countDown();
+            owner.join();
+            waiter.join();
+        });
+
+        // Then
+        assertThat(count(events, TRANSITION_COMMITTED)).isEqualTo(1);
+        assertThat(count(events, EVENT_HANDLER)).isEqualTo(1);
+        assertThat(count(events, LOCK_WAIT)).isEqualTo(1);
+    }
+
+    @Test
+    public void whenRecordingIsNotStarted_thenNoEventShouldBeRecorded() throws Exception {
+        // Given
+        FiniteStateMachine stateMachine = definition(ConcurrencyMode.REENTRANT_LOCK).newInstance();
+        stateMachine.fire(new UnhandledEvent());
+
+        // When
+        List<String> events = record(() -> { });
+
+        // Then
+        assertThat(events).isEmpty();
+    }
+
+    private FiniteStateMachineDefinition definition(final ConcurrencyMode concurrencyMode) {
+        return new FiniteStateMachineBuilder(new HashSet<>(Arrays.asList(s1, s2)), s1)
+                .concurrencyMode(concurrencyMode)
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s1)
+                        .eventType(HandledEvent.class)
+                        .eventHandler(event -> {
+                            handlerStarted.countDown();
+                            handlerReleased.await(5, TimeUnit.SECONDS);
+                        })
+                        .targetState(s2)
+                        .build())
+                .registerTransition(new TransitionBuilder()
+                        .sourceState(s2)
+                        .eventType(UnhandledEvent.class)
+                        .targetState(s1)
+                        .build())
+                .buildDefinition();
+    }
+
+    private List<String> record(final Action action) throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable(TRANSITION_COMMITTED);
+            recording.enable(EVENT_HANDLER).withThreshold(Duration.ZERO);
+            recording.enable(LOCK_WAIT).withThreshold(Duration.ZERO);
+            recording.start();
+            action.run();
+            recording.stop();
+            Path file = temporaryFolder.newFile("recording.jfr").toPath();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .map(RecordedEvent::getEventType)
+                    .map(eventType -> eventType.getName())
+                    .filter(name -> name.startsWith("org.jeasy.states."))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long count(final List<String> events, final String name) {
+        return events.stream().filter(name::equals).count();
+    }
+
+    private static void awaitBlocked(final Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void fireQuietly(final FiniteStateMachine stateMachine) {
+        try {
+            stateMachine.fire(new HandledEvent());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void fireQuietly(final FiniteStateMachinePopulation population) {
+        try {
+            population.fire(0, new HandledEvent());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    private static class HandledEvent extends AbstractEvent { }
+    private static class UnhandledEvent extends AbstractEvent { }
+
+}